@@ -0,0 +1,42 @@
+package it.tredi.fca.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.tredi.fca.FcaConfig;
+
+/**
+ * Serializzazione JSON dei parametri di attivazione di FCS ({@link FcaConfig#getJsonFcsConfig()}), inviata agli host FCS in fase di
+ * configurazione.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FcsConfigJsonBenchmark {
+
+	private FcaConfig fcaConfig;
+
+	@Setup
+	public void setUp() throws Exception {
+		fcaConfig = FcaConfig.getInstance();
+	}
+
+	@Benchmark
+	public String getJsonFcsConfig() throws Exception {
+		return fcaConfig.getJsonFcsConfig();
+	}
+
+}
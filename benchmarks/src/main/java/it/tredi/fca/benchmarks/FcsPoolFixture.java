@@ -0,0 +1,50 @@
+package it.tredi.fca.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import it.tredi.fca.FcsHost;
+import it.tredi.fca.FcsHostStatus;
+
+/**
+ * Costruzione di pool di host FCS per i benchmark. Il monitor di stato degli host (FcsHealthMonitor) non viene avviato: gli host vengono
+ * marcati come attivi manualmente, in modo che nessun benchmark apra connessioni verso FCS.
+ */
+final class FcsPoolFixture {
+
+	private FcsPoolFixture() {
+	}
+
+	/**
+	 * Pool di host FCS attivi (host fittizi 10.0.0.x, peso e tempo di risposta differenti per ogni host)
+	 * @param hosts Numero di host del pool
+	 * @param slots Numero massimo di richieste concorrenti per host
+	 * @return
+	 */
+	static List<FcsHost> createPool(int hosts, int slots) {
+		List<FcsHost> pool = new ArrayList<FcsHost>(hosts);
+		for (int i = 0; i < hosts; i++) {
+			FcsHost fcsHost = new FcsHost("10.0.0." + (i + 1), 4871, slots, 1 + (i % 3));
+			fcsHost.recordResponseTime(100 + 25 * i);
+			pool.add(markUp(fcsHost));
+		}
+		return pool;
+	}
+
+	/**
+	 * Forza lo stato UP sugli host indicati (in sostituzione della verifica di FcsHealthMonitor)
+	 * @param pool
+	 * @return
+	 */
+	static List<FcsHost> markUp(List<FcsHost> pool) {
+		for (FcsHost fcsHost : pool)
+			markUp(fcsHost);
+		return pool;
+	}
+
+	private static FcsHost markUp(FcsHost fcsHost) {
+		fcsHost.setStatus(FcsHostStatus.UP);
+		return fcsHost;
+	}
+
+}
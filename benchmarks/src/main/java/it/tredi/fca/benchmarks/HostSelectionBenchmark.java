@@ -0,0 +1,112 @@
+package it.tredi.fca.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.tredi.fca.Fca;
+import it.tredi.fca.FcaConfig;
+import it.tredi.fca.FcsHost;
+import it.tredi.fca.FcsSelectionMode;
+import it.tredi.fca.entity.FcsRequest;
+import it.tredi.fca.selector.FcsHostSelector;
+
+/**
+ * Selezione di un host FCS in concorrenza fra piu' invoker: riserva di uno slot di elaborazione e rilascio immediato dello stesso (nessuna
+ * comunicazione con FCS). Il benchmark <code>selector</code> confronta tutte le modalita' di selezione su un pool sintetico, <code>getTargetFcs</code>
+ * misura {@link Fca#getTargetFcs(FcsRequest)} (lettura della configurazione, esclusione dell'host fallito e selezione) sul pool e sulla modalita'
+ * definiti nel file di properties.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class HostSelectionBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class SyntheticPool {
+
+		@Param({ "ROUNDROBIN", "QUEUE_SIZE", "WEIGHTED_ROUNDROBIN", "LEAST_RESPONSE_TIME", "POWER_OF_TWO", "AFFINITY" })
+		public FcsSelectionMode mode;
+
+		@Param({ "4" })
+		public int hosts;
+
+		@Param({ "8" })
+		public int slots;
+
+		List<FcsHost> pool;
+		FcsHostSelector selector;
+
+		@Setup
+		public void setUp() {
+			pool = FcsPoolFixture.createPool(hosts, slots);
+			selector = FcsHostSelector.create(mode);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class ConfiguredPool {
+
+		@Setup
+		public void setUp() throws Exception {
+			FcsPoolFixture.markUp(FcaConfig.getInstance().getFcsPool());
+		}
+	}
+
+	/**
+	 * Richieste (con chiave di instradamento) inviate da ogni invoker
+	 */
+	@State(Scope.Thread)
+	public static class Requests {
+
+		private static final int SIZE = 1024;
+
+		private final FcsRequest[] requests = new FcsRequest[SIZE];
+		private int next = 0;
+
+		@Setup
+		public void setUp() {
+			for (int i = 0; i < SIZE; i++) {
+				requests[i] = new FcsRequest("doc-" + i);
+				requests[i].setRoutingKey("key-" + (i % 64));
+			}
+		}
+
+		FcsRequest next() {
+			next = (next + 1) & (SIZE - 1);
+			return requests[next];
+		}
+	}
+
+	@Benchmark
+	public FcsHost selector(SyntheticPool pool, Requests requests) {
+		return release(pool.selector.select(pool.pool, requests.next()));
+	}
+
+	@Benchmark
+	public FcsHost getTargetFcs(ConfiguredPool pool, Requests requests) throws Exception {
+		return release(Fca.getTargetFcs(requests.next()));
+	}
+
+	private static FcsHost release(FcsHost fcsHost) {
+		if (fcsHost != null)
+			fcsHost.decrementQueueInProgressSize();
+		return fcsHost;
+	}
+
+}
@@ -0,0 +1,82 @@
+package it.tredi.fca.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.tredi.fca.InProgressRequests;
+
+/**
+ * Deduplica delle richieste pendenti ({@link InProgressRequests}) con 10k, 100k e 1M richieste gia' registrate: verifica di presenza (caricamento
+ * delle richieste pendenti) e ciclo aggiunta/rimozione (accodamento e completamento di una richiesta) in concorrenza.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class InProgressRequestsBenchmark {
+
+	@Param({ "10000", "100000", "1000000" })
+	public int size;
+
+	private InProgressRequests inProgressRequests;
+	private String[] docIds;
+	private final AtomicLong sequence = new AtomicLong(0);
+
+	@Setup
+	public void setUp() {
+		inProgressRequests = InProgressRequests.getInstance();
+		docIds = new String[size];
+		for (int i = 0; i < size; i++) {
+			docIds[i] = "doc-" + i;
+			inProgressRequests.tryAcquire(docIds[i]);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		for (String docId : inProgressRequests.listRequests())
+			inProgressRequests.removeRequest(docId);
+	}
+
+	@Benchmark
+	public boolean contains() {
+		return inProgressRequests.containsRequest(docIds[ThreadLocalRandom.current().nextInt(size)]);
+	}
+
+	@Benchmark
+	public boolean containsMissing() {
+		return inProgressRequests.containsRequest("missing-" + ThreadLocalRandom.current().nextInt(size));
+	}
+
+	@Benchmark
+	public boolean addRemove() {
+		String docId = "new-" + sequence.incrementAndGet();
+		boolean added = inProgressRequests.tryAcquire(docId);
+		inProgressRequests.removeRequest(docId);
+		return added;
+	}
+
+	@Benchmark
+	public boolean addDuplicate() {
+		return inProgressRequests.tryAcquire(docIds[ThreadLocalRandom.current().nextInt(size)]);
+	}
+
+}
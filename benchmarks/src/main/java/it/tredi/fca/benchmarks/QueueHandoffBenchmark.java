@@ -0,0 +1,80 @@
+package it.tredi.fca.benchmarks;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.tredi.fca.LaneBlockingQueue;
+import it.tredi.fca.entity.FcsRequest;
+import it.tredi.fca.entity.FcsRequestLane;
+
+/**
+ * Passaggio delle richieste dal thread principale (caricamento delle richieste pendenti) agli invoker tramite la coda condivisa: un produttore e
+ * N consumatori (4 di default, modificabile con <code>-tg 1,N</code>). Viene confrontata la coda a corsie utilizzata da FCA con una
+ * ArrayBlockingQueue di pari capacita'. Le attese sono limitate per consentire la chiusura delle iterazioni con coda piena o vuota.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class QueueHandoffBenchmark {
+
+	private static final long WAIT = 10;
+
+	@Param({ "lanes", "array" })
+	public String queue;
+
+	@Param({ "32" })
+	public int capacity;
+
+	private BlockingQueue<FcsRequest> fcsRequestQueue;
+	private FcsRequest[] requests;
+	private int next = 0;
+
+	@Setup
+	public void setUp() {
+		if (queue.equals("array"))
+			fcsRequestQueue = new ArrayBlockingQueue<FcsRequest>(capacity);
+		else
+			fcsRequestQueue = new LaneBlockingQueue(capacity, null);
+
+		FcsRequestLane[] lanes = FcsRequestLane.values();
+		requests = new FcsRequest[1024];
+		for (int i = 0; i < requests.length; i++) {
+			requests[i] = new FcsRequest("doc-" + i);
+			requests[i].setLane(lanes[i % lanes.length]);
+		}
+	}
+
+	@Benchmark
+	@Group("handoff")
+	@GroupThreads(1)
+	public boolean put() throws InterruptedException {
+		next = (next + 1) & (requests.length - 1);
+		return fcsRequestQueue.offer(requests[next], WAIT, TimeUnit.MILLISECONDS);
+	}
+
+	@Benchmark
+	@Group("handoff")
+	@GroupThreads(4)
+	public FcsRequest take() throws InterruptedException {
+		return fcsRequestQueue.poll(WAIT, TimeUnit.MILLISECONDS);
+	}
+
+}
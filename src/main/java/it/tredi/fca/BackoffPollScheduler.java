@@ -0,0 +1,136 @@
+package it.tredi.fca;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Pianificazione adattiva dei cicli di caricamento:
+ * <ul>
+ * <li>coda condivisa riempita dall'ultimo caricamento: nuovo caricamento appena un invoker libera spazio sulla coda (al massimo dopo maxDelay ms);</li>
+ * <li>richieste accodate senza riempire la coda: nuovo caricamento dopo minDelay ms;</li>
+ * <li>nessuna richiesta accodata (nessuna richiesta o solo richieste gia' in elaborazione): attesa con backoff esponenziale da minDelay a maxDelay ms.</li>
+ * </ul>
+ * L'attesa viene interrotta in caso di {@link #wakeUp()}.
+ */
+public class BackoffPollScheduler implements FcaPollScheduler {
+
+	private static final Logger logger = LogManager.getLogger(Fca.class.getName());
+
+	private final long minDelay;
+	private final long maxDelay;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition wakeUpCondition = lock.newCondition();
+
+	private long backoffDelay; // attesa corrente in caso di caricamenti a vuoto
+	private long nextDelay; // attesa prima del prossimo caricamento
+	private boolean waitForCapacity = false; // prossimo caricamento appena si libera spazio sulla coda
+	private volatile boolean capacityAvailable = false; // spazio liberato sulla coda dall'inizio dell'ultimo caricamento
+	private boolean wakeUpRequested = false;
+
+	/**
+	 * Costruttore
+	 * @param minDelay Attesa minima (in ms) fra due caricamenti
+	 * @param maxDelay Attesa massima (in ms) fra due caricamenti
+	 */
+	public BackoffPollScheduler(long minDelay, long maxDelay) {
+		this.maxDelay = Math.max(0, maxDelay);
+		this.minDelay = Math.min(Math.max(0, minDelay), this.maxDelay);
+		this.backoffDelay = this.minDelay;
+		this.nextDelay = this.minDelay;
+	}
+
+	@Override
+	public void onPollCompleted(int found, int enqueued, int maxItems) {
+		lock.lock();
+		try {
+			if (enqueued >= maxItems) {
+				// coda piena (anche senza richieste accodate, in caso di corsia piena), ulteriori richieste presumibilmente ancora da caricare
+				backoffDelay = minDelay;
+				waitForCapacity = true;
+				nextDelay = maxDelay;
+			}
+			else if (enqueued > 0) {
+				backoffDelay = minDelay;
+				waitForCapacity = false;
+				nextDelay = minDelay;
+			}
+			else {
+				// caricamento a vuoto (o solo richieste gia' in elaborazione)
+				waitForCapacity = false;
+				nextDelay = backoffDelay;
+				backoffDelay = Math.min(Math.max(backoffDelay * 2, 1), maxDelay);
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void onPollFailed() {
+		lock.lock();
+		try {
+			waitForCapacity = false;
+			nextDelay = maxDelay;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void onCapacityAvailable() {
+		// lo spazio liberato viene registrato anche durante il caricamento (prima di onPollCompleted), altrimenti la notifica andrebbe persa
+		// e il caricamento successivo avverrebbe solo dopo maxDelay ms
+		if (capacityAvailable)
+			return;
+
+		lock.lock();
+		try {
+			capacityAvailable = true;
+			wakeUpCondition.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void wakeUp() {
+		lock.lock();
+		try {
+			wakeUpRequested = true;
+			backoffDelay = minDelay;
+			wakeUpCondition.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void awaitNextPoll() throws InterruptedException {
+		lock.lock();
+		try {
+			if (logger.isDebugEnabled())
+				logger.debug("BackoffPollScheduler: next poll in " + nextDelay + " millis" + (waitForCapacity ? " (or as soon as queue capacity is available)" : "") + "...");
+
+			long remaining = TimeUnit.MILLISECONDS.toNanos(nextDelay);
+			while (!wakeUpRequested && !(waitForCapacity && capacityAvailable) && remaining > 0)
+				remaining = wakeUpCondition.awaitNanos(remaining);
+
+			wakeUpRequested = false;
+			capacityAvailable = false;
+			waitForCapacity = false;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+}
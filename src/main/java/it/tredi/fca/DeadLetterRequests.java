@@ -0,0 +1,102 @@
+package it.tredi.fca;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.tredi.fca.entity.FcsRequestResult;
+
+/**
+ * Mantiene le richieste scartate (fallite per il numero massimo di tentativi). Le richieste scartate sono escluse dall'elaborazione fino a quando non
+ * vengono rimosse dall'implementazione di FCA o da un operatore (vedi {@link Fca#clearDeadLetter(String)}).
+ */
+public class DeadLetterRequests {
+
+	private static final Logger logger = LogManager.getLogger(Fca.class.getName());
+
+	// Singleton
+	private static DeadLetterRequests instance = null;
+
+	// identificativo del documento -> esito dell'ultimo tentativo
+	private Map<String, FcsRequestResult> deadLetters;
+
+	/**
+	 * Costruttore privato
+	 */
+	private DeadLetterRequests() {
+		this.deadLetters = new ConcurrentHashMap<String, FcsRequestResult>();
+	}
+
+	/**
+	 * Ritorna l'oggetto contenente la lista di richieste scartate
+	 * @return
+	 */
+	public static DeadLetterRequests getInstance() {
+		if (instance == null) {
+			synchronized (DeadLetterRequests.class) {
+				if (instance == null) {
+					if (logger.isInfoEnabled())
+						logger.info("DeadLetterRequests instance is null... create one");
+					instance = new DeadLetterRequests();
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Aggiunta di una richiesta fra quelle scartate
+	 * @param result Esito dell'ultimo tentativo di elaborazione
+	 */
+	public void addRequest(FcsRequestResult result) {
+		if (result != null && result.getDocId() != null && !result.getDocId().isEmpty())
+			deadLetters.put(result.getDocId(), result);
+	}
+
+	/**
+	 * Eliminazione di una richiesta da quelle scartate (la richiesta potra' essere nuovamente elaborata)
+	 * @param idReq
+	 * @return true se la richiesta risultava scartata
+	 */
+	public boolean removeRequest(String idReq) {
+		return idReq != null && deadLetters.remove(idReq) != null;
+	}
+
+	/**
+	 * Eliminazione di tutte le richieste scartate
+	 */
+	public void clear() {
+		deadLetters.clear();
+	}
+
+	/**
+	 * Ritorna true se la richiesta specificata risulta fra quelle scartate
+	 * @param idReq
+	 * @return
+	 */
+	public boolean containsRequest(String idReq) {
+		return idReq != null && deadLetters.containsKey(idReq);
+	}
+
+	/**
+	 * Ritorna il numero di richieste scartate
+	 * @return
+	 */
+	public int countRequests() {
+		return deadLetters.size();
+	}
+
+	/**
+	 * Ritorna l'elenco delle richieste scartate (copia non modificabile, esito dell'ultimo tentativo di ogni richiesta)
+	 * @return
+	 */
+	public List<FcsRequestResult> listRequests() {
+		return Collections.unmodifiableList(new ArrayList<FcsRequestResult>(deadLetters.values()));
+	}
+
+}
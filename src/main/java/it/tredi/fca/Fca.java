@@ -1,22 +1,28 @@
 package it.tredi.fca;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.net.SocketTimeoutException;
+import java.io.File;
 import java.security.AccessControlException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import it.tredi.fca.entity.FcsRequest;
-import it.tredi.fcs.socket.commands.HeaderRequest;
-import it.tredi.fcs.socket.commands.HeaderResponse;
-import it.tredi.fcs.socket.commands.Protocol;
+import it.tredi.fca.entity.FcsRequestResult;
+import it.tredi.fca.metrics.FcaMetrics;
+import it.tredi.fca.metrics.FcaMetricsExporter;
+import it.tredi.fca.metrics.LoggingMetricsExporter;
+import it.tredi.fca.selector.FcsHostSelector;
 
 /**
  * Classe astratta FCA: Smistamento richieste verso pool FCS
@@ -28,17 +34,76 @@ public abstract class Fca {
 	
 	public static final int SOCKET_CONNECT_TIMEOUT_DEFAULT_VALUE = 2000;
 
-	private static int lastIndex = 0;
+	// attesa massima (in ms) su coda piena prima di verificare la richiesta di arresto del servizio
+	private static final int ENQUEUE_STOP_CHECK_INTERVAL = 1000;
+
+	// attesa (in ms) prima di un nuovo inserimento di una richiesta da ripetere in caso di corsia piena
+	private static final int RETRY_REQUEUE_DELAY = 100;
+
+	/** Selettore degli host FCS (condiviso fra tutti i thread di invoker) */
+	private static volatile FcsHostSelector fcsHostSelector = null;
+
+	/** Istanza di FCA in esecuzione (arresto del servizio tramite {@link #stop(String[])}) */
+	private static volatile Fca runningInstance = null;
 	
 	/**
 	 * Coda condivisa (e sincronizzata) fra main FCA (che popola la coda con le richieste di indicizzazione/conversione) e vari thread di invoker (che prelevano le richieste
-	 * ed invocano un host FCS)
+	 * ed invocano un host FCS). Le richieste vengono prelevate in base alla corsia di priorita' (vedi {@link LaneBlockingQueue})
 	 */
-	private BlockingQueue<FcsRequest> fcsRequestQueue = null;
+	private volatile LaneBlockingQueue fcsRequestQueue = null;
+
+	/** Pianificazione dei cicli di caricamento delle richieste pendenti */
+	private volatile FcaPollScheduler pollScheduler = null;
+
+	/** Modalita' di esecuzione degli invoker */
+	private FcsInvokerEngine invokerEngine = null;
+
+	/** Notifica asincrona degli esiti delle elaborazioni */
+	private FcsResultDispatcher resultDispatcher = null;
+
+	/** Politica di ripetizione delle richieste fallite */
+	private volatile FcsRetryPolicy retryPolicy = null;
+	private volatile FcsRequestPrefilter requestPrefilter = null;
+
+	/** Pianificazione dei nuovi tentativi di elaborazione delle richieste fallite */
+	private ScheduledExecutorService retryScheduler = null;
+
+	/** Richieste in attesa di un nuovo tentativo di elaborazione (identificativo del documento -> richiesta) */
+	private final Map<String, FcsRequest> scheduledRetries = new ConcurrentHashMap<String, FcsRequest>();
+
+	/** Invoker che stanno elaborando le richieste inviate agli host FCS (identificativo del documento -> invoker) */
+	private final Map<String, FcsInvoker> runningInvokers = new ConcurrentHashMap<String, FcsInvoker>();
+
+	/** Richieste caricate tramite {@link #loadFcsPendingRequests()} e non ancora lette dal ciclo principale (accodate nei cicli successivi) */
+	private FcsRequestCursor loadedFcsRequests = null;
+
+	/** Listener per l'invio diretto di richieste da parte delle applicazioni */
+	private FcaSubmissionListener submissionListener = null;
+
+	/** Listener per i comandi di amministrazione (porta distinta da quella di invio delle richieste) */
+	private FcaAdminListener adminListener = null;
+
+	/** Ricaricamento automatico della configurazione in caso di modifica del file di properties */
+	private FcaConfigWatcher configWatcher = null;
+
+	/** Esportazione periodica delle metriche di FCA */
+	private FcaMetricsExporter metricsExporter = null;
+	private ScheduledExecutorService metricsScheduler = null;
+
+	/** Journal delle richieste accodate, in elaborazione e completate (ripristino al riavvio) */
+	private volatile FcaJournal journal = null;
 
 	/** Shutdown hook thread instance */
 	private FcaShutdownHook shutdownHook;
 
+	/** Richiesta di arresto del servizio (e modalita' di arresto: completamento delle richieste accodate o rilascio) */
+	private volatile boolean stopRequested = false;
+	private volatile boolean drainRequested = false;
+
+	/** Servizio in esecuzione e relativo completamento (termine del metodo run) */
+	private volatile boolean running = false;
+	private final CountDownLatch terminated = new CountDownLatch(1);
+
 	public Fca() throws Exception {
 
 		if (logger.isInfoEnabled()) {
@@ -55,6 +120,7 @@ public abstract class Fca {
 
 		// istanzia la lista di richieste pendenti
 		InProgressRequests.getInstance();
+		DeadLetterRequests.getInstance();
 	}
 	
 	/**
@@ -99,11 +165,13 @@ public abstract class Fca {
 		}
 
 		try {
+			running = true;
+			runningInstance = this;
 			if (logger.isInfoEnabled())
 				logger.info("FCA: Service Started!");
 
-			// Inizializzazione degli host FCS
-			//initializeFcsHosts();
+			// Avvio del monitor degli host FCS (verifica immediata di tutti gli host e successivo controllo periodico in background)
+			FcsHealthMonitor.getInstance().start();
 
 			// Assegnazione delle dimensione alla coda condivisa (e sincronizzata). La dimensione corrisponde al numero totale di thread di indicizzazione/conversione
 			// configurati sugli host FCS
@@ -111,48 +179,122 @@ public abstract class Fca {
 			for (FcsHost fcsHost : FcaConfig.getInstance().getFcsPool()) {
 				queueSize += fcsHost.getQueueMaxSize();
 			}
-			fcsRequestQueue = new ArrayBlockingQueue<FcsRequest>(queueSize);
+			fcsRequestQueue = new LaneBlockingQueue(queueSize, FcaConfig.getInstance().getFcaQueueLaneWeights());
+			pollScheduler = createPollScheduler();
+
+			// Metriche della pipeline di smistamento (JMX ed esportazione periodica)
+			FcaMetrics.getInstance().setQueueDepth(fcsRequestQueue::size);
+			if (FcaConfig.getInstance().isFcaMetricsJmx())
+				FcaMetrics.getInstance().registerMBeans();
+			startMetricsExporter();
+
+			resultDispatcher = new FcsResultDispatcher(this);
+			resultDispatcher.start();
+
+			// Eventuale journal delle richieste (lettura degli eventi registrati prima dell'arresto precedente)
+			if (FcaConfig.getInstance().getFcaJournalPath() != null) {
+				FcaJournal fcaJournal = new FcaJournal(new File(FcaConfig.getInstance().getFcaJournalPath()), FcaConfig.getInstance().getFcaJournalSize(),
+						FcaConfig.getInstance().getFcaJournalSync(), FcaConfig.getInstance().getFcaJournalSyncInterval());
+				fcaJournal.open();
+				journal = fcaJournal;
+			}
+
+			// Verifica preventiva delle richieste (regole di indicizzazione e conversione di FCS)
+			requestPrefilter = createRequestPrefilter();
+
+			// Nuovi tentativi di elaborazione delle richieste fallite (backoff esponenziale)
+			retryPolicy = createRetryPolicy();
+			retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "FcsRetryScheduler");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+			// Eventuale listener per l'invio diretto di richieste (senza attendere il successivo caricamento)
+			if (FcaConfig.getInstance().getFcaSubmitPort() > 0) {
+				submissionListener = new FcaSubmissionListener(this, FcaConfig.getInstance().getFcaSubmitPort());
+				submissionListener.start();
+			}
+			// Eventuale listener per i comandi di amministrazione
+			if (FcaConfig.getInstance().getFcaAdminPort() > 0) {
+				adminListener = new FcaAdminListener(this, FcaConfig.getInstance().getFcaAdminPort());
+				adminListener.start();
+			}
+			// Eventuale ricaricamento automatico della configurazione
+			if (FcaConfig.getInstance().isFcaConfigWatch()) {
+				File propertiesFile = FcaConfig.getPropertiesFile();
+				if (propertiesFile != null) {
+					configWatcher = new FcaConfigWatcher(this, propertiesFile);
+					configWatcher.start();
+				}
+				else
+					logger.warn("FCA: configuration file not accessible on file system... fca.config.watch ignored");
+			}
 			if (logger.isInfoEnabled())
 				logger.info("FCA: blocking queue size = " + queueSize);
 
-			// Per ogni thread definito per gli host FCS viene generato un thread di invoker che si mette in attesa di leggere delle richieste di indicizzazione/conversione
-			// dalla coda condivisa
-			for(int i = 0; i < queueSize; i++) {
-				FcsInvoker fcsInvoker = new FcsInvoker(fcsRequestQueue);
-				new Thread(fcsInvoker, "Invoker" + i).start();
-			}
+			// Avvio degli invoker che si mettono in attesa di leggere delle richieste di indicizzazione/conversione dalla coda condivisa
+			invokerEngine = createInvokerEngine();
+			invokerEngine.start(this, fcsRequestQueue, queueSize);
 
-			while (true) {
+			// Ripristino delle richieste registrate sul journal (prima del caricamento delle richieste pendenti)
+			if (journal != null)
+				recoverFromJournal(journal);
+
+			while (!stopRequested) {
 				try {
-					List<FcsRequest> fcsRequests = loadFcsPendingRequests();
-					if (logger.isInfoEnabled())
-						logger.info("FCA: found " + (fcsRequests != null ? fcsRequests.size() : "0") + " FCS requests!");
-
-					if (fcsRequests != null && fcsRequests.size() > 0) {
-						for (FcsRequest fcsRequest : fcsRequests) {
-							// Verifico che la richista corrente non risulti gia' presa in carico da uno specifico host FCS
-							if (!isInProgressFcsRequest(fcsRequest)) {
-								// Inserisco la request nella coda. In caso di cosa piena il processo main si mette in attesa che una delle richieste pendenti venga presa in carico da
-								// un threa Invoker
-								fcsRequestQueue.put(fcsRequest);
-								if (logger.isInfoEnabled())
-									logger.info("FCA: put " + fcsRequest.getDocId() + " request on blocking queue...");
-								InProgressRequests.getInstance().addRequest(fcsRequest.getDocId());
+					// vengono caricate al massimo tante richieste quante ne possono essere accodate (richieste gia' in elaborazione escluse)
+					int maxItems = Math.max(1, fcsRequestQueue.remainingCapacity());
+					int found = 0;
+					int enqueued = 0;
+					int deferred = 0;
+					long pollStart = System.nanoTime();
+					FcsRequestCursor cursor = openFcsPendingRequests(maxItems);
+					if (cursor != null) {
+						try {
+							while (enqueued < maxItems && !stopRequested && cursor.hasNext()) {
+								FcsRequest fcsRequest = cursor.next();
+								found++;
+
+								// corsia piena: la richiesta viene rinviata al caricamento successivo senza attendere, in modo che le richieste
+								// delle altre corsie (es. interattive dopo un accodamento massivo) vengano comunque accodate
+								if (fcsRequest != null && fcsRequestQueue.remainingCapacity(fcsRequest.getLane()) == 0) {
+									deferred++;
+									if (fcsRequestQueue.remainingCapacity() == 0)
+										break;
+									continue;
+								}
+
+								// Inserisco la request nella coda (se non gia' presa in carico da uno specifico host FCS). Le richieste completate senza
+								// invio agli host FCS (verifica preventiva) non impegnano la coda e non vengono conteggiate fra quelle accodate
+								if (!acquireFcsRequest(fcsRequest) || skipFcsRequest(fcsRequest))
+									continue;
+								if (enqueueFcsRequest(fcsRequest, false))
+									enqueued++;
 							}
 						}
+						finally {
+							cursor.close();
+						}
 					}
-					else {
-						// sleep di FCA prima di verificare la presenza di nuovi documenti da elaborare (indicizzazione/conversione)
-						if (logger.isInfoEnabled())
-							logger.info("FCA: sleep for " + FcaConfig.getInstance().getFcaRefreshDelay() + " millis...");
-						Thread.sleep(FcaConfig.getInstance().getFcaRefreshDelay());
-					}
+					FcaMetrics.getInstance().recordPoll(pollStart);
+					if (logger.isInfoEnabled())
+						logger.info("FCA: found " + found + " FCS requests (" + enqueued + " put on blocking queue, " + deferred + " deferred on full lanes)!");
+
+					// attesa di FCA prima di verificare la presenza di nuovi documenti da elaborare (indicizzazione/conversione). In caso di
+					// richieste rinviate la coda risulta piena per il caricamento corrente (nuovo caricamento appena si libera spazio)
+					pollScheduler.onPollCompleted(found, enqueued, (deferred > 0) ? enqueued : maxItems);
+					pollScheduler.awaitNextPoll();
 				}
 				catch (Exception e) {
 					logger.error("FCA: Got FATAL exception... " + e.getMessage() + "! Wait " + FcaConfig.getInstance().getFcaRefreshDelay() + " ms. and retry...", e);
-					Thread.sleep(FcaConfig.getInstance().getFcaRefreshDelay());
+					pollScheduler.onPollFailed();
+					pollScheduler.awaitNextPoll();
 				}
 			}
+
+			// arresto del servizio richiesto: completamento (o rilascio) delle richieste e attesa delle elaborazioni in corso
+			terminate(drainRequested);
 		}
 		catch (Exception e) {
 			onRunException(e);
@@ -160,6 +302,23 @@ public abstract class Fca {
 			throw e;
 		}
 		finally {
+			if (submissionListener != null)
+				submissionListener.stop();
+			if (adminListener != null)
+				adminListener.stop();
+			if (retryScheduler != null)
+				retryScheduler.shutdownNow();
+			if (configWatcher != null)
+				configWatcher.stop();
+			if (invokerEngine != null)
+				invokerEngine.stop();
+			if (resultDispatcher != null)
+				resultDispatcher.stop();
+			if (journal != null)
+				journal.close();
+			stopMetricsExporter();
+			FcaMetrics.getInstance().unregisterMBeans();
+
 			onRunFinally();
 
 			if (shutdownHook != null) {
@@ -172,141 +331,684 @@ public abstract class Fca {
 				}
 				this.shutdownHook = null;
 			}
+
+			running = false;
+			if (runningInstance == this)
+				runningInstance = null;
+			terminated.countDown();
 		}
 	}
 
 	/**
-	 * Metodo chiamato per arrestare il servizio
+	 * Metodo chiamato per arrestare il servizio: arresto controllato dell'istanza in esecuzione (vedi {@link #shutdown()} e {@link #drain()}, in base
+	 * a fca.shutdown.drain) e chiusura della JVM
 	 */
 	public static void stop(String[] args) {
+		Fca fca = runningInstance;
+		if (fca != null) {
+			try {
+				fca.awaitShutdown(FcaConfig.getInstance().isFcaShutdownDrain());
+			}
+			catch (Exception e) {
+				logger.error("Fca.stop(): got exception on graceful shutdown... " + e.getMessage(), e);
+			}
+		}
 		logger.info("Fca.stop(): exit method now call System.exit(0)");
 		System.exit(0);
 	}
 
 	/**
-	 * Eventuali azioni da compiere in caso di eccezione su RUN di FCA
-	 * @param e
+	 * Arresto controllato del servizio: interruzione del caricamento delle richieste pendenti, rilascio delle richieste accodate (che verranno
+	 * ricaricate al riavvio) e attesa delle elaborazioni in corso sugli host FCS per al massimo fca.shutdown.timeout ms. Il metodo ritorna al
+	 * termine del metodo {@link #run()}.
+	 * @throws InterruptedException
 	 */
-	public abstract void onRunException(Exception e);
+	public void shutdown() throws InterruptedException {
+		awaitShutdown(false);
+	}
 
 	/**
-	 * Eventuali azioni da compiere su finally del RUN di FCA (chiusura del servizio)
+	 * Arresto del servizio al completamento delle richieste gia' accodate (es. riavvio a rotazione delle istanze di FCA): il caricamento di nuove
+	 * richieste viene interrotto e le richieste accodate (o in attesa di un nuovo tentativo) vengono elaborate entro fca.shutdown.timeout ms.
+	 * Il metodo ritorna al termine del metodo {@link #run()}.
+	 * @throws InterruptedException
 	 */
-	public abstract void onRunFinally();
+	public void drain() throws InterruptedException {
+		awaitShutdown(true);
+	}
 
 	/**
-	 * Caricamento di tutte le richieste di indicizzazione/conversione pendenti
-	 * @return
-	 * @throws Exception
+	 * Richiesta (asincrona) di arresto del servizio. Da utilizzare al posto di {@link #shutdown()} e {@link #drain()} sui thread gestiti da FCA
+	 * (es. notifiche degli esiti), che altrimenti rimarrebbero in attesa della propria chiusura.
+	 * @param drain true per completare le richieste gia' accodate, false per rilasciarle
 	 */
-	public abstract List<FcsRequest> loadFcsPendingRequests() throws Exception;
+	public void requestShutdown(boolean drain) {
+		if (stopRequested)
+			return;
+
+		drainRequested = drain;
+		stopRequested = true;
+		if (logger.isInfoEnabled())
+			logger.info("FCA: " + (drain ? "drain" : "shutdown") + " requested... stop loading pending requests");
+		wakeUp();
+	}
 
 	/**
-	 * Inizializzazione di tutti gli host FCS: Verifica se effettivamente attivi (server socket in ascolto) ed invio di tutti i parametri di
-	 * configurazione
-	 * @throws Exception Eccezione in caso di host che non risponde
-	 * @deprecated Chiamata a isAliveFcsHost ad ogni nuova richiesta in fase di individuazione dell'host FCS da chiamare (problemi in caso di riavvio di un host FCS)
+	 * Ritorna true se e' stato richiesto l'arresto del servizio
+	 * @return
 	 */
-	private void initializeFcsHosts() throws Exception {
-		for (FcsHost fcsHost : FcaConfig.getInstance().getFcsPool()) {
-			if (!isAliveFcsHost(fcsHost))
-				throw new Exception("ERROR: Host " + fcsHost.toString() + "is not ALIVE... FCA stops execution!");
-		}
+	public boolean isShutdownRequested() {
+		return stopRequested;
 	}
 
 	/**
-	 * Restituisce l'elenco dei documenti che sono attualmente in fase di
-	 * elaborazione da parte degli host FCS
-	 * @return
+	 * Richiesta di arresto del servizio e attesa del termine del metodo {@link #run()}
+	 * @param drain
+	 * @throws InterruptedException
 	 */
-	public List<String> getInProgressRequests() {
-		return InProgressRequests.getInstance().listRequests();
+	private void awaitShutdown(boolean drain) throws InterruptedException {
+		requestShutdown(drain);
+		if (running)
+			terminated.await();
 	}
 
 	/**
-	 * Verifica che l'host FCS selezionato sia effettivamente attivo (server
-	 * socket in ascolto)
-	 * @param host
-	 * @return
+	 * Sequenza di arresto controllato del servizio (eseguita dal metodo {@link #run()} al termine del ciclo di caricamento)
+	 * @param drain true per completare le richieste accodate, false per rilasciarle
+	 * @throws Exception
 	 */
-	private static boolean isAliveFcsHost(FcsHost host) {
+	private void terminate(boolean drain) throws Exception {
 		long startTime = System.currentTimeMillis();
-		boolean isAlive = false;
-		Socket client = null;
-		DataInputStream dis = null;
-		DataOutputStream dos = null;
+		long deadline = startTime + FcaConfig.getInstance().getFcaShutdownTimeout();
+
+		// nessuna nuova richiesta da parte delle applicazioni
+		if (submissionListener != null)
+			submissionListener.stop();
+
+		if (!drain) {
+			// rilascio delle richieste accodate e di quelle in attesa di un nuovo tentativo (verranno ricaricate dalla sorgente dati)
+			retryScheduler.shutdownNow();
+			List<FcsRequest> released = new ArrayList<FcsRequest>(scheduledRetries.values());
+			scheduledRetries.clear();
+			fcsRequestQueue.drainTo(released);
+			for (FcsRequest fcsRequest : released)
+				releaseFcsRequest(fcsRequest);
+			if (logger.isInfoEnabled())
+				logger.info("FCA: shutdown... " + released.size() + " queued requests released");
+		}
+
+		// attesa del completamento delle richieste in elaborazione (e accodate in caso di drain)
+		FcsSlotCredits credits = FcsSlotCredits.getInstance();
 		try {
-			client = new Socket();
-			if (FcaConfig.getInstance().getFcsAliveTimeout() > 0)
-				client.setSoTimeout(FcaConfig.getInstance().getFcsAliveTimeout());
-			client.connect(new InetSocketAddress(host.getHost(), host.getPort()), SOCKET_CONNECT_TIMEOUT_DEFAULT_VALUE);
-
-			dis = new DataInputStream(client.getInputStream());
-			dos = new DataOutputStream(client.getOutputStream());
-
-			Protocol protocol = new Protocol(dis, dos);
-			protocol.sendHeader(HeaderRequest.ALIVE_HEADER.bytes());
-
-			// attesa di risposta da parte dell'host FCS
-			HeaderResponse response = HeaderResponse.getHeaderResponse(protocol.receiveHeader());
-			if (response == HeaderResponse.ACK_HEADER) {
-				isAlive = true; // risposta positiva del server (server attivo e
-								// correttamente configurato)
+			while (true) {
+				long version = credits.getVersion();
+				int inProgress = InProgressRequests.getInstance().countRequests();
+				long remaining = deadline - System.currentTimeMillis();
+				if (inProgress == 0 || remaining <= 0)
+					break;
+				if (logger.isDebugEnabled())
+					logger.debug("FCA: shutdown... waiting for " + inProgress + " in-progress requests (" + remaining + " ms. left)");
+				credits.awaitChange(version, Math.min(remaining, 1000));
 			}
-			else if (response == HeaderResponse.TO_CONFIG_HEADER) {
-				// server attivo, ma mancano i parametri di attivazione... occorre spedirli al server
-
-				// invio dei parametri di configurazione di FCS (recuperati da file di properties di FCA)
-				protocol.sendString(FcaConfig.getInstance().getJsonFcsConfig());
-				protocol.sendHeader(HeaderRequest.FCS_CONF_HEADER.bytes());
+		}
+		catch (InterruptedException e) {
+			logger.warn("FCA: shutdown interrupted... " + e.getMessage());
+			Thread.currentThread().interrupt();
+		}
 
-				// attesa di risposta da parte dell'host FCS
-				response = HeaderResponse.getHeaderResponse(protocol.receiveHeader());
-				if (response == HeaderResponse.ACK_HEADER)
-					isAlive = true; // risposta positiva del server (server attivo e correttamente configurato)
-				else // riscontrato problema durante la fase di invio configurazioni a server FCS
-					logger.error("Fca.isAliveHost(): unexpected server configuration response... " + response.header());
+		invokerEngine.stop();
+		retryScheduler.shutdownNow();
+		resultDispatcher.stop();
+		resultDispatcher.awaitTermination(FcaConfig.getInstance().getFcaCallbackLinger() + 1000);
 
+		// richieste non completate entro il timeout (mantenute sull'eventuale journal per il ripristino al riavvio)
+		List<String> abandoned = InProgressRequests.getInstance().listRequests();
+		if (!abandoned.isEmpty()) {
+			logger.warn("FCA: shutdown... " + abandoned.size() + " requests abandoned after " + (System.currentTimeMillis() - startTime) + " ms. " + abandoned);
+			try {
+				onRequestsAbandoned(abandoned);
 			}
-			else {
-				// rispsta inaspettata da perte del server
-				logger.error("Fca.isAliveHost(): unable to recognize server response... " + response.header());
+			catch (Exception e) {
+				logger.error("FCA: got exception on onRequestsAbandoned()... " + e.getMessage(), e);
 			}
 		}
-		catch (SocketTimeoutException e) {
-			logger.error("Fca.isAliveFcsHost(): got socket timeout exception on " + host.getHost() + ":" + host.getPort() + "... " + e.getMessage());
-		}
-		catch (Exception e) {
-			logger.error("Fca.isAliveFcsHost(): got exception on " + host.getHost() + ":" + host.getPort() + "... " + e.getMessage());
+		if (logger.isInfoEnabled())
+			logger.info("FCA: Service Stopped in " + (System.currentTimeMillis() - startTime) + " ms.!");
+	}
+
+	/**
+	 * Notifica delle richieste non completate in fase di arresto del servizio (elaborazioni in corso oltre fca.shutdown.timeout ms). Le richieste
+	 * rilasciate senza essere inviate agli host FCS non vengono notificate.
+	 * Di default non viene eseguita alcuna azione.
+	 * @param docIds Identificativi dei documenti abbandonati
+	 */
+	public void onRequestsAbandoned(List<String> docIds) {
+	}
+
+	/**
+	 * Istanzia la pianificazione dei cicli di caricamento delle richieste pendenti. Di default viene utilizzata una attesa adattiva
+	 * (backoff esponenziale da fca.refresh.minDelay a fca.refresh.delay ms in caso di caricamenti a vuoto).
+	 * @return
+	 * @throws Exception
+	 */
+	protected FcaPollScheduler createPollScheduler() throws Exception {
+		return new BackoffPollScheduler(FcaConfig.getInstance().getFcaRefreshMinDelay(), FcaConfig.getInstance().getFcaRefreshDelay());
+	}
+
+	/**
+	 * Istanzia la modalita' di esecuzione degli invoker: un thread per ogni slot di elaborazione degli host FCS (default) o virtual thread
+	 * (fca.invoker.engine=virtual)
+	 * @return
+	 * @throws Exception
+	 */
+	protected FcsInvokerEngine createInvokerEngine() throws Exception {
+		if (FcaConfig.getInstance().isFcaVirtualThreadInvokers())
+			return new VirtualThreadInvokerEngine();
+		else
+			return new ThreadPerSlotInvokerEngine();
+	}
+
+	/**
+	 * Istanzia la politica di ripetizione delle richieste fallite. Di default vengono eseguiti al massimo fcs.retry.maxAttempts tentativi, con attesa
+	 * esponenziale (da fcs.retry.delay a fcs.retry.maxDelay ms) e jitter casuale.
+	 * @return
+	 * @throws Exception
+	 */
+	protected FcsRetryPolicy createRetryPolicy() throws Exception {
+		return new FcsRetryPolicy(FcaConfig.getInstance().getFcsRetryMaxAttempts(), FcaConfig.getInstance().getFcsRetryDelay(), FcaConfig.getInstance().getFcsRetryMaxDelay());
+	}
+
+	/**
+	 * Istanzia la verifica preventiva delle richieste (fca.prefilter.enabled): di default vengono applicate le regole di indicizzazione e conversione
+	 * inviate agli host FCS (fcs.index.*, fcs.convert.*) ai metadati dei file forniti sulla richiesta.
+	 * @return Verifica preventiva delle richieste, null per disabilitare la verifica
+	 * @throws Exception
+	 */
+	protected FcsRequestPrefilter createRequestPrefilter() throws Exception {
+		if (FcaConfig.getInstance().isFcaPrefilterEnabled()) {
+			// i documenti completati senza invio agli host FCS devono essere registrati dall'implementazione (vedi onRequestsCompleted)
+			if (getClass().getMethod("onRequestsCompleted", List.class).getDeclaringClass() == Fca.class)
+				logger.warn("FCA: fca.prefilter.enabled without onRequestsCompleted() implementation... skipped documents will be loaded again on every poll");
+			return new FcsRequestPrefilter(FcaConfig.getInstance().getFcsConfig());
 		}
-		finally {
-			// chiusura dei buffer e del socket
+		else
+			return null;
+	}
+
+	/**
+	 * Istanzia l'exporter delle metriche di FCA (invocato ogni fca.metrics.interval ms). Di default le metriche vengono esportate sul log
+	 * applicativo.
+	 * @return Exporter delle metriche, null per disabilitare l'esportazione
+	 * @throws Exception
+	 */
+	protected FcaMetricsExporter createMetricsExporter() throws Exception {
+		return new LoggingMetricsExporter();
+	}
+
+	/**
+	 * Avvio dell'esportazione periodica delle metriche (se fca.metrics.interval > 0)
+	 * @throws Exception
+	 */
+	private void startMetricsExporter() throws Exception {
+		int interval = FcaConfig.getInstance().getFcaMetricsInterval();
+		if (interval <= 0)
+			return;
+		metricsExporter = createMetricsExporter();
+		if (metricsExporter == null)
+			return;
+
+		final FcaMetricsExporter exporter = metricsExporter;
+		metricsScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "FcaMetricsExporter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		metricsScheduler.scheduleAtFixedRate(() -> {
 			try {
-				if (dis != null)
-					dis.close();
+				exporter.export(FcaMetrics.getInstance());
 			}
 			catch (Exception e) {
-				logger.warn("Fca.isAliveFcsHost(): unable to close InputStream... " + e.getMessage());
+				logger.error("FCA: got exception on metrics export... " + e.getMessage(), e);
 			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Arresto dell'esportazione periodica delle metriche (con esportazione finale delle metriche)
+	 */
+	private void stopMetricsExporter() {
+		if (metricsScheduler != null) {
+			metricsScheduler.shutdownNow();
+			metricsScheduler = null;
+		}
+		if (metricsExporter != null) {
 			try {
-				if (dos != null)
-					dos.close();
+				metricsExporter.export(FcaMetrics.getInstance());
+				metricsExporter.close();
 			}
 			catch (Exception e) {
-				logger.warn("Fca.isAliveFcsHost(): unable to close OutputStream... " + e.getMessage());
+				logger.error("FCA: got exception on metrics exporter closure... " + e.getMessage(), e);
 			}
+			metricsExporter = null;
+		}
+	}
+
+	/**
+	 * Ricaricamento della configurazione di FCA senza arresto del servizio: gli host FCS aggiunti vengono verificati e inclusi nella selezione, gli
+	 * host rimossi completano le elaborazioni in corso senza ricevere nuove richieste. La dimensione della coda condivisa e il numero di invoker
+	 * vengono adeguati al nuovo numero totale di slot di elaborazione.
+	 * @throws Exception Errore di lettura o configurazione non valida (viene mantenuta la configurazione corrente)
+	 */
+	public synchronized void reloadConfig() throws Exception {
+		List<FcsHost> previous = FcaConfig.getInstance().getFcsPool();
+		List<FcsHost> pool = FcaConfig.reload().getFcsPool();
+
+		// host rimossi dal pool: completamento delle elaborazioni in corso
+		for (FcsHost fcsHost : previous) {
+			if (!pool.contains(fcsHost)) {
+				if (logger.isInfoEnabled())
+					logger.info("FCA: host " + fcsHost.getHost() + ":" + fcsHost.getPort() + " removed from pool... drain " + fcsHost.getQueueInProgressSize() + " in-progress requests");
+				fcsHost.drain();
+			}
+		}
+
+		int queueSize = 0;
+		for (FcsHost fcsHost : pool)
+			queueSize += fcsHost.getQueueMaxSize();
+		if (fcsRequestQueue != null)
+			fcsRequestQueue.setCapacity(queueSize);
+		if (invokerEngine != null)
+			invokerEngine.resize(queueSize);
+		retryPolicy = createRetryPolicy();
+		requestPrefilter = createRequestPrefilter();
+		checkFcsConfigVersion(pool);
+		if (FcaConfig.getInstance().isFcaMetricsJmx())
+			FcaMetrics.getInstance().registerMBeans();
+
+		// verifica immediata degli host aggiunti e nuovo caricamento delle richieste pendenti
+		FcsHealthMonitor.getInstance().requestProbe();
+		wakeUp();
+
+		if (logger.isInfoEnabled())
+			logger.info("FCA: configuration reloaded... blocking queue size = " + queueSize);
+	}
+
+	/**
+	 * Verifica della versione dei parametri di attivazione inviati agli host FCS rispetto alla configurazione ricaricata. I parametri di attivazione
+	 * vengono inviati solo su richiesta dell'host (TO_CONFIG), quindi gli host configurati con una versione differente mantengono i parametri
+	 * precedenti fino al riavvio.
+	 * @param pool
+	 * @throws Exception
+	 */
+	private void checkFcsConfigVersion(List<FcsHost> pool) throws Exception {
+		String version = FcaConfig.getInstance().getFcsConfigVersion();
+		for (FcsHost fcsHost : pool) {
+			String configVersion = fcsHost.getConfigVersion();
+			if (configVersion != null && !configVersion.equals(version))
+				logger.warn("FCA: FCS activation parameters changed (version " + configVersion + " -> " + version + ")... host " + fcsHost.getHost() + ":" + fcsHost.getPort() + " must be restarted to apply them");
+		}
+	}
+
+	/**
+	 * Ripristino delle richieste registrate sul journal prima dell'arresto precedente: gli esiti delle richieste completate non ancora notificati
+	 * vengono notificati all'implementazione (senza ripetere l'elaborazione), le richieste accodate o in elaborazione vengono nuovamente accodate.
+	 * @param fcaJournal
+	 * @throws InterruptedException
+	 */
+	private void recoverFromJournal(FcaJournal fcaJournal) throws InterruptedException {
+		// documenti scartati prima dell'arresto precedente: esclusi dall'elaborazione fino alla rimozione
+		for (FcsRequestResult deadLetter : fcaJournal.getDeadLetters())
+			DeadLetterRequests.getInstance().addRequest(deadLetter);
+
+		List<FcsRequestResult> results = fcaJournal.getUnacknowledgedResults();
+		if (!results.isEmpty()) {
+			if (logger.isInfoEnabled())
+				logger.info("FCA: journal recovery... notify " + results.size() + " completed requests");
 			try {
-				if (client != null)
-					client.close();
+				onRequestsCompleted(results);
+				onFcsResultsNotified(results);
 			}
 			catch (Exception e) {
-				logger.warn("Fca.isAliveFcsHost(): unable to close socket connection... " + e.getMessage(), e);
+				logger.error("FCA: got exception on onRequestsCompleted() for recovered requests... " + e.getMessage(), e);
+			}
+		}
+
+		List<FcsRequest> requests = fcaJournal.getPendingRequests();
+		if (!requests.isEmpty()) {
+			if (logger.isInfoEnabled())
+				logger.info("FCA: journal recovery... put " + requests.size() + " pending requests on blocking queue");
+			for (FcsRequest fcsRequest : requests) {
+				if (acquireFcsRequest(fcsRequest) && !skipFcsRequest(fcsRequest))
+					enqueueFcsRequest(fcsRequest, true);
+			}
+		}
+	}
+
+	/**
+	 * Richiede un caricamento immediato delle richieste pendenti (es. da invocare al salvataggio di nuovi documenti da elaborare)
+	 */
+	public void wakeUp() {
+		FcaPollScheduler scheduler = pollScheduler;
+		if (scheduler != null)
+			scheduler.wakeUp();
+	}
+
+	/**
+	 * Notifica di una richiesta prelevata dalla coda condivisa da parte di un invoker (spazio disponibile per nuove richieste)
+	 */
+	void onFcsRequestTaken() {
+		FcaPollScheduler scheduler = pollScheduler;
+		if (scheduler != null)
+			scheduler.onCapacityAvailable();
+	}
+
+	/**
+	 * Notifica di una richiesta elaborata da un host FCS (completata o fallita)
+	 * @param result
+	 */
+	void onFcsRequestProcessed(FcsRequestResult result) {
+		runningInvokers.remove(result.getDocId());
+
+		// la richiesta rimane fra quelle in elaborazione fino al nuovo tentativo (esclusa dai successivi caricamenti). Le richieste completate
+		// senza invio agli host FCS vengono rilasciate alla notifica all'implementazione (vedi onFcsResultsNotified)
+		if (result.isSkipped()) {
+			// nessuna registrazione sul journal (richiesta non accodata)
+		}
+		else if (!result.isSuccess() && scheduleRetry(result)) {
+			result.setRetryScheduled(true);
+		}
+		else {
+			FcaJournal fcaJournal = journal;
+			if (fcaJournal != null) {
+				if (result.isSuccess())
+					fcaJournal.completed(result);
+				else
+					fcaJournal.removed(result.getDocId());
 			}
+			InProgressRequests.getInstance().removeRequest(result.getDocId());
 		}
 
-		if (logger.isDebugEnabled())
-			logger.debug("Fca.isAliveFcsHost() - host= " + host.getHost() + ":" + host.getPort() + " time required: " + (System.currentTimeMillis() - startTime));
-		return isAlive;
+		FcsResultDispatcher dispatcher = resultDispatcher;
+		if (dispatcher != null)
+			dispatcher.add(result);
+	}
+
+	/**
+	 * Notifica dell'invio di una richiesta ad un host FCS da parte di un invoker
+	 * @param fcsInvoker Invoker che elabora la richiesta (interrotto in caso di annullamento della richiesta)
+	 * @param fcsHost
+	 * @param fcsRequest
+	 */
+	void onFcsRequestDispatched(FcsInvoker fcsInvoker, FcsHost fcsHost, FcsRequest fcsRequest) {
+		runningInvokers.put(fcsRequest.getDocId(), fcsInvoker);
+		FcaJournal fcaJournal = journal;
+		if (fcaJournal != null)
+			fcaJournal.dispatched(fcsRequest.getDocId(), fcsHost.getHost() + ":" + fcsHost.getPort());
+	}
+
+	/**
+	 * Scarto di una richiesta annullata o scaduta prima dell'invio ad un host FCS: la richiesta viene rilasciata (senza nuovi tentativi) e notificata
+	 * fra le richieste fallite
+	 * @param fcsRequest
+	 */
+	void onFcsRequestDiscarded(FcsRequest fcsRequest) {
+		Throwable cause = fcsRequest.isCancelled() ? new CancellationException("request cancelled") : new TimeoutException("request deadline expired");
+		logger.warn("FCA: request " + fcsRequest.getDocId() + " discarded before dispatch... " + cause.getMessage());
+		FcaMetrics.getInstance().onRequestDiscarded();
+		onFcsRequestProcessed(new FcsRequestResult(fcsRequest, null, System.currentTimeMillis(), 0, fcsRequest.getAttempts(), false, cause));
+	}
+
+	/**
+	 * Annullamento di una richiesta: se accodata (o in attesa di un nuovo tentativo) la richiesta viene rimossa immediatamente, se in elaborazione
+	 * viene chiusa la connessione verso l'host FCS (lo slot di elaborazione viene rilasciato senza attendere la risposta). La richiesta annullata
+	 * viene notificata fra le richieste fallite (con causa {@link CancellationException}) e non viene ripetuta.
+	 * @param docId Identificativo del documento
+	 * @return true se la richiesta risultava in elaborazione (accodata o inviata ad un host FCS), false altrimenti
+	 */
+	public boolean cancelRequest(String docId) {
+		FcsRequest fcsRequest = InProgressRequests.getInstance().getRequest(docId);
+		if (fcsRequest == null)
+			return false;
+
+		fcsRequest.cancel();
+		if (logger.isInfoEnabled())
+			logger.info("FCA: cancel request " + docId + "...");
+
+		LaneBlockingQueue queue = fcsRequestQueue;
+		if ((queue != null && queue.remove(fcsRequest)) || scheduledRetries.remove(docId, fcsRequest)) {
+			onFcsRequestDiscarded(fcsRequest);
+		}
+		else {
+			// richiesta gia' prelevata da un invoker: interruzione del dialogo in corso (o scarto prima dell'invio)
+			FcsInvoker fcsInvoker = runningInvokers.get(docId);
+			if (fcsInvoker != null)
+				fcsInvoker.abort(fcsRequest);
+		}
+		return true;
+	}
+
+	/**
+	 * Notifica degli esiti delle richieste completate consegnati all'implementazione di FCA (vedi {@link #onRequestsCompleted(List)})
+	 * @param results
+	 */
+	void onFcsResultsNotified(List<FcsRequestResult> results) {
+		FcaJournal fcaJournal = journal;
+		if (fcaJournal != null) {
+			for (FcsRequestResult result : results)
+				fcaJournal.acknowledged(result);
+		}
+		releaseSkippedRequests(results);
+	}
+
+	/**
+	 * Rilascio delle richieste completate senza invio agli host FCS (verifica preventiva) al termine della notifica all'implementazione di FCA,
+	 * anche in caso di errore sulla notifica (il documento potra' essere nuovamente caricato)
+	 * @param results
+	 */
+	void releaseSkippedRequests(List<FcsRequestResult> results) {
+		for (FcsRequestResult result : results) {
+			if (result.isSkipped())
+				InProgressRequests.getInstance().removeRequest(result.getDocId());
+		}
+	}
+
+	/**
+	 * Pianificazione di un nuovo tentativo di elaborazione della richiesta fallita. Superato il numero massimo di tentativi la richiesta viene
+	 * spostata fra le richieste scartate.
+	 * @param result Esito del tentativo fallito
+	 * @return true se e' stato pianificato un nuovo tentativo, false se la richiesta deve essere rilasciata
+	 */
+	private boolean scheduleRetry(FcsRequestResult result) {
+		FcsRetryPolicy policy = retryPolicy;
+		ScheduledExecutorService scheduler = retryScheduler;
+		if (policy == null || scheduler == null || !policy.isEnabled())
+			return false;
+		// nessun nuovo tentativo per le richieste annullate o scadute
+		if (result.getRequest().isCancelled() || result.getRequest().isExpired())
+			return false;
+
+		if (!policy.canRetry(result.getAttempt())) {
+			deadLetter(result);
+			return false;
+		}
+
+		final FcsRequest fcsRequest = result.getRequest();
+		long delay = policy.getRetryDelay(result.getAttempt());
+		logger.warn("FCA: request " + fcsRequest.getDocId() + " failed (attempt " + result.getAttempt() + " of " + policy.getMaxAttempts() + ")... retry in " + delay + " ms.");
+		try {
+			scheduledRetries.put(fcsRequest.getDocId(), fcsRequest);
+			scheduler.schedule(() -> retryFcsRequest(fcsRequest), delay, TimeUnit.MILLISECONDS);
+			FcaMetrics.getInstance().onRequestRetried();
+			return true;
+		}
+		catch (Exception e) {
+			scheduledRetries.remove(fcsRequest.getDocId());
+			logger.error("FCA: unable to schedule retry of request " + fcsRequest.getDocId() + "... " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Nuovo inserimento nella coda condivisa di una richiesta fallita (gia' registrata fra le richieste in elaborazione)
+	 * @param fcsRequest
+	 */
+	private void retryFcsRequest(FcsRequest fcsRequest) {
+		if (scheduledRetries.remove(fcsRequest.getDocId()) == null)
+			return; // richiesta gia' rilasciata (arresto del servizio)
+
+		fcsRequest.setEnqueueTime(System.nanoTime());
+		if (fcsRequestQueue.offer(fcsRequest)) {
+			if (logger.isInfoEnabled())
+				logger.info("FCA: put " + fcsRequest.getDocId() + " request on blocking queue (attempt " + (fcsRequest.getAttempts() + 1) + ")...");
+			return;
+		}
+
+		// corsia piena: nuovo inserimento pianificato senza bloccare il thread (unico) dei nuovi tentativi
+		if (logger.isInfoEnabled())
+			logger.info("FCA: " + fcsRequest.getLane() + " lane full... retry of request " + fcsRequest.getDocId() + " deferred by " + RETRY_REQUEUE_DELAY + " ms.");
+		try {
+			scheduledRetries.put(fcsRequest.getDocId(), fcsRequest);
+			retryScheduler.schedule(() -> retryFcsRequest(fcsRequest), RETRY_REQUEUE_DELAY, TimeUnit.MILLISECONDS);
+		}
+		catch (RejectedExecutionException e) {
+			// arresto del servizio in corso: la richiesta verra' ricaricata dalla sorgente dati
+			if (scheduledRetries.remove(fcsRequest.getDocId(), fcsRequest))
+				releaseFcsRequest(fcsRequest);
+		}
+	}
+
+	/**
+	 * Spostamento fra le richieste scartate di una richiesta fallita per il numero massimo di tentativi
+	 * @param result Esito dell'ultimo tentativo
+	 */
+	private void deadLetter(FcsRequestResult result) {
+		logger.error("FCA: request " + result.getDocId() + " failed " + result.getAttempt() + " times... moved to dead letters (excluded from dispatch)");
+		DeadLetterRequests.getInstance().addRequest(result);
+		FcaJournal fcaJournal = journal;
+		if (fcaJournal != null)
+			fcaJournal.deadLettered(result);
+		try {
+			onRequestDeadLettered(result);
+		}
+		catch (Exception e) {
+			logger.error("FCA: got exception on onRequestDeadLettered()... " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Notifica di una richiesta scartata (fallita per fcs.retry.maxAttempts tentativi). Il documento viene escluso dall'elaborazione fino alla
+	 * chiamata di {@link #clearDeadLetter(String)} (es. da parte dell'implementazione, dopo aver corretto o marcato il documento sulla sorgente dati).
+	 * Di default non viene eseguita alcuna azione.
+	 * @param result Esito dell'ultimo tentativo
+	 */
+	public void onRequestDeadLettered(FcsRequestResult result) {
+	}
+
+	/**
+	 * Restituisce l'elenco delle richieste scartate (esito dell'ultimo tentativo di elaborazione). Le richieste scartate vengono mantenute in
+	 * memoria e registrate sull'eventuale journal (fca.journal.path): senza journal l'elenco viene perso al riavvio e i documenti scartati
+	 * vengono nuovamente elaborati.
+	 * @return
+	 */
+	public List<FcsRequestResult> getDeadLetterRequests() {
+		return DeadLetterRequests.getInstance().listRequests();
+	}
+
+	/**
+	 * Rimozione di un documento dalle richieste scartate: il documento potra' essere nuovamente elaborato al successivo caricamento
+	 * @param docId
+	 * @return true se il documento risultava fra le richieste scartate
+	 */
+	public boolean clearDeadLetter(String docId) {
+		boolean removed = DeadLetterRequests.getInstance().removeRequest(docId);
+		if (removed) {
+			FcaJournal fcaJournal = journal;
+			if (fcaJournal != null)
+				fcaJournal.deadLetterCleared(docId);
+			if (logger.isInfoEnabled())
+				logger.info("FCA: request " + docId + " removed from dead letters");
+		}
+		return removed;
+	}
+
+	/**
+	 * Rimozione di tutte le richieste scartate
+	 */
+	public void clearDeadLetters() {
+		DeadLetterRequests.getInstance().clear();
+		FcaJournal fcaJournal = journal;
+		if (fcaJournal != null)
+			fcaJournal.deadLetterCleared(null);
+	}
+
+	/**
+	 * Notifica (asincrona e a gruppi) delle richieste completate dagli host FCS. Consente all'implementazione di aggiornare la sorgente dati con una
+	 * unica scrittura (es. esclusione dei documenti elaborati dal successivo caricamento delle richieste pendenti).
+	 * Di default non viene eseguita alcuna azione.
+	 * <p>
+	 * Con verifica preventiva abilitata (fca.prefilter.enabled) il metodo deve essere ridefinito: gli esiti delle richieste completate senza invio
+	 * agli host FCS ({@link FcsRequestResult#isSkipped()}) devono essere registrati dall'implementazione sulla sorgente dati, altrimenti i documenti
+	 * verrebbero caricati (e scartati) ad ogni ciclo.
+	 * @param results Esiti delle richieste completate
+	 */
+	public void onRequestsCompleted(List<FcsRequestResult> results) {
+	}
+
+	/**
+	 * Notifica (asincrona e a gruppi) delle richieste fallite (errore di dialogo con l'host FCS o elaborazione non completata).
+	 * Vengono notificati tutti i tentativi falliti: se e' stato pianificato un nuovo tentativo ({@link FcsRequestResult#isRetryScheduled()}) il
+	 * documento resta in elaborazione e il suo esito definitivo verra' notificato successivamente, altrimenti l'esito e' definitivo (richiesta
+	 * rilasciata, scartata, annullata o scaduta).
+	 * Di default non viene eseguita alcuna azione.
+	 * @param results Esiti delle richieste fallite (con relativa causa)
+	 */
+	public void onRequestsFailed(List<FcsRequestResult> results) {
+	}
+
+	/**
+	 * Eventuali azioni da compiere in caso di eccezione su RUN di FCA
+	 * @param e
+	 */
+	public abstract void onRunException(Exception e);
+
+	/**
+	 * Eventuali azioni da compiere su finally del RUN di FCA (chiusura del servizio)
+	 */
+	public abstract void onRunFinally();
+
+	/**
+	 * Caricamento di tutte le richieste di indicizzazione/conversione pendenti. Le richieste che non possono essere accodate nel ciclo di
+	 * caricamento corrente vengono mantenute da FCA ed accodate nei cicli successivi: il metodo viene nuovamente invocato solo al termine
+	 * della lista precedentemente caricata. Per il recupero incrementale delle richieste e' possibile ridefinire {@link #openFcsPendingRequests(int)}
+	 * (in tal caso il metodo non viene invocato da FCA).
+	 * @return
+	 * @throws Exception
+	 */
+	public abstract List<FcsRequest> loadFcsPendingRequests() throws Exception;
+
+	/**
+	 * Apertura di un cursore sulle richieste di indicizzazione/conversione pendenti. FCA legge dal cursore solo le richieste che possono essere
+	 * accodate (al massimo maxItems richieste non gia' in elaborazione) e chiude il cursore al termine della lettura.
+	 * L'implementazione di default restituisce le richieste caricate tramite {@link #loadFcsPendingRequests()} non ancora lette nei cicli
+	 * precedenti (nuovo caricamento solo al termine della lista).
+	 * @param maxItems Numero di richieste che possono essere accodate (spazio libero sulla coda condivisa). Le richieste gia' in elaborazione
+	 * vengono scartate da FCA, quindi il cursore puo' restituire anche piu' di maxItems richieste.
+	 * @return
+	 * @throws Exception
+	 */
+	public FcsRequestCursor openFcsPendingRequests(int maxItems) throws Exception {
+		if (loadedFcsRequests == null || !loadedFcsRequests.hasNext())
+			loadedFcsRequests = new ListFcsRequestCursor(loadFcsPendingRequests());
+		return loadedFcsRequests;
+	}
+
+	/**
+	 * Restituisce l'elenco dei documenti che sono attualmente in fase di
+	 * elaborazione da parte degli host FCS
+	 * @return
+	 */
+	public List<String> getInProgressRequests() {
+		return InProgressRequests.getInstance().listRequests();
 	}
 
 	/**
@@ -328,100 +1030,195 @@ public abstract class Fca {
 	}
 
 	/**
-	 * Caricamento di un host FCS di destinazione dal pool a disposizione di FCA
-	 * @return
+	 * Caricamento di un host FCS di destinazione dal pool a disposizione di FCA. La selezione non richiede lock globali: lo slot di elaborazione
+	 * viene riservato in modo atomico sull'host restituito.
+	 * @return Host FCS selezionato, null se nessun host risulta disponibile
 	 * @throws Exception
 	 */
-	public static synchronized FcsHost getTargetFcs() throws Exception {
-		if (FcaConfig.getInstance().getFcsSelectionMode() == FcsSelectionMode.ROUNDROBIN)
-			return getTargetFcsRoundRobin();
-		else
-			return getTargetFcsByQueue();
+	public static FcsHost getTargetFcs() throws Exception {
+		return getTargetFcs(null);
 	}
 
 	/**
-	 * Caricamento di un host FCS di destinazione tramite RoundRobin
-	 * @return
+	 * Caricamento di un host FCS di destinazione per la richiesta indicata. In caso di nuovo tentativo viene escluso l'host sul quale e' fallito
+	 * il tentativo precedente (se nel pool risultano disponibili altri host). La selezione avviene sempre sul pool completo (strutture di
+	 * selezione calcolate una sola volta per il pool), indicando al selettore l'host da escludere.
+	 * @param fcsRequest Richiesta da elaborare (null per nessun vincolo sulla selezione)
+	 * @return Host FCS selezionato, null se nessun host risulta disponibile
 	 * @throws Exception
 	 */
-	private static FcsHost getTargetFcsRoundRobin() throws Exception {
-		FcsHost fcs = null;
+	public static FcsHost getTargetFcs(FcsRequest fcsRequest) throws Exception {
+		List<FcsHost> pool = FcaConfig.getInstance().getFcsPool();
+		FcsHost fcs = getFcsHostSelector().select(pool, fcsRequest, getExcludedFcsHost(pool, fcsRequest));
+		if (fcs != null && logger.isDebugEnabled())
+			logger.debug("Fca.getTargetFcs(): Found host " + fcs.getHost() + ":" + fcs.getPort() + " -> new in-progress size = " + fcs.getQueueInProgressSize());
+		return fcs;
+	}
 
-		if (FcaConfig.getInstance().getFcsPool() != null) {
-			for (int i = 0; i < FcaConfig.getInstance().getFcsPool().size(); i++) {
-				lastIndex = ++lastIndex % FcaConfig.getInstance().getFcsPool().size();
+	/**
+	 * Verifica se la richiesta puo' essere raggruppata sulla sessione gia' aperta verso l'host indicato (vedi fcs.batch.size): la selezione per la
+	 * richiesta deve indicare lo stesso host. Sono escluse le richieste il cui tentativo precedente e' fallito sull'host, le richieste instradate
+	 * su un host differente (selezione affinity) e gli host con circuito non chiuso (richieste di prova limitate a fcs.circuitBreaker.halfOpenCalls).
+	 * @param fcsHost Host FCS gia' selezionato (slot riservato per la prima richiesta del gruppo)
+	 * @param fcsRequest Richiesta da aggiungere al gruppo
+	 * @return true se la richiesta puo' essere elaborata sull'host
+	 * @throws Exception
+	 */
+	static boolean isTargetFcs(FcsHost fcsHost, FcsRequest fcsRequest) throws Exception {
+		if (!fcsHost.isSelectable() || fcsHost.getCircuitBreaker().getState() != FcsCircuitState.CLOSED)
+			return false;
+		if ((fcsHost.getHost() + ":" + fcsHost.getPort()).equals(fcsRequest.getFailedFcsHost()))
+			return false;
+		List<FcsHost> pool = FcaConfig.getInstance().getFcsPool();
+		return getFcsHostSelector().accepts(pool, fcsHost, fcsRequest, getExcludedFcsHost(pool, fcsRequest));
+	}
 
-				fcs = FcaConfig.getInstance().getFcsPool().get(lastIndex);
-				if (!isFullQueue(fcs) && isAliveFcsHost(fcs))
-					break;
-				else
-					fcs = null;
-			}
-		}
+	/**
+	 * Ritorna l'host FCS da escludere dalla selezione per la richiesta indicata: host sul quale e' fallito il tentativo precedente, se nel pool
+	 * risulta disponibile almeno un altro host
+	 * @param pool
+	 * @param fcsRequest
+	 * @return Host FCS da escludere, null per nessuna esclusione
+	 */
+	private static FcsHost getExcludedFcsHost(List<FcsHost> pool, FcsRequest fcsRequest) {
+		if (fcsRequest == null || fcsRequest.getFailedFcsHost() == null || pool.size() <= 1)
+			return null;
 
-		if (fcs != null) {
-			fcs.incrementQueueInProgressSize();
-			if (logger.isDebugEnabled())
-				logger.debug("Fca.getTargetFcsRoundRobin(): Found host " + fcs.getHost() + ":" + fcs.getPort() + " -> new in-progress size = " + fcs.getQueueInProgressSize());
+		FcsHost failed = null;
+		boolean available = false;
+		for (FcsHost fcsHost : pool) {
+			if (fcsRequest.getFailedFcsHost().equals(fcsHost.getHost() + ":" + fcsHost.getPort()))
+				failed = fcsHost;
+			else
+				available |= fcsHost.isSelectable();
 		}
-		return fcs;
+		return available ? failed : null;
 	}
 
 	/**
-	 * Caricamento di un host FCS di destinazione tramite analisi della coda
-	 * delle richieste (viene assegnato il piu' scarico)
+	 * Ritorna il selettore di host FCS corrispondente alla modalita' di selezione configurata
 	 * @return
 	 * @throws Exception
 	 */
-	private static FcsHost getTargetFcsByQueue() throws Exception {
-		FcsHost min = null;
-		int index = 0;
+	private static FcsHostSelector getFcsHostSelector() throws Exception {
+		FcsHostSelector selector = fcsHostSelector;
+		FcsSelectionMode mode = FcaConfig.getInstance().getFcsSelectionMode();
+		if (selector == null || selector.getMode() != mode) {
+			selector = FcsHostSelector.create(mode);
+			fcsHostSelector = selector;
+		}
+		return selector;
+	}
+
+	/**
+	 * Invio diretto di una richiesta di indicizzazione/conversione: la richiesta viene accodata immediatamente (senza attendere il successivo
+	 * caricamento delle richieste pendenti), se non gia' in elaborazione. In caso di coda piena il chiamante rimane in attesa.
+	 * @param fcsRequest
+	 * @return true se la richiesta e' stata accodata (o completata senza invio agli host FCS, vedi fca.prefilter.enabled), false se gia' in
+	 * elaborazione (o fra le richieste scartate)
+	 * @throws Exception Servizio FCA non avviato
+	 */
+	public boolean submitFcsRequest(FcsRequest fcsRequest) throws Exception {
+		if (fcsRequestQueue == null)
+			throw new Exception("FCA service not started");
+		if (stopRequested)
+			throw new Exception("FCA service is shutting down");
+		if (!acquireFcsRequest(fcsRequest))
+			return false;
+		return skipFcsRequest(fcsRequest) || enqueueFcsRequest(fcsRequest, true);
+	}
 
-		for (FcsHost fcsHost : FcaConfig.getInstance().getFcsPool()) {
-			if (!isFullQueue(fcsHost) && isAliveFcsHost(fcsHost)) {
-				if (min == null || fcsHost.getQueueInProgressSize() < min.getQueueInProgressSize()) {
-					min = fcsHost;
-					lastIndex = index;
+	/**
+	 * Inserimento nella coda condivisa di una richiesta gia' registrata fra quelle in elaborazione (vedi {@link #acquireFcsRequest(FcsRequest)}).
+	 * In caso di corsia piena il thread chiamante si mette in attesa che una delle richieste pendenti venga presa in carico da un thread Invoker
+	 * (se richiesto), altrimenti la richiesta viene rilasciata.
+	 * @param fcsRequest
+	 * @param wait true per attendere spazio libero sulla corsia della richiesta, false per rilasciare la richiesta in caso di corsia piena
+	 * @return true se la richiesta e' stata accodata, false in caso di corsia piena (senza attesa) o arresto del servizio richiesto
+	 * @throws InterruptedException
+	 */
+	private boolean enqueueFcsRequest(FcsRequest fcsRequest, boolean wait) throws InterruptedException {
+		FcaJournal fcaJournal = journal;
+		if (fcaJournal != null)
+			fcaJournal.enqueued(fcsRequest);
+		try {
+			// in caso di coda piena l'attesa viene interrotta dalla richiesta di arresto del servizio
+			fcsRequest.setEnqueueTime(System.nanoTime());
+			if (wait) {
+				while (!fcsRequestQueue.offer(fcsRequest, ENQUEUE_STOP_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+					if (stopRequested) {
+						releaseFcsRequest(fcsRequest);
+						return false;
+					}
 				}
 			}
-			index++;
+			else if (!fcsRequestQueue.offer(fcsRequest)) {
+				if (logger.isInfoEnabled())
+					logger.info("FCA: " + fcsRequest.getLane() + " lane full... docId " + fcsRequest.getDocId() + " deferred to next poll");
+				releaseFcsRequest(fcsRequest);
+				return false;
+			}
 		}
-
-		if (min != null) {
-			min.incrementQueueInProgressSize();
-			if (logger.isDebugEnabled())
-				logger.debug("Fca.getTargetFcsByQueue(): Found host " + min.getHost() + ":" + min.getPort() + " -> new in-progress size = " + min.getQueueInProgressSize());
+		catch (InterruptedException e) {
+			releaseFcsRequest(fcsRequest);
+			throw e;
 		}
-		return min;
+		FcaMetrics.getInstance().onRequestSubmitted();
+		if (logger.isInfoEnabled())
+			logger.info("FCA: put " + fcsRequest.getDocId() + " request on blocking queue...");
+		return true;
 	}
 
 	/**
-	 * Verifica se la coda di processi di un host e' completamente impegnata o
-	 * se ci sono thread disponibili
-	 *
-	 * @param host
-	 * @return
+	 * Verifica preventiva di una richiesta gia' registrata fra quelle in elaborazione: un documento privo di file da indicizzare o convertire viene
+	 * notificato fra le richieste completate (senza host FCS) e rimane fra le richieste in elaborazione fino alla notifica all'implementazione di
+	 * FCA (escluso dai caricamenti successivi)
+	 * @param fcsRequest
+	 * @return true se la richiesta e' stata completata senza invio agli host FCS, false se deve essere accodata
 	 */
-	private static boolean isFullQueue(FcsHost host) {
-		return host.getQueueInProgressSize() == host.getQueueMaxSize();
+	private boolean skipFcsRequest(FcsRequest fcsRequest) {
+		FcsRequestPrefilter prefilter = requestPrefilter;
+		if (prefilter == null || prefilter.requiresFcs(fcsRequest))
+			return false;
+
+		if (logger.isInfoEnabled())
+			logger.info("FCA: docId " + fcsRequest.getDocId() + " has no files to index or convert... complete without FCS");
+		FcaMetrics.getInstance().onRequestSkipped();
+		onFcsRequestProcessed(new FcsRequestResult(fcsRequest, null, System.currentTimeMillis(), 0, fcsRequest.getAttempts(), true, null));
+		return true;
 	}
 
 	/**
-	 * Ritorna true se la richiesta corrente risulta gia' presa in carica da un host FCS. Recupero di un documento attualmente ancora in fase di elaborazione
-	 * da parte di un host (estrazione del testo o conversione di files ancora in corso)
+	 * Rilascio di una richiesta non accodata (rimozione dalle richieste in elaborazione e dal journal)
 	 * @param fcsRequest
-	 * @return
 	 */
-	private boolean isInProgressFcsRequest(FcsRequest fcsRequest) {
-		boolean inProgress = false;
-		if (fcsRequest != null) {
-			inProgress = InProgressRequests.getInstance().containsRequest(fcsRequest.getDocId());
-			if (inProgress) {
-				if (logger.isInfoEnabled())
-					logger.info("FCA: docId " + fcsRequest.getDocId() + " already in progress (blocking queue or FCS Host)... ");
-			}
+	void releaseFcsRequest(FcsRequest fcsRequest) {
+		FcaJournal fcaJournal = journal;
+		if (fcaJournal != null)
+			fcaJournal.removed(fcsRequest.getDocId());
+		InProgressRequests.getInstance().removeRequest(fcsRequest.getDocId());
+	}
+
+	/**
+	 * Registra la richiesta corrente fra quelle in elaborazione. Ritorna false se la richiesta risulta gia' presa in carica da un host FCS (documento
+	 * attualmente ancora in fase di elaborazione: estrazione del testo o conversione di files ancora in corso)
+	 * @param fcsRequest
+	 * @return true se la richiesta e' stata registrata (e deve essere accodata), false altrimenti
+	 */
+	private boolean acquireFcsRequest(FcsRequest fcsRequest) {
+		if (fcsRequest == null)
+			return false;
+		if (DeadLetterRequests.getInstance().containsRequest(fcsRequest.getDocId())) {
+			if (logger.isDebugEnabled())
+				logger.debug("FCA: docId " + fcsRequest.getDocId() + " in dead letters... skip request");
+			return false;
+		}
+		boolean acquired = InProgressRequests.getInstance().tryAcquire(fcsRequest);
+		if (!acquired) {
+			if (logger.isInfoEnabled())
+				logger.info("FCA: docId " + fcsRequest.getDocId() + " already in progress (blocking queue or FCS Host)... ");
 		}
-		return inProgress;
+		return acquired;
 	}
 
 	/**
@@ -436,6 +1233,19 @@ public abstract class Fca {
 		 */
 		@Override
 		public void run() {
+			if (running) {
+				// arresto controllato: onRunFinally() viene invocato al termine del metodo run()
+				if (logger.isInfoEnabled())
+					logger.info("FcaShutdownHook hook ACTIVATED. Graceful shutdown of running service...");
+				try {
+					awaitShutdown(FcaConfig.getInstance().isFcaShutdownDrain());
+					return;
+				}
+				catch (Exception e) {
+					logger.error("FcaShutdownHook: got exception on graceful shutdown... " + e.getMessage(), e);
+				}
+			}
+
 			if (logger.isInfoEnabled())
 				logger.info("FcaShutdownHook hook ACTIVATED. Shutdown was not called. CALL onRunFinally().");
 
@@ -0,0 +1,75 @@
+package it.tredi.fca;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Listener (su localhost) per i comandi di amministrazione di FCA, su una porta distinta da quella di invio delle richieste
+ * (fca.admin.port, disabilitato di default) in modo che un identificativo di documento non possa essere interpretato come comando.
+ * <p>
+ * Il dialogo e' testuale (UTF-8), un comando per riga, con una riga di risposta per ogni comando: <code>OK</code>, <code>NOT_FOUND</code>
+ * (richiesta da annullare non trovata) o <code>ERROR messaggio</code>.
+ * Una riga vuota (o <code>QUIT</code>) chiude la connessione.
+ * <p>
+ * Comandi: <code>RELOAD</code> (ricaricamento della configurazione di FCA, vedi {@link Fca#reloadConfig()}), <code>SHUTDOWN</code> e
+ * <code>DRAIN</code> (richiesta di arresto del servizio, vedi {@link Fca#shutdown()} e {@link Fca#drain()}), <code>CANCEL DOC_ID</code>
+ * (annullamento di una richiesta, vedi {@link Fca#cancelRequest(String)}).
+ */
+public class FcaAdminListener extends FcaSubmissionListener {
+
+	private static final Logger logger = LogManager.getLogger(Fca.class.getName());
+
+	private static final String COMMAND_RELOAD = "RELOAD";
+	private static final String COMMAND_SHUTDOWN = "SHUTDOWN";
+	private static final String COMMAND_DRAIN = "DRAIN";
+	private static final String COMMAND_CANCEL = "CANCEL ";
+
+	/**
+	 * Costruttore
+	 * @param fca Istanza di FCA sulla quale eseguire i comandi ricevuti
+	 * @param port Porta TCP (su localhost) del listener
+	 */
+	public FcaAdminListener(Fca fca, int port) {
+		super(fca, port);
+	}
+
+	/**
+	 * Esecuzione del comando di amministrazione ricevuto
+	 * @param line Riga ricevuta dal client
+	 * @return Risposta da inviare al client
+	 */
+	@Override
+	protected String command(String line) {
+		String command = line.trim();
+		if (command.equalsIgnoreCase(COMMAND_RELOAD))
+			return reload();
+		if (command.equalsIgnoreCase(COMMAND_SHUTDOWN) || command.equalsIgnoreCase(COMMAND_DRAIN)) {
+			// arresto asincrono (il listener viene chiuso al termine della sequenza di arresto)
+			fca.requestShutdown(command.equalsIgnoreCase(COMMAND_DRAIN));
+			return RESPONSE_OK;
+		}
+		if (command.regionMatches(true, 0, COMMAND_CANCEL, 0, COMMAND_CANCEL.length())) {
+			String docId = command.substring(COMMAND_CANCEL.length()).trim();
+			if (docId.isEmpty())
+				return RESPONSE_ERROR + " empty docId";
+			return fca.cancelRequest(docId) ? RESPONSE_OK : RESPONSE_NOT_FOUND;
+		}
+		return RESPONSE_ERROR + " unknown command " + command;
+	}
+
+	/**
+	 * Ricaricamento della configurazione di FCA
+	 * @return Risposta da inviare al client
+	 */
+	private String reload() {
+		try {
+			fca.reloadConfig();
+			return RESPONSE_OK;
+		}
+		catch (Exception e) {
+			logger.error("FcaAdminListener: unable to reload configuration... " + e.getMessage(), e);
+			return RESPONSE_ERROR + " " + e.getMessage();
+		}
+	}
+
+}
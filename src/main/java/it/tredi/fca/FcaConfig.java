@@ -1,14 +1,22 @@
 package it.tredi.fca;
 
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import it.tredi.fca.entity.FcsRequestLane;
 import it.tredi.fcs.socket.commands.entity.FcsActivationParams;
 import it.tredi.utils.properties.PropertiesReader;
 
@@ -25,11 +33,46 @@ public class FcaConfig {
 	private static final String FCA_PRESENCE_PORT_PROPERTY = "fca.presence.port";
 	private static final String FCA_WAITING_STEP_PROPERTY = "fca.waiting.step";
 	private static final String FCA_REFRESH_DELAY_PROPERTY = "fca.refresh.delay";
+	private static final String FCA_REFRESH_MIN_DELAY_PROPERTY = "fca.refresh.minDelay";
+	private static final String FCA_SUBMIT_PORT_PROPERTY = "fca.submit.port";
+	private static final String FCA_ADMIN_PORT_PROPERTY = "fca.admin.port";
+	private static final String FCA_QUEUE_LANE_WEIGHTS_PROPERTY = "fca.queue.lane.weights";
+	private static final String FCA_INVOKER_ENGINE_PROPERTY = "fca.invoker.engine";
+	private static final String FCA_CALLBACK_BATCH_SIZE_PROPERTY = "fca.callback.batchSize";
+	private static final String FCA_CALLBACK_LINGER_PROPERTY = "fca.callback.linger";
+	private static final String FCA_CONFIG_WATCH_PROPERTY = "fca.config.watch";
+	private static final String FCA_JOURNAL_PATH_PROPERTY = "fca.journal.path";
+	private static final String FCA_JOURNAL_SIZE_PROPERTY = "fca.journal.size";
+	private static final String FCA_JOURNAL_SYNC_PROPERTY = "fca.journal.sync";
+	private static final String FCA_JOURNAL_SYNC_INTERVAL_PROPERTY = "fca.journal.syncInterval";
+	private static final String FCA_SHUTDOWN_TIMEOUT_PROPERTY = "fca.shutdown.timeout";
+	private static final String FCA_SHUTDOWN_DRAIN_PROPERTY = "fca.shutdown.drain";
+	private static final String FCA_METRICS_JMX_PROPERTY = "fca.metrics.jmx";
+	private static final String FCA_METRICS_INTERVAL_PROPERTY = "fca.metrics.interval";
+	private static final String FCA_PREFILTER_ENABLED_PROPERTY = "fca.prefilter.enabled";
 
 	private static final String FCS_POOL_PROPERTY = "fcs.pool";
 	private static final String FCS_SELECTION_MODE_PROPERTY = "fcs.selection.mode";
 	private static final String FCS_ALIVE_TIMEOUT_PROPERTY = "fcs.alive.timeout";
 	private static final String FCS_WORK_TIMEOUT_PROPERTY = "fcs.work.timeout";
+	private static final String FCS_HEALTH_INTERVAL_PROPERTY = "fcs.health.interval";
+	private static final String FCS_CONNECTION_KEEP_ALIVE_PROPERTY = "fcs.connection.keepAlive";
+	private static final String FCS_CONNECTION_IDLE_TIMEOUT_PROPERTY = "fcs.connection.idleTimeout";
+	private static final String FCS_BATCH_SIZE_PROPERTY = "fcs.batch.size";
+	private static final String FCS_BATCH_LINGER_PROPERTY = "fcs.batch.linger";
+	private static final String FCS_AFFINITY_KEY_PROPERTY = "fcs.affinity.key";
+	private static final String FCS_AFFINITY_VIRTUAL_NODES_PROPERTY = "fcs.affinity.virtualNodes";
+	private static final String FCS_RETRY_MAX_ATTEMPTS_PROPERTY = "fcs.retry.maxAttempts";
+	private static final String FCS_RETRY_DELAY_PROPERTY = "fcs.retry.delay";
+	private static final String FCS_RETRY_MAX_DELAY_PROPERTY = "fcs.retry.maxDelay";
+	private static final String FCS_CIRCUIT_BREAKER_ENABLED_PROPERTY = "fcs.circuitBreaker.enabled";
+	private static final String FCS_CIRCUIT_BREAKER_WINDOW_SIZE_PROPERTY = "fcs.circuitBreaker.windowSize";
+	private static final String FCS_CIRCUIT_BREAKER_MIN_CALLS_PROPERTY = "fcs.circuitBreaker.minCalls";
+	private static final String FCS_CIRCUIT_BREAKER_FAILURE_RATE_PROPERTY = "fcs.circuitBreaker.failureRate";
+	private static final String FCS_CIRCUIT_BREAKER_SLOW_CALL_DURATION_PROPERTY = "fcs.circuitBreaker.slowCallDuration";
+	private static final String FCS_CIRCUIT_BREAKER_SLOW_CALL_RATE_PROPERTY = "fcs.circuitBreaker.slowCallRate";
+	private static final String FCS_CIRCUIT_BREAKER_OPEN_DURATION_PROPERTY = "fcs.circuitBreaker.openDuration";
+	private static final String FCS_CIRCUIT_BREAKER_HALF_OPEN_CALLS_PROPERTY = "fcs.circuitBreaker.halfOpenCalls";
 
 	private static final String FCS_INDEX_ENABLED_PROPERTY = "fcs.index.enabled";
 	private static final String FCS_INDEX_OCR_PROPERTY = "fcs.index.ocr";
@@ -46,25 +89,81 @@ public class FcaConfig {
 	private static final int FCA_PRESENCE_PORT_DEFAULT_VALUE = 0;
 	private static final int FCA_WAITING_STEP_DEFAULT_VALUE = 200;
 	private static final int FCA_REFRESH_DELAY_DEFAULT_VALUE = 20000;
+	private static final int FCA_REFRESH_MIN_DELAY_DEFAULT_VALUE = 1000;
+	private static final String FCA_QUEUE_LANE_WEIGHTS_DEFAULT_VALUE = "interactive:8,normal:3,bulk:1";
+	private static final int FCA_CALLBACK_BATCH_SIZE_DEFAULT_VALUE = 100;
+	private static final int FCA_CALLBACK_LINGER_DEFAULT_VALUE = 1000;
+	private static final int FCA_JOURNAL_SIZE_DEFAULT_VALUE = 16 * 1024 * 1024;
+	private static final int FCA_JOURNAL_SYNC_INTERVAL_DEFAULT_VALUE = 1000;
+	private static final int FCA_SHUTDOWN_TIMEOUT_DEFAULT_VALUE = 30000;
 
 	private static final int FCS_ALIVE_TIMEOUT_DEFAULT_VALUE = 2000;
 	private static final int FCS_WORK_TIMEOUT_DEFAULT_VALUE = 0;
+	private static final int FCS_HEALTH_INTERVAL_DEFAULT_VALUE = 5000;
+	private static final int FCS_CONNECTION_IDLE_TIMEOUT_DEFAULT_VALUE = 30000;
+	private static final int FCS_AFFINITY_VIRTUAL_NODES_DEFAULT_VALUE = 100;
+	private static final int FCS_RETRY_MAX_ATTEMPTS_DEFAULT_VALUE = 3;
+	private static final int FCS_RETRY_DELAY_DEFAULT_VALUE = 5000;
+	private static final int FCS_RETRY_MAX_DELAY_DEFAULT_VALUE = 300000;
+	private static final int FCS_CIRCUIT_BREAKER_WINDOW_SIZE_DEFAULT_VALUE = 20;
+	private static final int FCS_CIRCUIT_BREAKER_MIN_CALLS_DEFAULT_VALUE = 10;
+	private static final int FCS_CIRCUIT_BREAKER_FAILURE_RATE_DEFAULT_VALUE = 50;
+	private static final int FCS_CIRCUIT_BREAKER_SLOW_CALL_RATE_DEFAULT_VALUE = 80;
+	private static final int FCS_CIRCUIT_BREAKER_OPEN_DURATION_DEFAULT_VALUE = 30000;
+	private static final int FCS_CIRCUIT_BREAKER_HALF_OPEN_CALLS_DEFAULT_VALUE = 3;
 
 	private static final FcsSelectionMode FCS_SELECTION_MODE_DEFAULT_VALUE = FcsSelectionMode.QUEUE_SIZE;
 
 	private int fcaPresencePort = FCA_PRESENCE_PORT_DEFAULT_VALUE;
 	private int fcaWaitingStep = FCA_WAITING_STEP_DEFAULT_VALUE;
 	private int fcaRefreshDelay = FCA_REFRESH_DELAY_DEFAULT_VALUE;
+	private int fcaRefreshMinDelay = FCA_REFRESH_MIN_DELAY_DEFAULT_VALUE;
+	private int fcaSubmitPort = 0;
+	private int fcaAdminPort = 0;
+	private Map<FcsRequestLane, Integer> fcaQueueLaneWeights = new EnumMap<FcsRequestLane, Integer>(FcsRequestLane.class);
+	private boolean fcaVirtualThreadInvokers = false;
+	private int fcaCallbackBatchSize = FCA_CALLBACK_BATCH_SIZE_DEFAULT_VALUE;
+	private int fcaCallbackLinger = FCA_CALLBACK_LINGER_DEFAULT_VALUE;
+	private boolean fcaConfigWatch = false;
+	private String fcaJournalPath = null;
+	private int fcaJournalSize = FCA_JOURNAL_SIZE_DEFAULT_VALUE;
+	private FcaJournalSyncMode fcaJournalSync = FcaJournalSyncMode.INTERVAL;
+	private int fcaJournalSyncInterval = FCA_JOURNAL_SYNC_INTERVAL_DEFAULT_VALUE;
+	private int fcaShutdownTimeout = FCA_SHUTDOWN_TIMEOUT_DEFAULT_VALUE;
+	private boolean fcaShutdownDrain = false;
+	private boolean fcaMetricsJmx = true;
+	private int fcaMetricsInterval = 0;
+	private boolean fcaPrefilterEnabled = false;
 
 	private List<FcsHost> fcsPool = new ArrayList<FcsHost>();
 	private FcsSelectionMode fcsSelectionMode = FCS_SELECTION_MODE_DEFAULT_VALUE;
 	private int fcsAliveTimeout = FCS_ALIVE_TIMEOUT_DEFAULT_VALUE;
 	private int fcsWorkTimeout = FCS_WORK_TIMEOUT_DEFAULT_VALUE;
+	private int fcsHealthInterval = FCS_HEALTH_INTERVAL_DEFAULT_VALUE;
+	private boolean fcsConnectionKeepAlive = false;
+	private int fcsConnectionIdleTimeout = FCS_CONNECTION_IDLE_TIMEOUT_DEFAULT_VALUE;
+	private int fcsBatchSize = 1;
+	private int fcsBatchLinger = 0;
+	private boolean fcsAffinityKeyParameters = false;
+	private int fcsAffinityVirtualNodes = FCS_AFFINITY_VIRTUAL_NODES_DEFAULT_VALUE;
+	private int fcsRetryMaxAttempts = FCS_RETRY_MAX_ATTEMPTS_DEFAULT_VALUE;
+	private int fcsRetryDelay = FCS_RETRY_DELAY_DEFAULT_VALUE;
+	private int fcsRetryMaxDelay = FCS_RETRY_MAX_DELAY_DEFAULT_VALUE;
+	private boolean fcsCircuitBreakerEnabled = false;
+	private int fcsCircuitBreakerWindowSize = FCS_CIRCUIT_BREAKER_WINDOW_SIZE_DEFAULT_VALUE;
+	private int fcsCircuitBreakerMinCalls = FCS_CIRCUIT_BREAKER_MIN_CALLS_DEFAULT_VALUE;
+	private int fcsCircuitBreakerFailureRate = FCS_CIRCUIT_BREAKER_FAILURE_RATE_DEFAULT_VALUE;
+	private int fcsCircuitBreakerSlowCallDuration = 0;
+	private int fcsCircuitBreakerSlowCallRate = FCS_CIRCUIT_BREAKER_SLOW_CALL_RATE_DEFAULT_VALUE;
+	private int fcsCircuitBreakerOpenDuration = FCS_CIRCUIT_BREAKER_OPEN_DURATION_DEFAULT_VALUE;
+	private int fcsCircuitBreakerHalfOpenCalls = FCS_CIRCUIT_BREAKER_HALF_OPEN_CALLS_DEFAULT_VALUE;
 
 	private FcsActivationParams fcsConfig = null;
+	private String jsonFcsConfig = null; // parametri di attivazione di FCS serializzati (calcolati una sola volta per configurazione)
+	private String fcsConfigVersion = null; // versione (hash) dei parametri di attivazione di FCS
 
-	// Singleton
-    private static FcaConfig instance = null;
+	// Singleton (sostituito in caso di ricaricamento della configurazione)
+    private static volatile FcaConfig instance = null;
 
     /**
      * Costruttore privato
@@ -83,6 +182,93 @@ public class FcaConfig {
     		logger.warn("FcaConfig: value " + this.fcaRefreshDelay + " NOT valid for property " + FCA_REFRESH_DELAY_PROPERTY + ". Assign default value " + FCA_REFRESH_DELAY_DEFAULT_VALUE);
     		this.fcaRefreshDelay = FCA_REFRESH_DELAY_DEFAULT_VALUE;
     	}
+    	this.fcaRefreshMinDelay = propertiesReader.getIntProperty(FCA_REFRESH_MIN_DELAY_PROPERTY, FCA_REFRESH_MIN_DELAY_DEFAULT_VALUE);
+    	if (this.fcaRefreshMinDelay < 0) {
+    		logger.warn("FcaConfig: value " + this.fcaRefreshMinDelay + " NOT valid for property " + FCA_REFRESH_MIN_DELAY_PROPERTY + ". Assign default value " + FCA_REFRESH_MIN_DELAY_DEFAULT_VALUE);
+    		this.fcaRefreshMinDelay = FCA_REFRESH_MIN_DELAY_DEFAULT_VALUE;
+    	}
+    	if (this.fcaRefreshMinDelay > this.fcaRefreshDelay) {
+    		logger.warn("FcaConfig: value " + this.fcaRefreshMinDelay + " of property " + FCA_REFRESH_MIN_DELAY_PROPERTY + " greater than " + FCA_REFRESH_DELAY_PROPERTY + ". Assign value " + this.fcaRefreshDelay);
+    		this.fcaRefreshMinDelay = this.fcaRefreshDelay;
+    	}
+    	this.fcaSubmitPort = propertiesReader.getIntProperty(FCA_SUBMIT_PORT_PROPERTY, 0);
+    	this.fcaAdminPort = propertiesReader.getIntProperty(FCA_ADMIN_PORT_PROPERTY, 0);
+    	if (this.fcaAdminPort > 0 && this.fcaAdminPort == this.fcaSubmitPort) {
+    		logger.warn("FcaConfig: value " + this.fcaAdminPort + " NOT valid for property " + FCA_ADMIN_PORT_PROPERTY + " (same as " + FCA_SUBMIT_PORT_PROPERTY + "). Administration commands disabled");
+    		this.fcaAdminPort = 0;
+    	}
+
+    	String strInvokerEngine = propertiesReader.getProperty(FCA_INVOKER_ENGINE_PROPERTY, null);
+    	if (strInvokerEngine != null && strInvokerEngine.toLowerCase().equals("virtual"))
+    		this.fcaVirtualThreadInvokers = true;
+
+    	this.fcaCallbackBatchSize = propertiesReader.getIntProperty(FCA_CALLBACK_BATCH_SIZE_PROPERTY, FCA_CALLBACK_BATCH_SIZE_DEFAULT_VALUE);
+    	if (this.fcaCallbackBatchSize <= 0) {
+    		logger.warn("FcaConfig: value " + this.fcaCallbackBatchSize + " NOT valid for property " + FCA_CALLBACK_BATCH_SIZE_PROPERTY + ". Assign default value " + FCA_CALLBACK_BATCH_SIZE_DEFAULT_VALUE);
+    		this.fcaCallbackBatchSize = FCA_CALLBACK_BATCH_SIZE_DEFAULT_VALUE;
+    	}
+    	this.fcaCallbackLinger = propertiesReader.getIntProperty(FCA_CALLBACK_LINGER_PROPERTY, FCA_CALLBACK_LINGER_DEFAULT_VALUE);
+    	if (this.fcaCallbackLinger < 0) {
+    		logger.warn("FcaConfig: value " + this.fcaCallbackLinger + " NOT valid for property " + FCA_CALLBACK_LINGER_PROPERTY + ". Assign default value " + FCA_CALLBACK_LINGER_DEFAULT_VALUE);
+    		this.fcaCallbackLinger = FCA_CALLBACK_LINGER_DEFAULT_VALUE;
+    	}
+
+    	this.fcaConfigWatch = propertiesReader.getBooleanProperty(FCA_CONFIG_WATCH_PROPERTY, false);
+
+    	String strJournalPath = propertiesReader.getProperty(FCA_JOURNAL_PATH_PROPERTY, "");
+    	if (strJournalPath != null && !strJournalPath.trim().isEmpty())
+    		this.fcaJournalPath = strJournalPath.trim();
+    	this.fcaJournalSize = propertiesReader.getIntProperty(FCA_JOURNAL_SIZE_PROPERTY, FCA_JOURNAL_SIZE_DEFAULT_VALUE);
+    	if (this.fcaJournalSize < 65536) {
+    		logger.warn("FcaConfig: value " + this.fcaJournalSize + " NOT valid for property " + FCA_JOURNAL_SIZE_PROPERTY + ". Assign default value " + FCA_JOURNAL_SIZE_DEFAULT_VALUE);
+    		this.fcaJournalSize = FCA_JOURNAL_SIZE_DEFAULT_VALUE;
+    	}
+    	String strJournalSync = propertiesReader.getProperty(FCA_JOURNAL_SYNC_PROPERTY, "");
+    	if (strJournalSync != null && !strJournalSync.isEmpty()) {
+    		try {
+    			this.fcaJournalSync = FcaJournalSyncMode.valueOf(strJournalSync.trim().toUpperCase());
+    		}
+    		catch (IllegalArgumentException e) {
+    			logger.warn("FcaConfig: value " + strJournalSync + " NOT valid for property " + FCA_JOURNAL_SYNC_PROPERTY + ". Assign default value " + FcaJournalSyncMode.INTERVAL);
+    		}
+    	}
+    	this.fcaJournalSyncInterval = propertiesReader.getIntProperty(FCA_JOURNAL_SYNC_INTERVAL_PROPERTY, FCA_JOURNAL_SYNC_INTERVAL_DEFAULT_VALUE);
+    	if (this.fcaJournalSyncInterval <= 0) {
+    		logger.warn("FcaConfig: value " + this.fcaJournalSyncInterval + " NOT valid for property " + FCA_JOURNAL_SYNC_INTERVAL_PROPERTY + ". Assign default value " + FCA_JOURNAL_SYNC_INTERVAL_DEFAULT_VALUE);
+    		this.fcaJournalSyncInterval = FCA_JOURNAL_SYNC_INTERVAL_DEFAULT_VALUE;
+    	}
+
+    	this.fcaShutdownTimeout = propertiesReader.getIntProperty(FCA_SHUTDOWN_TIMEOUT_PROPERTY, FCA_SHUTDOWN_TIMEOUT_DEFAULT_VALUE);
+    	if (this.fcaShutdownTimeout < 0) {
+    		logger.warn("FcaConfig: value " + this.fcaShutdownTimeout + " NOT valid for property " + FCA_SHUTDOWN_TIMEOUT_PROPERTY + ". Assign default value " + FCA_SHUTDOWN_TIMEOUT_DEFAULT_VALUE);
+    		this.fcaShutdownTimeout = FCA_SHUTDOWN_TIMEOUT_DEFAULT_VALUE;
+    	}
+    	this.fcaShutdownDrain = propertiesReader.getBooleanProperty(FCA_SHUTDOWN_DRAIN_PROPERTY, false);
+
+    	this.fcaMetricsJmx = propertiesReader.getBooleanProperty(FCA_METRICS_JMX_PROPERTY, true);
+    	this.fcaMetricsInterval = propertiesReader.getIntProperty(FCA_METRICS_INTERVAL_PROPERTY, 0);
+    	if (this.fcaMetricsInterval < 0) {
+    		logger.warn("FcaConfig: value " + this.fcaMetricsInterval + " NOT valid for property " + FCA_METRICS_INTERVAL_PROPERTY + ". Assign default value 0");
+    		this.fcaMetricsInterval = 0;
+    	}
+    	this.fcaPrefilterEnabled = propertiesReader.getBooleanProperty(FCA_PREFILTER_ENABLED_PROPERTY, false);
+
+    	// pesi delle corsie di priorita' (lane:peso[,lane:peso])
+    	String strLaneWeights = propertiesReader.getProperty(FCA_QUEUE_LANE_WEIGHTS_PROPERTY, "");
+    	if (strLaneWeights.isEmpty())
+    		strLaneWeights = FCA_QUEUE_LANE_WEIGHTS_DEFAULT_VALUE;
+    	for (String strLaneWeight : strLaneWeights.split(",")) {
+    		String[] laneWeight = strLaneWeight.trim().split(":");
+    		try {
+    			int weight = Integer.parseInt(laneWeight[1].trim());
+    			if (weight <= 0)
+    				throw new IllegalArgumentException("weight must be greater than 0");
+    			this.fcaQueueLaneWeights.put(FcsRequestLane.valueOf(laneWeight[0].trim().toUpperCase()), weight);
+    		}
+    		catch (Exception e) {
+    			logger.warn("FcaConfig: value " + strLaneWeight + " NOT valid for property " + FCA_QUEUE_LANE_WEIGHTS_PROPERTY + "... " + e.getMessage());
+    		}
+    	}
 
     	this.fcsAliveTimeout = propertiesReader.getIntProperty(FCS_ALIVE_TIMEOUT_PROPERTY, FCS_ALIVE_TIMEOUT_DEFAULT_VALUE);
     	this.fcsWorkTimeout = propertiesReader.getIntProperty(FCS_WORK_TIMEOUT_PROPERTY, FCS_WORK_TIMEOUT_DEFAULT_VALUE);
@@ -93,9 +279,10 @@ public class FcaConfig {
     			this.fcsPool = new ArrayList<FcsHost>();
     		for (int i=0; i<strFcsPool.length; i++) {
     			String[] fcs = strFcsPool[i].split(":");
-    			if (fcs != null && fcs.length == 3) {
+    			if (fcs != null && (fcs.length == 3 || fcs.length == 4)) {
     				try {
-    					this.fcsPool.add(new FcsHost(fcs[0], Integer.parseInt(fcs[1]), Integer.parseInt(fcs[2])));
+    					int weight = (fcs.length == 4) ? Integer.parseInt(fcs[3]) : 1;
+    					this.fcsPool.add(new FcsHost(fcs[0], Integer.parseInt(fcs[1]), Integer.parseInt(fcs[2]), weight));
     				}
     				catch(Exception e) {
     					logger.error("FcaConfig: got exception on fcs pool building... " + e.getMessage(), e);
@@ -108,15 +295,110 @@ public class FcaConfig {
     	String strFcsSelectionMode = propertiesReader.getProperty(FCS_SELECTION_MODE_PROPERTY, null);
     	if (strFcsSelectionMode != null && strFcsSelectionMode.toLowerCase().equals("roundrobin"))
     		this.fcsSelectionMode = FcsSelectionMode.ROUNDROBIN;
+    	else if (strFcsSelectionMode != null && strFcsSelectionMode.toLowerCase().equals("weighted"))
+    		this.fcsSelectionMode = FcsSelectionMode.WEIGHTED_ROUNDROBIN;
+    	else if (strFcsSelectionMode != null && strFcsSelectionMode.toLowerCase().equals("latency"))
+    		this.fcsSelectionMode = FcsSelectionMode.LEAST_RESPONSE_TIME;
+    	else if (strFcsSelectionMode != null && strFcsSelectionMode.toLowerCase().equals("p2c"))
+    		this.fcsSelectionMode = FcsSelectionMode.POWER_OF_TWO;
+    	else if (strFcsSelectionMode != null && strFcsSelectionMode.toLowerCase().equals("affinity"))
+    		this.fcsSelectionMode = FcsSelectionMode.AFFINITY;
     	else
     		this.fcsSelectionMode = FcsSelectionMode.QUEUE_SIZE;
 
+    	String strAffinityKey = propertiesReader.getProperty(FCS_AFFINITY_KEY_PROPERTY, null);
+    	if (strAffinityKey != null && strAffinityKey.toLowerCase().equals("parameters"))
+    		this.fcsAffinityKeyParameters = true;
+    	this.fcsAffinityVirtualNodes = propertiesReader.getIntProperty(FCS_AFFINITY_VIRTUAL_NODES_PROPERTY, FCS_AFFINITY_VIRTUAL_NODES_DEFAULT_VALUE);
+    	if (this.fcsAffinityVirtualNodes <= 0) {
+    		logger.warn("FcaConfig: value " + this.fcsAffinityVirtualNodes + " NOT valid for property " + FCS_AFFINITY_VIRTUAL_NODES_PROPERTY + ". Assign default value " + FCS_AFFINITY_VIRTUAL_NODES_DEFAULT_VALUE);
+    		this.fcsAffinityVirtualNodes = FCS_AFFINITY_VIRTUAL_NODES_DEFAULT_VALUE;
+    	}
+
     	this.fcsAliveTimeout = propertiesReader.getIntProperty(FCS_ALIVE_TIMEOUT_PROPERTY, FCS_ALIVE_TIMEOUT_DEFAULT_VALUE);
     	if (this.fcsAliveTimeout <= 0) {
     		logger.warn("FcaConfig: value " + this.fcsAliveTimeout + " NOT valid for property " + FCS_ALIVE_TIMEOUT_PROPERTY + ". Assign default value " + FCS_ALIVE_TIMEOUT_DEFAULT_VALUE);
     		this.fcsAliveTimeout = FCS_ALIVE_TIMEOUT_DEFAULT_VALUE;
     	}
 
+    	this.fcsHealthInterval = propertiesReader.getIntProperty(FCS_HEALTH_INTERVAL_PROPERTY, FCS_HEALTH_INTERVAL_DEFAULT_VALUE);
+    	if (this.fcsHealthInterval <= 0) {
+    		logger.warn("FcaConfig: value " + this.fcsHealthInterval + " NOT valid for property " + FCS_HEALTH_INTERVAL_PROPERTY + ". Assign default value " + FCS_HEALTH_INTERVAL_DEFAULT_VALUE);
+    		this.fcsHealthInterval = FCS_HEALTH_INTERVAL_DEFAULT_VALUE;
+    	}
+
+    	this.fcsConnectionKeepAlive = propertiesReader.getBooleanProperty(FCS_CONNECTION_KEEP_ALIVE_PROPERTY, false);
+    	this.fcsConnectionIdleTimeout = propertiesReader.getIntProperty(FCS_CONNECTION_IDLE_TIMEOUT_PROPERTY, FCS_CONNECTION_IDLE_TIMEOUT_DEFAULT_VALUE);
+    	if (this.fcsConnectionIdleTimeout <= 0) {
+    		logger.warn("FcaConfig: value " + this.fcsConnectionIdleTimeout + " NOT valid for property " + FCS_CONNECTION_IDLE_TIMEOUT_PROPERTY + ". Assign default value " + FCS_CONNECTION_IDLE_TIMEOUT_DEFAULT_VALUE);
+    		this.fcsConnectionIdleTimeout = FCS_CONNECTION_IDLE_TIMEOUT_DEFAULT_VALUE;
+    	}
+
+    	this.fcsBatchSize = propertiesReader.getIntProperty(FCS_BATCH_SIZE_PROPERTY, 1);
+    	if (this.fcsBatchSize < 1) {
+    		logger.warn("FcaConfig: value " + this.fcsBatchSize + " NOT valid for property " + FCS_BATCH_SIZE_PROPERTY + ". Assign default value 1");
+    		this.fcsBatchSize = 1;
+    	}
+    	this.fcsBatchLinger = propertiesReader.getIntProperty(FCS_BATCH_LINGER_PROPERTY, 0);
+    	if (this.fcsBatchLinger < 0) {
+    		logger.warn("FcaConfig: value " + this.fcsBatchLinger + " NOT valid for property " + FCS_BATCH_LINGER_PROPERTY + ". Assign default value 0");
+    		this.fcsBatchLinger = 0;
+    	}
+
+    	this.fcsRetryMaxAttempts = propertiesReader.getIntProperty(FCS_RETRY_MAX_ATTEMPTS_PROPERTY, FCS_RETRY_MAX_ATTEMPTS_DEFAULT_VALUE);
+    	if (this.fcsRetryMaxAttempts < 0) {
+    		logger.warn("FcaConfig: value " + this.fcsRetryMaxAttempts + " NOT valid for property " + FCS_RETRY_MAX_ATTEMPTS_PROPERTY + ". Assign default value " + FCS_RETRY_MAX_ATTEMPTS_DEFAULT_VALUE);
+    		this.fcsRetryMaxAttempts = FCS_RETRY_MAX_ATTEMPTS_DEFAULT_VALUE;
+    	}
+    	this.fcsRetryDelay = propertiesReader.getIntProperty(FCS_RETRY_DELAY_PROPERTY, FCS_RETRY_DELAY_DEFAULT_VALUE);
+    	if (this.fcsRetryDelay < 0) {
+    		logger.warn("FcaConfig: value " + this.fcsRetryDelay + " NOT valid for property " + FCS_RETRY_DELAY_PROPERTY + ". Assign default value " + FCS_RETRY_DELAY_DEFAULT_VALUE);
+    		this.fcsRetryDelay = FCS_RETRY_DELAY_DEFAULT_VALUE;
+    	}
+    	this.fcsRetryMaxDelay = propertiesReader.getIntProperty(FCS_RETRY_MAX_DELAY_PROPERTY, FCS_RETRY_MAX_DELAY_DEFAULT_VALUE);
+    	if (this.fcsRetryMaxDelay < this.fcsRetryDelay) {
+    		logger.warn("FcaConfig: value " + this.fcsRetryMaxDelay + " NOT valid for property " + FCS_RETRY_MAX_DELAY_PROPERTY + " (lower than " + FCS_RETRY_DELAY_PROPERTY + "). Assign value " + this.fcsRetryDelay);
+    		this.fcsRetryMaxDelay = this.fcsRetryDelay;
+    	}
+
+    	this.fcsCircuitBreakerEnabled = propertiesReader.getBooleanProperty(FCS_CIRCUIT_BREAKER_ENABLED_PROPERTY, false);
+    	this.fcsCircuitBreakerWindowSize = propertiesReader.getIntProperty(FCS_CIRCUIT_BREAKER_WINDOW_SIZE_PROPERTY, FCS_CIRCUIT_BREAKER_WINDOW_SIZE_DEFAULT_VALUE);
+    	if (this.fcsCircuitBreakerWindowSize <= 0) {
+    		logger.warn("FcaConfig: value " + this.fcsCircuitBreakerWindowSize + " NOT valid for property " + FCS_CIRCUIT_BREAKER_WINDOW_SIZE_PROPERTY + ". Assign default value " + FCS_CIRCUIT_BREAKER_WINDOW_SIZE_DEFAULT_VALUE);
+    		this.fcsCircuitBreakerWindowSize = FCS_CIRCUIT_BREAKER_WINDOW_SIZE_DEFAULT_VALUE;
+    	}
+    	this.fcsCircuitBreakerMinCalls = propertiesReader.getIntProperty(FCS_CIRCUIT_BREAKER_MIN_CALLS_PROPERTY, FCS_CIRCUIT_BREAKER_MIN_CALLS_DEFAULT_VALUE);
+    	if (this.fcsCircuitBreakerMinCalls <= 0 || this.fcsCircuitBreakerMinCalls > this.fcsCircuitBreakerWindowSize) {
+    		int minCalls = Math.min(FCS_CIRCUIT_BREAKER_MIN_CALLS_DEFAULT_VALUE, this.fcsCircuitBreakerWindowSize);
+    		logger.warn("FcaConfig: value " + this.fcsCircuitBreakerMinCalls + " NOT valid for property " + FCS_CIRCUIT_BREAKER_MIN_CALLS_PROPERTY + ". Assign value " + minCalls);
+    		this.fcsCircuitBreakerMinCalls = minCalls;
+    	}
+    	this.fcsCircuitBreakerFailureRate = propertiesReader.getIntProperty(FCS_CIRCUIT_BREAKER_FAILURE_RATE_PROPERTY, FCS_CIRCUIT_BREAKER_FAILURE_RATE_DEFAULT_VALUE);
+    	if (this.fcsCircuitBreakerFailureRate <= 0 || this.fcsCircuitBreakerFailureRate > 100) {
+    		logger.warn("FcaConfig: value " + this.fcsCircuitBreakerFailureRate + " NOT valid for property " + FCS_CIRCUIT_BREAKER_FAILURE_RATE_PROPERTY + ". Assign default value " + FCS_CIRCUIT_BREAKER_FAILURE_RATE_DEFAULT_VALUE);
+    		this.fcsCircuitBreakerFailureRate = FCS_CIRCUIT_BREAKER_FAILURE_RATE_DEFAULT_VALUE;
+    	}
+    	this.fcsCircuitBreakerSlowCallDuration = propertiesReader.getIntProperty(FCS_CIRCUIT_BREAKER_SLOW_CALL_DURATION_PROPERTY, 0);
+    	if (this.fcsCircuitBreakerSlowCallDuration < 0) {
+    		logger.warn("FcaConfig: value " + this.fcsCircuitBreakerSlowCallDuration + " NOT valid for property " + FCS_CIRCUIT_BREAKER_SLOW_CALL_DURATION_PROPERTY + ". Assign default value 0");
+    		this.fcsCircuitBreakerSlowCallDuration = 0;
+    	}
+    	this.fcsCircuitBreakerSlowCallRate = propertiesReader.getIntProperty(FCS_CIRCUIT_BREAKER_SLOW_CALL_RATE_PROPERTY, FCS_CIRCUIT_BREAKER_SLOW_CALL_RATE_DEFAULT_VALUE);
+    	if (this.fcsCircuitBreakerSlowCallRate <= 0 || this.fcsCircuitBreakerSlowCallRate > 100) {
+    		logger.warn("FcaConfig: value " + this.fcsCircuitBreakerSlowCallRate + " NOT valid for property " + FCS_CIRCUIT_BREAKER_SLOW_CALL_RATE_PROPERTY + ". Assign default value " + FCS_CIRCUIT_BREAKER_SLOW_CALL_RATE_DEFAULT_VALUE);
+    		this.fcsCircuitBreakerSlowCallRate = FCS_CIRCUIT_BREAKER_SLOW_CALL_RATE_DEFAULT_VALUE;
+    	}
+    	this.fcsCircuitBreakerOpenDuration = propertiesReader.getIntProperty(FCS_CIRCUIT_BREAKER_OPEN_DURATION_PROPERTY, FCS_CIRCUIT_BREAKER_OPEN_DURATION_DEFAULT_VALUE);
+    	if (this.fcsCircuitBreakerOpenDuration <= 0) {
+    		logger.warn("FcaConfig: value " + this.fcsCircuitBreakerOpenDuration + " NOT valid for property " + FCS_CIRCUIT_BREAKER_OPEN_DURATION_PROPERTY + ". Assign default value " + FCS_CIRCUIT_BREAKER_OPEN_DURATION_DEFAULT_VALUE);
+    		this.fcsCircuitBreakerOpenDuration = FCS_CIRCUIT_BREAKER_OPEN_DURATION_DEFAULT_VALUE;
+    	}
+    	this.fcsCircuitBreakerHalfOpenCalls = propertiesReader.getIntProperty(FCS_CIRCUIT_BREAKER_HALF_OPEN_CALLS_PROPERTY, FCS_CIRCUIT_BREAKER_HALF_OPEN_CALLS_DEFAULT_VALUE);
+    	if (this.fcsCircuitBreakerHalfOpenCalls <= 0) {
+    		logger.warn("FcaConfig: value " + this.fcsCircuitBreakerHalfOpenCalls + " NOT valid for property " + FCS_CIRCUIT_BREAKER_HALF_OPEN_CALLS_PROPERTY + ". Assign default value " + FCS_CIRCUIT_BREAKER_HALF_OPEN_CALLS_DEFAULT_VALUE);
+    		this.fcsCircuitBreakerHalfOpenCalls = FCS_CIRCUIT_BREAKER_HALF_OPEN_CALLS_DEFAULT_VALUE;
+    	}
+
     	this.fcsConfig = new FcsActivationParams();
     	this.fcsConfig.setWorkTimeout(this.fcsWorkTimeout);
     	this.fcsConfig.setIndexEnabled(propertiesReader.getBooleanProperty(FCS_INDEX_ENABLED_PROPERTY, true));
@@ -139,17 +421,53 @@ public class FcaConfig {
     	String convertFileTypes = propertiesReader.getProperty(FCS_CONVERT_FILE_TYPES_PROPERTY, "");
     	if (!convertFileTypes.isEmpty())
     		this.fcsConfig.setConvertFileTypes(Arrays.asList(convertFileTypes.toLowerCase().split(",")));
+    	serializeFcsConfig();
 
     	if (logger.isDebugEnabled()) {
     		logger.debug("------------------- FCA CONFIGURATION PARAMETERS -------------------");
     		logger.debug(FCA_PRESENCE_PORT_PROPERTY + " = " + this.fcaPresencePort);
     		logger.debug(FCA_WAITING_STEP_PROPERTY + " = " + this.fcaWaitingStep);
     		logger.debug(FCA_REFRESH_DELAY_PROPERTY + " = " + this.fcaRefreshDelay);
+    		logger.debug(FCA_REFRESH_MIN_DELAY_PROPERTY + " = " + this.fcaRefreshMinDelay);
+    		logger.debug(FCA_SUBMIT_PORT_PROPERTY + " = " + this.fcaSubmitPort);
+    		logger.debug(FCA_ADMIN_PORT_PROPERTY + " = " + this.fcaAdminPort);
+    		logger.debug(FCA_QUEUE_LANE_WEIGHTS_PROPERTY + " = " + this.fcaQueueLaneWeights);
+    		logger.debug(FCA_INVOKER_ENGINE_PROPERTY + " = " + (this.fcaVirtualThreadInvokers ? "virtual" : "thread"));
+    		logger.debug(FCA_CALLBACK_BATCH_SIZE_PROPERTY + " = " + this.fcaCallbackBatchSize);
+    		logger.debug(FCA_CALLBACK_LINGER_PROPERTY + " = " + this.fcaCallbackLinger);
+    		logger.debug(FCA_CONFIG_WATCH_PROPERTY + " = " + this.fcaConfigWatch);
+    		logger.debug(FCA_JOURNAL_PATH_PROPERTY + " = " + (this.fcaJournalPath != null ? this.fcaJournalPath : ""));
+    		logger.debug(FCA_JOURNAL_SIZE_PROPERTY + " = " + this.fcaJournalSize);
+    		logger.debug(FCA_JOURNAL_SYNC_PROPERTY + " = " + this.fcaJournalSync);
+    		logger.debug(FCA_JOURNAL_SYNC_INTERVAL_PROPERTY + " = " + this.fcaJournalSyncInterval);
+    		logger.debug(FCA_SHUTDOWN_TIMEOUT_PROPERTY + " = " + this.fcaShutdownTimeout);
+    		logger.debug(FCA_SHUTDOWN_DRAIN_PROPERTY + " = " + this.fcaShutdownDrain);
+    		logger.debug(FCA_METRICS_JMX_PROPERTY + " = " + this.fcaMetricsJmx);
+    		logger.debug(FCA_METRICS_INTERVAL_PROPERTY + " = " + this.fcaMetricsInterval);
+    		logger.debug(FCA_PREFILTER_ENABLED_PROPERTY + " = " + this.fcaPrefilterEnabled);
 
     		logger.debug(FCS_POOL_PROPERTY + " = " + String.join(", ", strFcsPool));
     		logger.debug(FCS_SELECTION_MODE_PROPERTY + " = " + this.fcsSelectionMode);
     		logger.debug(FCS_ALIVE_TIMEOUT_PROPERTY + " = " + this.fcsAliveTimeout);
     		logger.debug(FCS_WORK_TIMEOUT_PROPERTY + " = " + this.fcsWorkTimeout);
+    		logger.debug(FCS_HEALTH_INTERVAL_PROPERTY + " = " + this.fcsHealthInterval);
+    		logger.debug(FCS_CONNECTION_KEEP_ALIVE_PROPERTY + " = " + this.fcsConnectionKeepAlive);
+    		logger.debug(FCS_CONNECTION_IDLE_TIMEOUT_PROPERTY + " = " + this.fcsConnectionIdleTimeout);
+    		logger.debug(FCS_BATCH_SIZE_PROPERTY + " = " + this.fcsBatchSize);
+    		logger.debug(FCS_BATCH_LINGER_PROPERTY + " = " + this.fcsBatchLinger);
+    		logger.debug(FCS_AFFINITY_KEY_PROPERTY + " = " + (this.fcsAffinityKeyParameters ? "parameters" : "docId"));
+    		logger.debug(FCS_AFFINITY_VIRTUAL_NODES_PROPERTY + " = " + this.fcsAffinityVirtualNodes);
+    		logger.debug(FCS_RETRY_MAX_ATTEMPTS_PROPERTY + " = " + this.fcsRetryMaxAttempts);
+    		logger.debug(FCS_RETRY_DELAY_PROPERTY + " = " + this.fcsRetryDelay);
+    		logger.debug(FCS_RETRY_MAX_DELAY_PROPERTY + " = " + this.fcsRetryMaxDelay);
+    		logger.debug(FCS_CIRCUIT_BREAKER_ENABLED_PROPERTY + " = " + this.fcsCircuitBreakerEnabled);
+    		logger.debug(FCS_CIRCUIT_BREAKER_WINDOW_SIZE_PROPERTY + " = " + this.fcsCircuitBreakerWindowSize);
+    		logger.debug(FCS_CIRCUIT_BREAKER_MIN_CALLS_PROPERTY + " = " + this.fcsCircuitBreakerMinCalls);
+    		logger.debug(FCS_CIRCUIT_BREAKER_FAILURE_RATE_PROPERTY + " = " + this.fcsCircuitBreakerFailureRate);
+    		logger.debug(FCS_CIRCUIT_BREAKER_SLOW_CALL_DURATION_PROPERTY + " = " + this.fcsCircuitBreakerSlowCallDuration);
+    		logger.debug(FCS_CIRCUIT_BREAKER_SLOW_CALL_RATE_PROPERTY + " = " + this.fcsCircuitBreakerSlowCallRate);
+    		logger.debug(FCS_CIRCUIT_BREAKER_OPEN_DURATION_PROPERTY + " = " + this.fcsCircuitBreakerOpenDuration);
+    		logger.debug(FCS_CIRCUIT_BREAKER_HALF_OPEN_CALLS_PROPERTY + " = " + this.fcsCircuitBreakerHalfOpenCalls);
 
     		logger.debug(FCS_INDEX_ENABLED_PROPERTY + " = " + this.fcsConfig.isIndexEnabled());
     		logger.debug(FCS_INDEX_OCR_PROPERTY + " = " + this.fcsConfig.isOcrEnabled());
@@ -162,6 +480,7 @@ public class FcaConfig {
     		logger.debug(FCS_CONVERT_ENABLED_PROPERTY + " = " + this.fcsConfig.isConvertEnabled());
     		logger.debug(FCS_CONVERT_MAX_FILE_SIZE_PROPERTY + " = " + this.fcsConfig.getConvertMaxFileSize());
     		logger.debug(FCS_CONVERT_FILE_TYPES_PROPERTY + " = " + String.join(", ", this.fcsConfig.getConvertFileTypes()));
+    		logger.debug("FCS activation parameters version = " + this.fcsConfigVersion);
     	}
     }
 
@@ -182,6 +501,66 @@ public class FcaConfig {
 		return instance;
 	}
 
+	/**
+	 * Ricaricamento della configurazione dal file di properties. Gli host FCS gia' presenti nel pool (stesso host e porta) vengono mantenuti, con
+	 * aggiornamento del numero massimo di richieste e del peso, in modo da preservare le elaborazioni in corso e lo stato rilevato.
+	 * Alcuni parametri (fca.presence.port, fca.submit.port, fca.admin.port, fca.invoker.engine, fca.queue.lane.weights, fca.refresh.*) vengono applicati solo al
+	 * riavvio di FCA.
+	 * @return Nuova configurazione
+	 * @throws Exception Errore di lettura o nuova configurazione non valida (viene mantenuta la configurazione corrente)
+	 */
+	public static FcaConfig reload() throws Exception {
+		synchronized (FcaConfig.class) {
+			FcaConfig current = getInstance();
+			FcaConfig updated = new FcaConfig();
+			if (updated.fcsPool == null || updated.fcsPool.isEmpty())
+				throw new Exception("ERROR: No FCS hosts defined!");
+
+			updated.reconcileFcsPool(current.fcsPool);
+			instance = updated;
+
+			if (logger.isInfoEnabled())
+				logger.info("FcaConfig: configuration reloaded... FCS pool = " + updated.fcsPool);
+			return updated;
+		}
+	}
+
+	/**
+	 * Sostituzione degli host FCS della nuova configurazione con gli host gia' presenti nel pool corrente (stesso host e porta)
+	 * @param previous Pool di host FCS corrente
+	 */
+	private void reconcileFcsPool(List<FcsHost> previous) {
+		Map<String, FcsHost> existing = new HashMap<String, FcsHost>();
+		for (FcsHost fcsHost : previous)
+			existing.put(fcsHost.getHost() + ":" + fcsHost.getPort(), fcsHost);
+
+		for (int i = 0; i < fcsPool.size(); i++) {
+			FcsHost configured = fcsPool.get(i);
+			FcsHost fcsHost = existing.remove(configured.getHost() + ":" + configured.getPort());
+			if (fcsHost != null) {
+				fcsHost.setQueueMaxSize(configured.getQueueMaxSize());
+				fcsHost.setWeight(configured.getWeight());
+				fcsPool.set(i, fcsHost);
+			}
+		}
+	}
+
+	/**
+	 * Ritorna il file di properties di FCA (null se non accessibile come file, es. risorsa contenuta in un jar)
+	 * @return
+	 */
+	public static File getPropertiesFile() {
+		try {
+			URL url = FcaConfig.class.getClassLoader().getResource(PROPERTIES_FILE_NAME);
+			if (url != null && "file".equals(url.getProtocol()))
+				return new File(url.toURI());
+		}
+		catch (Exception e) {
+			logger.warn("FcaConfig.getPropertiesFile(): unable to resolve " + PROPERTIES_FILE_NAME + "... " + e.getMessage());
+		}
+		return null;
+	}
+
 	public int getFcaPresencePort() {
 		return fcaPresencePort;
 	}
@@ -194,6 +573,99 @@ public class FcaConfig {
 		return fcaRefreshDelay;
 	}
 
+	public int getFcaRefreshMinDelay() {
+		return fcaRefreshMinDelay;
+	}
+
+	public int getFcaSubmitPort() {
+		return fcaSubmitPort;
+	}
+
+	public int getFcaAdminPort() {
+		return fcaAdminPort;
+	}
+
+	public Map<FcsRequestLane, Integer> getFcaQueueLaneWeights() {
+		return fcaQueueLaneWeights;
+	}
+
+	public boolean isFcaVirtualThreadInvokers() {
+		return fcaVirtualThreadInvokers;
+	}
+
+	public int getFcaCallbackBatchSize() {
+		return fcaCallbackBatchSize;
+	}
+
+	public int getFcaCallbackLinger() {
+		return fcaCallbackLinger;
+	}
+
+	public boolean isFcaConfigWatch() {
+		return fcaConfigWatch;
+	}
+
+	/**
+	 * Ritorna il percorso del journal delle richieste (null se journal disabilitato)
+	 * @return
+	 */
+	public String getFcaJournalPath() {
+		return fcaJournalPath;
+	}
+
+	public int getFcaJournalSize() {
+		return fcaJournalSize;
+	}
+
+	public FcaJournalSyncMode getFcaJournalSync() {
+		return fcaJournalSync;
+	}
+
+	public int getFcaJournalSyncInterval() {
+		return fcaJournalSyncInterval;
+	}
+
+	/**
+	 * Ritorna l'attesa massima (in ms) delle elaborazioni in corso in fase di arresto del servizio
+	 * @return
+	 */
+	public int getFcaShutdownTimeout() {
+		return fcaShutdownTimeout;
+	}
+
+	/**
+	 * Ritorna true se in fase di arresto del servizio (stop o shutdown hook) devono essere completate anche le richieste gia' accodate
+	 * @return
+	 */
+	public boolean isFcaShutdownDrain() {
+		return fcaShutdownDrain;
+	}
+
+	/**
+	 * Ritorna true se le metriche di FCA devono essere esposte via JMX
+	 * @return
+	 */
+	public boolean isFcaMetricsJmx() {
+		return fcaMetricsJmx;
+	}
+
+	/**
+	 * Ritorna l'intervallo (in ms) di esportazione delle metriche di FCA (0 = esportazione disabilitata)
+	 * @return
+	 */
+	public int getFcaMetricsInterval() {
+		return fcaMetricsInterval;
+	}
+
+	/**
+	 * Ritorna true se risulta abilitata la verifica preventiva delle richieste (documenti privi di file da indicizzare o convertire completati
+	 * senza invio agli host FCS)
+	 * @return
+	 */
+	public boolean isFcaPrefilterEnabled() {
+		return fcaPrefilterEnabled;
+	}
+
 	public List<FcsHost> getFcsPool() {
 		return fcsPool;
 	}
@@ -210,20 +682,118 @@ public class FcaConfig {
 		return fcsWorkTimeout;
 	}
 
+	public int getFcsHealthInterval() {
+		return fcsHealthInterval;
+	}
+
+	public boolean isFcsConnectionKeepAlive() {
+		return fcsConnectionKeepAlive;
+	}
+
+	public int getFcsConnectionIdleTimeout() {
+		return fcsConnectionIdleTimeout;
+	}
+
+	public int getFcsBatchSize() {
+		return fcsBatchSize;
+	}
+
+	public int getFcsBatchLinger() {
+		return fcsBatchLinger;
+	}
+
+	/**
+	 * Ritorna true se la chiave di instradamento di default (selezione affinity) corrisponde ai parametri aggiuntivi della richiesta, false se
+	 * corrisponde all'identificativo del documento
+	 * @return
+	 */
+	public boolean isFcsAffinityKeyParameters() {
+		return fcsAffinityKeyParameters;
+	}
+
+	public int getFcsAffinityVirtualNodes() {
+		return fcsAffinityVirtualNodes;
+	}
+
+	public int getFcsRetryMaxAttempts() {
+		return fcsRetryMaxAttempts;
+	}
+
+	public int getFcsRetryDelay() {
+		return fcsRetryDelay;
+	}
+
+	public int getFcsRetryMaxDelay() {
+		return fcsRetryMaxDelay;
+	}
+
+	public boolean isFcsCircuitBreakerEnabled() {
+		return fcsCircuitBreakerEnabled;
+	}
+
+	public int getFcsCircuitBreakerWindowSize() {
+		return fcsCircuitBreakerWindowSize;
+	}
+
+	public int getFcsCircuitBreakerMinCalls() {
+		return fcsCircuitBreakerMinCalls;
+	}
+
+	public int getFcsCircuitBreakerFailureRate() {
+		return fcsCircuitBreakerFailureRate;
+	}
+
+	public int getFcsCircuitBreakerSlowCallDuration() {
+		return fcsCircuitBreakerSlowCallDuration;
+	}
+
+	public int getFcsCircuitBreakerSlowCallRate() {
+		return fcsCircuitBreakerSlowCallRate;
+	}
+
+	public int getFcsCircuitBreakerOpenDuration() {
+		return fcsCircuitBreakerOpenDuration;
+	}
+
+	public int getFcsCircuitBreakerHalfOpenCalls() {
+		return fcsCircuitBreakerHalfOpenCalls;
+	}
+
 	public FcsActivationParams getFcsConfig() {
 		return fcsConfig;
 	}
 
 	/**
-	 * Restituisce la configurazione di FCS (parametri di attivazione di FCS definiti sul file di properties di FCA) in formato JSON
+	 * Restituisce la configurazione di FCS (parametri di attivazione di FCS definiti sul file di properties di FCA) in formato JSON. La
+	 * serializzazione avviene una sola volta alla lettura della configurazione (nuova serializzazione solo in caso di ricaricamento).
 	 * @return
 	 * @throws Exception
 	 */
 	public String getJsonFcsConfig() throws Exception {
-		String json = null;
-		if (fcsConfig != null)
-			json = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(fcsConfig);
-		return json;
+		return jsonFcsConfig;
+	}
+
+	/**
+	 * Restituisce la versione dei parametri di attivazione di FCS (hash SHA-256 della configurazione in formato JSON): versioni differenti
+	 * corrispondono a parametri di attivazione differenti
+	 * @return
+	 */
+	public String getFcsConfigVersion() {
+		return fcsConfigVersion;
+	}
+
+	/**
+	 * Serializzazione (compatta) dei parametri di attivazione di FCS e calcolo della relativa versione
+	 * @throws Exception
+	 */
+	private void serializeFcsConfig() throws Exception {
+		this.jsonFcsConfig = new ObjectMapper().writeValueAsString(fcsConfig);
+
+		byte[] digest = MessageDigest.getInstance("SHA-256").digest(jsonFcsConfig.getBytes(StandardCharsets.UTF_8));
+		StringBuilder version = new StringBuilder();
+		for (int i = 0; i < 8; i++)
+			version.append(String.format("%02x", digest[i]));
+		this.fcsConfigVersion = version.toString();
 	}
 
 }
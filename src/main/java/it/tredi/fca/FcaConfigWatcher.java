@@ -0,0 +1,126 @@
+package it.tredi.fca;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Controllo (in background) delle modifiche al file di properties di FCA: ad ogni modifica viene richiesto il ricaricamento della configurazione
+ * (vedi {@link Fca#reloadConfig()}). Le modifiche ravvicinate (es. salvataggio in piu' passaggi da parte dell'editor) vengono raggruppate in un
+ * unico ricaricamento.
+ */
+public class FcaConfigWatcher implements Runnable {
+
+	private static final Logger logger = LogManager.getLogger(Fca.class.getName());
+
+	// attesa (in ms) di ulteriori modifiche prima del ricaricamento
+	private static final int RELOAD_DEBOUNCE_DELAY = 500;
+
+	private final Fca fca;
+	private final File file;
+
+	private WatchService watchService = null;
+	private Thread thread = null;
+
+	/**
+	 * Costruttore
+	 * @param fca Istanza di FCA sulla quale ricaricare la configurazione
+	 * @param file File di properties da controllare
+	 */
+	public FcaConfigWatcher(Fca fca, File file) {
+		this.fca = fca;
+		this.file = file;
+	}
+
+	/**
+	 * Avvio del controllo delle modifiche
+	 * @throws Exception
+	 */
+	public synchronized void start() throws Exception {
+		if (thread != null)
+			return;
+
+		watchService = FileSystems.getDefault().newWatchService();
+		file.getAbsoluteFile().getParentFile().toPath().register(watchService, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+
+		thread = new Thread(this, "FcaConfigWatcher");
+		thread.setDaemon(true);
+		thread.start();
+
+		if (logger.isInfoEnabled())
+			logger.info("FcaConfigWatcher: watching " + file.getAbsolutePath());
+	}
+
+	/**
+	 * Arresto del controllo delle modifiche
+	 */
+	public synchronized void stop() {
+		if (thread != null) {
+			thread.interrupt();
+			thread = null;
+		}
+		try {
+			if (watchService != null)
+				watchService.close();
+		}
+		catch (Exception e) {
+			logger.warn("FcaConfigWatcher.stop(): unable to close watch service... " + e.getMessage());
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				boolean changed = isChanged(key);
+
+				// raggruppamento delle modifiche ravvicinate
+				WatchKey next;
+				while ((next = watchService.poll(RELOAD_DEBOUNCE_DELAY, TimeUnit.MILLISECONDS)) != null)
+					changed |= isChanged(next);
+
+				if (changed) {
+					try {
+						fca.reloadConfig();
+					}
+					catch (Exception e) {
+						logger.error("FcaConfigWatcher: unable to reload configuration... " + e.getMessage(), e);
+					}
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			if (logger.isInfoEnabled())
+				logger.info("FcaConfigWatcher: thread interrupted... " + e.getMessage());
+		}
+		catch (Exception e) {
+			logger.error("FcaConfigWatcher: FATAL, unable to watch configuration file (quit thread)... " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Ritorna true se gli eventi ricevuti riguardano il file di properties (la chiave viene riattivata)
+	 * @param key
+	 * @return
+	 */
+	private boolean isChanged(WatchKey key) {
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			Object context = event.context();
+			if (context instanceof Path && ((Path) context).getFileName().toString().equals(file.getName()))
+				changed = true;
+		}
+		key.reset();
+		return changed;
+	}
+
+}
@@ -0,0 +1,638 @@
+package it.tredi.fca;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.tredi.fca.entity.FcsRequest;
+import it.tredi.fca.entity.FcsRequestLane;
+import it.tredi.fca.entity.FcsRequestResult;
+
+/**
+ * Journal (append-only, su file mappato in memoria) delle richieste accodate, in elaborazione e completate. Al riavvio di FCA il journal consente
+ * di ripristinare le richieste non ancora completate e di notificare gli esiti non ancora consegnati all'implementazione, senza ripetere le
+ * elaborazioni gia' completate.
+ * <p>
+ * Ogni evento e' registrato come record <code>[lunghezza][tipo][timestamp][dati][CRC32]</code>: in fase di lettura un record incompleto o non
+ * integro (es. crash durante la scrittura) chiude il journal. Ogni accodamento riceve un numero di sequenza, riportato sugli eventi successivi
+ * della stessa richiesta: un documento nuovamente accodato prima della notifica dell'esito precedente resta distinto da quest'ultimo. Al riempimento del file vengono riscritti i soli record delle richieste ancora
+ * attive (compattazione). La sincronizzazione su disco e' definita da fca.journal.sync (vedi {@link FcaJournalSyncMode}).
+ * <p>
+ * Sul journal vengono registrate anche le richieste scartate (fallite per fcs.retry.maxAttempts tentativi, vedi {@link DeadLetterRequests}),
+ * mantenute fino alla rimozione da parte dell'implementazione di FCA o di un operatore: al riavvio i documenti scartati restano esclusi
+ * dall'elaborazione.
+ */
+public class FcaJournal {
+
+	private static final Logger logger = LogManager.getLogger(Fca.class.getName());
+
+	private static final byte RECORD_ENQUEUE = 1; // richiesta accodata
+	private static final byte RECORD_DISPATCH = 2; // richiesta inviata ad un host FCS
+	private static final byte RECORD_COMPLETE = 3; // richiesta completata (esito da notificare)
+	private static final byte RECORD_ACK = 4; // esito notificato all'implementazione di FCA
+	private static final byte RECORD_REMOVE = 5; // richiesta rilasciata senza esito da notificare (es. fallita)
+	private static final byte RECORD_DEAD_LETTER = 6; // richiesta scartata (fallita per il numero massimo di tentativi)
+	private static final byte RECORD_DEAD_LETTER_CLEAR = 7; // rimozione di una richiesta scartata (di tutte, se documento non indicato)
+
+	private static final int RECORD_OVERHEAD = 4 + 1 + 8 + 4; // lunghezza, tipo, timestamp, CRC32
+
+	private final File file;
+	private final FcaJournalSyncMode syncMode;
+	private final int syncInterval;
+
+	private int size;
+	private MappedByteBuffer buffer = null;
+	private volatile boolean dirty = false;
+	private volatile boolean closed = false;
+	private Thread syncThread = null;
+
+	// richieste attive (ordine di accodamento): numero di sequenza -> stato della richiesta
+	private final Map<Long, Entry> entries = new LinkedHashMap<Long, Entry>();
+	// richieste accodate o in elaborazione: identificativo del documento -> stato della richiesta
+	private final Map<String, Entry> pending = new HashMap<String, Entry>();
+	// richieste completate con esito in attesa di notifica: richiesta -> stato della richiesta
+	private final Map<FcsRequest, Entry> unacknowledged = new IdentityHashMap<FcsRequest, Entry>();
+	// richieste scartate: identificativo del documento -> esito dell'ultimo tentativo
+	private final Map<String, Entry> deadLetters = new LinkedHashMap<String, Entry>();
+	private long nextSequence = 1;
+
+	/**
+	 * Stato di una richiesta attiva sul journal
+	 */
+	private static class Entry {
+		private final long sequence;
+		private final FcsRequest request;
+		private String fcsHost = null;
+		private boolean completed = false;
+		private long startTime = 0;
+		private long duration = 0;
+		private int attempt = 0;
+		private String cause = null; // causa del fallimento (richieste scartate)
+
+		private Entry(long sequence, FcsRequest request) {
+			this.sequence = sequence;
+			this.request = request;
+		}
+	}
+
+	/**
+	 * Costruttore
+	 * @param file File del journal
+	 * @param size Dimensione iniziale (in byte) del file
+	 * @param syncMode Modalita' di sincronizzazione su disco
+	 * @param syncInterval Intervallo (in ms) di sincronizzazione con modalita' INTERVAL
+	 */
+	public FcaJournal(File file, int size, FcaJournalSyncMode syncMode, int syncInterval) {
+		this.file = file;
+		this.size = size;
+		this.syncMode = (syncMode != null) ? syncMode : FcaJournalSyncMode.INTERVAL;
+		this.syncInterval = syncInterval;
+	}
+
+	/**
+	 * Apertura del journal: lettura degli eventi registrati, compattazione del file e avvio dell'eventuale thread di sincronizzazione
+	 * @throws IOException
+	 */
+	public synchronized void open() throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists())
+			Files.createDirectories(parent.toPath());
+
+		int records = file.exists() ? replay() : 0;
+		compact(0);
+
+		if (logger.isInfoEnabled())
+			logger.info("FcaJournal: opened " + file.getAbsolutePath() + " (" + records + " records read, " + entries.size() + " active requests, " + deadLetters.size() + " dead letters, sync = " + syncMode + ")");
+
+		if (syncMode == FcaJournalSyncMode.INTERVAL) {
+			syncThread = new Thread(this::syncLoop, "FcaJournalSync");
+			syncThread.setDaemon(true);
+			syncThread.start();
+		}
+	}
+
+	/**
+	 * Chiusura del journal (con sincronizzazione su disco degli eventi registrati)
+	 */
+	public void close() {
+		Thread thread;
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+			if (buffer != null)
+				buffer.force();
+			buffer = null;
+			thread = syncThread;
+			syncThread = null;
+		}
+		if (thread != null)
+			thread.interrupt();
+	}
+
+	/**
+	 * Registrazione di una richiesta accodata
+	 * @param fcsRequest
+	 */
+	public synchronized void enqueued(FcsRequest fcsRequest) {
+		Entry entry = enqueue(nextSequence++, fcsRequest);
+		append(RECORD_ENQUEUE, encodeRequest(entry));
+	}
+
+	/**
+	 * Registrazione dell'invio di una richiesta ad un host FCS
+	 * @param docId
+	 * @param fcsHost Host FCS (host:port)
+	 */
+	public synchronized void dispatched(String docId, String fcsHost) {
+		Entry entry = pending.get(docId);
+		if (entry == null)
+			return;
+		entry.fcsHost = fcsHost;
+		append(RECORD_DISPATCH, encode(entry.sequence, fcsHost));
+	}
+
+	/**
+	 * Registrazione di una richiesta completata (esito in attesa di notifica all'implementazione di FCA)
+	 * @param result
+	 */
+	public synchronized void completed(FcsRequestResult result) {
+		Entry entry = pending.get(result.getDocId());
+		if (entry == null)
+			return;
+		complete(entry, result.getFcsHost(), result.getStartTime(), result.getDuration(), result.getAttempt());
+		append(RECORD_COMPLETE, encodeCompletion(entry));
+	}
+
+	/**
+	 * Registrazione della notifica dell'esito di una richiesta completata (la richiesta non e' piu' attiva). L'esito e' associato alla richiesta
+	 * completata (e non al solo identificativo del documento), quindi un eventuale nuovo accodamento dello stesso documento resta attivo.
+	 * @param result Esito notificato
+	 */
+	public synchronized void acknowledged(FcsRequestResult result) {
+		Entry entry = unacknowledged.get(result.getRequest());
+		if (entry != null) {
+			remove(entry);
+			append(RECORD_ACK, encode(entry.sequence));
+		}
+	}
+
+	/**
+	 * Registrazione di una richiesta rilasciata senza esito da notificare (es. richiesta fallita o non accodata)
+	 * @param docId
+	 */
+	public synchronized void removed(String docId) {
+		Entry entry = pending.get(docId);
+		if (entry != null) {
+			remove(entry);
+			append(RECORD_REMOVE, encode(entry.sequence));
+		}
+	}
+
+	/**
+	 * Registrazione di una richiesta scartata (fallita per il numero massimo di tentativi)
+	 * @param result Esito dell'ultimo tentativo
+	 */
+	public synchronized void deadLettered(FcsRequestResult result) {
+		Entry entry = new Entry(nextSequence++, result.getRequest());
+		entry.fcsHost = result.getFcsHost();
+		entry.startTime = result.getStartTime();
+		entry.duration = result.getDuration();
+		entry.attempt = result.getAttempt();
+		entry.cause = (result.getCause() != null) ? result.getCause().toString() : null;
+		deadLetters.put(result.getDocId(), entry);
+		append(RECORD_DEAD_LETTER, encodeDeadLetter(entry));
+	}
+
+	/**
+	 * Registrazione della rimozione di una richiesta scartata
+	 * @param docId Identificativo del documento, null per rimuovere tutte le richieste scartate
+	 */
+	public synchronized void deadLetterCleared(String docId) {
+		if (docId == null)
+			deadLetters.clear();
+		else if (deadLetters.remove(docId) == null)
+			return;
+		append(RECORD_DEAD_LETTER_CLEAR, encode(0, docId));
+	}
+
+	/**
+	 * Registrazione di una nuova richiesta attiva (un precedente accodamento dello stesso documento non ancora completato viene sostituito, es.
+	 * nuovo tentativo di elaborazione)
+	 * @param sequence
+	 * @param fcsRequest
+	 * @return
+	 */
+	private Entry enqueue(long sequence, FcsRequest fcsRequest) {
+		Entry previous = pending.get(fcsRequest.getDocId());
+		if (previous != null)
+			remove(previous);
+		Entry entry = new Entry(sequence, fcsRequest);
+		entries.put(sequence, entry);
+		pending.put(fcsRequest.getDocId(), entry);
+		return entry;
+	}
+
+	private void complete(Entry entry, String fcsHost, long startTime, long duration, int attempt) {
+		entry.completed = true;
+		entry.fcsHost = fcsHost;
+		entry.startTime = startTime;
+		entry.duration = duration;
+		entry.attempt = attempt;
+		pending.remove(entry.request.getDocId(), entry);
+		Entry previous = unacknowledged.put(entry.request, entry);
+		if (previous != null && previous != entry)
+			entries.remove(previous.sequence);
+	}
+
+	private void remove(Entry entry) {
+		entries.remove(entry.sequence);
+		pending.remove(entry.request.getDocId(), entry);
+		unacknowledged.remove(entry.request, entry);
+	}
+
+	/**
+	 * Ritorna le richieste accodate o in elaborazione (non completate) registrate sul journal
+	 * @return
+	 */
+	public synchronized List<FcsRequest> getPendingRequests() {
+		List<FcsRequest> requests = new ArrayList<FcsRequest>();
+		for (Entry entry : entries.values()) {
+			if (!entry.completed)
+				requests.add(entry.request);
+		}
+		return requests;
+	}
+
+	/**
+	 * Ritorna gli esiti delle richieste completate non ancora notificati all'implementazione di FCA
+	 * @return
+	 */
+	public synchronized List<FcsRequestResult> getUnacknowledgedResults() {
+		List<FcsRequestResult> results = new ArrayList<FcsRequestResult>();
+		for (Entry entry : entries.values()) {
+			if (entry.completed)
+				results.add(new FcsRequestResult(entry.request, entry.fcsHost, entry.startTime, entry.duration, entry.attempt, true, null));
+		}
+		return results;
+	}
+
+	/**
+	 * Ritorna le richieste scartate registrate sul journal (esito dell'ultimo tentativo, causa del fallimento riportata come messaggio)
+	 * @return
+	 */
+	public synchronized List<FcsRequestResult> getDeadLetters() {
+		List<FcsRequestResult> results = new ArrayList<FcsRequestResult>();
+		for (Entry entry : deadLetters.values()) {
+			Throwable cause = (entry.cause != null) ? new Exception(entry.cause) : null;
+			results.add(new FcsRequestResult(entry.request, entry.fcsHost, entry.startTime, entry.duration, entry.attempt, false, cause));
+		}
+		return results;
+	}
+
+	/**
+	 * Ritorna il numero di richieste attive registrate sul journal
+	 * @return
+	 */
+	public synchronized int countRequests() {
+		return entries.size();
+	}
+
+	/**
+	 * Scrittura di un record sul journal. In caso di file pieno viene eseguita la compattazione (ed eventualmente aumentata la dimensione del file).
+	 * Eventuali errori di scrittura vengono solo registrati sul log (l'elaborazione delle richieste non viene interrotta).
+	 * @param type
+	 * @param data
+	 */
+	private void append(byte type, byte[] data) {
+		if (closed || buffer == null)
+			return;
+
+		try {
+			if (buffer.remaining() < RECORD_OVERHEAD + data.length)
+				compact(RECORD_OVERHEAD + data.length);
+			write(buffer, type, System.currentTimeMillis(), data);
+
+			if (syncMode == FcaJournalSyncMode.ALWAYS)
+				buffer.force();
+			else
+				dirty = true;
+		}
+		catch (Exception e) {
+			logger.error("FcaJournal: unable to write record on " + file.getAbsolutePath() + "... " + e.getMessage(), e);
+		}
+	}
+
+	private static void write(MappedByteBuffer target, byte type, long time, byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(type);
+		crc.update(longBytes(time));
+		crc.update(data);
+
+		target.putInt(1 + 8 + data.length);
+		target.put(type);
+		target.putLong(time);
+		target.put(data);
+		target.putInt((int) crc.getValue());
+	}
+
+	/**
+	 * Riscrittura (su un nuovo file, sostituito in modo atomico) dei soli record delle richieste attive. Se lo spazio libero dopo la compattazione
+	 * risulta inferiore alla meta' del file, la dimensione del file viene raddoppiata.
+	 * @param required Spazio libero richiesto dopo la compattazione (in byte)
+	 * @throws IOException
+	 */
+	private void compact(int required) throws IOException {
+		List<byte[]> records = new ArrayList<byte[]>();
+		List<Byte> types = new ArrayList<Byte>();
+		int used = 0;
+		for (Entry entry : entries.values()) {
+			byte[] enqueue = encodeRequest(entry);
+			records.add(enqueue);
+			types.add(RECORD_ENQUEUE);
+			used += RECORD_OVERHEAD + enqueue.length;
+			if (entry.fcsHost != null && !entry.completed) {
+				byte[] dispatch = encode(entry.sequence, entry.fcsHost);
+				records.add(dispatch);
+				types.add(RECORD_DISPATCH);
+				used += RECORD_OVERHEAD + dispatch.length;
+			}
+			if (entry.completed) {
+				byte[] complete = encodeCompletion(entry);
+				records.add(complete);
+				types.add(RECORD_COMPLETE);
+				used += RECORD_OVERHEAD + complete.length;
+			}
+		}
+		for (Entry entry : deadLetters.values()) {
+			byte[] deadLetter = encodeDeadLetter(entry);
+			records.add(deadLetter);
+			types.add(RECORD_DEAD_LETTER);
+			used += RECORD_OVERHEAD + deadLetter.length;
+		}
+		while (size - used - 4 < Math.max(required, size / 2) && size < Integer.MAX_VALUE / 2)
+			size *= 2;
+
+		File tmp = new File(file.getAbsolutePath() + ".tmp");
+		Files.deleteIfExists(tmp.toPath());
+		MappedByteBuffer target;
+		try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw"); FileChannel channel = raf.getChannel()) {
+			raf.setLength(size);
+			target = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+		long time = System.currentTimeMillis();
+		for (int i = 0; i < records.size(); i++)
+			write(target, types.get(i), time, records.get(i));
+		target.force();
+
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		buffer = target;
+		dirty = false;
+
+		if (logger.isDebugEnabled())
+			logger.debug("FcaJournal: compacted " + file.getAbsolutePath() + " -> " + entries.size() + " active requests, " + deadLetters.size() + " dead letters, " + used + " of " + size + " bytes used");
+	}
+
+	/**
+	 * Lettura degli eventi registrati sul journal e ricostruzione delle richieste attive. La lettura si interrompe al primo record incompleto o
+	 * non integro.
+	 * @return Numero di record letti
+	 * @throws IOException
+	 */
+	private int replay() throws IOException {
+		byte[] content = Files.readAllBytes(file.toPath());
+		ByteBuffer source = ByteBuffer.wrap(content);
+		int records = 0;
+		while (source.remaining() >= RECORD_OVERHEAD) {
+			int length = source.getInt();
+			if (length < 1 + 8 || length > source.remaining() - 4)
+				break;
+
+			byte type = source.get();
+			long time = source.getLong();
+			byte[] data = new byte[length - 1 - 8];
+			source.get(data);
+			CRC32 crc = new CRC32();
+			crc.update(type);
+			crc.update(longBytes(time));
+			crc.update(data);
+			if (source.getInt() != (int) crc.getValue()) {
+				logger.warn("FcaJournal: corrupted record at position " + (source.position() - RECORD_OVERHEAD - data.length) + " on " + file.getAbsolutePath() + "... stop reading");
+				break;
+			}
+
+			apply(type, data);
+			records++;
+		}
+		return records;
+	}
+
+	/**
+	 * Applicazione di un record letto dal journal alle richieste attive
+	 * @param type
+	 * @param data
+	 * @throws IOException
+	 */
+	private void apply(byte type, byte[] data) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		long sequence = in.readLong();
+		Entry entry = entries.get(sequence);
+		switch (type) {
+			case RECORD_ENQUEUE:
+				enqueue(sequence, readRequest(in));
+				nextSequence = Math.max(nextSequence, sequence + 1);
+				break;
+			case RECORD_DISPATCH:
+				if (entry != null)
+					entry.fcsHost = readString(in);
+				break;
+			case RECORD_COMPLETE:
+				if (entry != null)
+					complete(entry, readString(in), in.readLong(), in.readLong(), in.readInt());
+				break;
+			case RECORD_ACK:
+			case RECORD_REMOVE:
+				if (entry != null)
+					remove(entry);
+				break;
+			case RECORD_DEAD_LETTER:
+				Entry deadLetter = new Entry(sequence, readRequest(in));
+				deadLetter.fcsHost = readString(in);
+				deadLetter.startTime = in.readLong();
+				deadLetter.duration = in.readLong();
+				deadLetter.attempt = in.readInt();
+				deadLetter.cause = readString(in);
+				deadLetters.put(deadLetter.request.getDocId(), deadLetter);
+				nextSequence = Math.max(nextSequence, sequence + 1);
+				break;
+			case RECORD_DEAD_LETTER_CLEAR:
+				String docId = readString(in);
+				if (docId == null)
+					deadLetters.clear();
+				else
+					deadLetters.remove(docId);
+				break;
+			default:
+				logger.warn("FcaJournal: unknown record type " + type + " for sequence " + sequence + "... skip record");
+		}
+	}
+
+	/**
+	 * Sincronizzazione periodica su disco degli eventi registrati (modalita' INTERVAL)
+	 */
+	private void syncLoop() {
+		try {
+			while (!closed) {
+				Thread.sleep(syncInterval);
+				MappedByteBuffer target;
+				synchronized (this) {
+					if (!dirty || buffer == null)
+						continue;
+					target = buffer;
+					dirty = false;
+				}
+				// sincronizzazione al di fuori del lock (le scritture sul journal non vengono bloccate)
+				target.force();
+			}
+		}
+		catch (InterruptedException e) {
+			// chiusura del journal
+		}
+		catch (Exception e) {
+			logger.error("FcaJournal: got exception on sync... " + e.getMessage(), e);
+		}
+	}
+
+	private static byte[] encodeRequest(Entry entry) {
+		try {
+			FcsRequest fcsRequest = entry.request;
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeLong(entry.sequence);
+			writeString(out, fcsRequest.getDocId());
+			writeString(out, fcsRequest.getConversionTo());
+			writeString(out, fcsRequest.getAdditionalParameters());
+			writeString(out, fcsRequest.getLane().name());
+			writeString(out, fcsRequest.getRoutingKey());
+			out.writeLong(fcsRequest.getDeadline());
+			out.writeInt(fcsRequest.getWorkTimeout());
+			return bytes.toByteArray();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Lettura dei dati di una richiesta (vedi {@link #encodeRequest(Entry)}), successivi al numero di sequenza
+	 */
+	private static FcsRequest readRequest(DataInputStream in) throws IOException {
+		FcsRequest fcsRequest = new FcsRequest(readString(in), readString(in));
+		fcsRequest.setAdditionalParameters(readString(in));
+		fcsRequest.setLane(FcsRequestLane.valueOf(readString(in)));
+		fcsRequest.setRoutingKey(readString(in));
+		fcsRequest.setDeadline(in.readLong());
+		fcsRequest.setWorkTimeout(in.readInt());
+		return fcsRequest;
+	}
+
+	private static byte[] encodeDeadLetter(Entry entry) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.write(encodeRequest(entry));
+			writeString(out, entry.fcsHost);
+			out.writeLong(entry.startTime);
+			out.writeLong(entry.duration);
+			out.writeInt(entry.attempt);
+			writeString(out, entry.cause);
+			return bytes.toByteArray();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] encodeCompletion(Entry entry) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeLong(entry.sequence);
+			writeString(out, entry.fcsHost);
+			out.writeLong(entry.startTime);
+			out.writeLong(entry.duration);
+			out.writeInt(entry.attempt);
+			return bytes.toByteArray();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] encode(long sequence, String... values) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeLong(sequence);
+			for (String value : values)
+				writeString(out, value);
+			return bytes.toByteArray();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Scrittura di una stringa (UTF-8, preceduta dalla lunghezza in byte; -1 per valore nullo)
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+		}
+		else {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static byte[] longBytes(long value) {
+		byte[] bytes = new byte[8];
+		for (int i = 7; i >= 0; i--) {
+			bytes[i] = (byte) value;
+			value >>>= 8;
+		}
+		return bytes;
+	}
+
+}
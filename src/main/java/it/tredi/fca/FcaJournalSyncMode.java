@@ -0,0 +1,12 @@
+package it.tredi.fca;
+
+/**
+ * Modalita' di sincronizzazione su disco del journal delle richieste (vedi {@link FcaJournal})
+ */
+public enum FcaJournalSyncMode {
+
+	NONE, // scrittura demandata al sistema operativo (eventi persi solo in caso di crash del sistema operativo)
+	INTERVAL, // sincronizzazione periodica ogni fca.journal.syncInterval ms (default)
+	ALWAYS // sincronizzazione ad ogni evento (piu' lenta)
+
+}
@@ -0,0 +1,39 @@
+package it.tredi.fca;
+
+/**
+ * Pianificazione dei cicli di caricamento delle richieste pendenti (vedi {@link Fca#openFcsPendingRequests(int)}) da parte del ciclo principale di FCA.
+ * L'implementazione di default ({@link BackoffPollScheduler}) puo' essere sostituita ridefinendo {@link Fca#createPollScheduler()}.
+ */
+public interface FcaPollScheduler {
+
+	/**
+	 * Notifica del completamento di un ciclo di caricamento
+	 * @param found Numero di richieste lette dal cursore
+	 * @param enqueued Numero di richieste accodate (richieste gia' in elaborazione escluse)
+	 * @param maxItems Numero massimo di richieste che potevano essere accodate (pari a enqueued se il caricamento ha trovato la corsia di una
+	 * richiesta piena: coda piena per il caricamento corrente)
+	 */
+	public void onPollCompleted(int found, int enqueued, int maxItems);
+
+	/**
+	 * Notifica di un errore sul ciclo di caricamento
+	 */
+	public void onPollFailed();
+
+	/**
+	 * Notifica di spazio liberato sulla coda condivisa (richiesta prelevata da un invoker)
+	 */
+	public void onCapacityAvailable();
+
+	/**
+	 * Richiede un nuovo ciclo di caricamento immediato (es. nuovi documenti salvati dall'applicazione)
+	 */
+	public void wakeUp();
+
+	/**
+	 * Attesa fino al successivo ciclo di caricamento
+	 * @throws InterruptedException
+	 */
+	public void awaitNextPoll() throws InterruptedException;
+
+}
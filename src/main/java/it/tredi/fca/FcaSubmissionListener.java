@@ -0,0 +1,195 @@
+package it.tredi.fca;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.tredi.fca.entity.FcsRequest;
+
+/**
+ * Listener (su localhost) per l'invio diretto di richieste di indicizzazione/conversione a FCA da parte delle applicazioni, senza attendere il
+ * successivo caricamento delle richieste pendenti.
+ * <p>
+ * Il dialogo e' testuale (UTF-8), una richiesta per riga:
+ * <pre>
+ * DOC_ID[\tCONVERSION_TO[\tADDITIONAL_PARAMETERS]]
+ * </pre>
+ * Per ogni riga ricevuta viene restituita una riga di risposta: <code>OK</code> (richiesta accodata), <code>IN_PROGRESS</code> (richiesta gia' in
+ * elaborazione) o <code>ERROR messaggio</code>. Una riga vuota (o <code>QUIT</code>) chiude la connessione.
+ * <p>
+ * I comandi di amministrazione vengono ricevuti su una porta distinta (vedi {@link FcaAdminListener}), in modo che nessun identificativo di
+ * documento possa essere interpretato come comando.
+ */
+public class FcaSubmissionListener implements Runnable {
+
+	private static final Logger logger = LogManager.getLogger(Fca.class.getName());
+
+	public static final String RESPONSE_OK = "OK";
+	public static final String RESPONSE_IN_PROGRESS = "IN_PROGRESS";
+	public static final String RESPONSE_ERROR = "ERROR";
+	public static final String RESPONSE_NOT_FOUND = "NOT_FOUND";
+
+	private static final String COMMAND_QUIT = "QUIT";
+
+	protected final Fca fca;
+	private final int port;
+	private final String name;
+
+	private ServerSocket serverSocket = null;
+	private ExecutorService handlers = null;
+	private volatile boolean running = false;
+
+	/**
+	 * Costruttore
+	 * @param fca Istanza di FCA sulla quale accodare le richieste ricevute
+	 * @param port Porta TCP (su localhost) del listener
+	 */
+	public FcaSubmissionListener(Fca fca, int port) {
+		this.fca = fca;
+		this.port = port;
+		this.name = getClass().getSimpleName();
+	}
+
+	/**
+	 * Avvio del listener
+	 * @throws IOException
+	 */
+	public synchronized void start() throws IOException {
+		if (running)
+			return;
+
+		serverSocket = new ServerSocket();
+		serverSocket.bind(new InetSocketAddress("127.0.0.1", port));
+
+		final AtomicInteger counter = new AtomicInteger(0);
+		handlers = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, name + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		running = true;
+		Thread thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+
+		if (logger.isInfoEnabled())
+			logger.info(name + ": listening on 127.0.0.1:" + port);
+	}
+
+	/**
+	 * Arresto del listener (chiusura del server socket e delle connessioni attive)
+	 */
+	public synchronized void stop() {
+		if (!running)
+			return;
+
+		running = false;
+		try {
+			serverSocket.close();
+		}
+		catch (Exception e) {
+			logger.warn(name + ".stop(): unable to close server socket... " + e.getMessage());
+		}
+		handlers.shutdownNow();
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				final Socket client = serverSocket.accept();
+				handlers.execute(() -> handle(client));
+			}
+			catch (SocketException e) {
+				if (running)
+					logger.error(name + ": got socket exception on accept... " + e.getMessage(), e);
+			}
+			catch (Exception e) {
+				logger.error(name + ": got exception on accept... " + e.getMessage(), e);
+			}
+		}
+
+		if (logger.isInfoEnabled())
+			logger.info(name + ": stopped!");
+	}
+
+	/**
+	 * Gestione di una connessione: lettura delle richieste (una per riga) e invio delle risposte
+	 * @param client
+	 */
+	private void handle(Socket client) {
+		try (Socket socket = client;
+				BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+				BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.equalsIgnoreCase(COMMAND_QUIT))
+					break;
+
+				writer.write(command(line));
+				writer.newLine();
+				writer.flush();
+			}
+		}
+		catch (Exception e) {
+			if (running)
+				logger.warn(name + ": got exception on client connection... " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Elaborazione della riga ricevuta (accodamento della richiesta)
+	 * @param line Riga ricevuta dal client
+	 * @return Risposta da inviare al client
+	 */
+	protected String command(String line) {
+		return submit(line);
+	}
+
+	/**
+	 * Accodamento della richiesta ricevuta
+	 * @param line Riga ricevuta dal client
+	 * @return Risposta da inviare al client
+	 */
+	private String submit(String line) {
+		String[] fields = line.split("\t", 3);
+		String docId = fields[0].trim();
+		if (docId.isEmpty())
+			return RESPONSE_ERROR + " empty docId";
+
+		FcsRequest fcsRequest = new FcsRequest(docId, fields.length > 1 ? fields[1].trim() : null);
+		if (fields.length > 2)
+			fcsRequest.setAdditionalParameters(fields[2]);
+
+		try {
+			if (fca.submitFcsRequest(fcsRequest))
+				return RESPONSE_OK;
+			else
+				return RESPONSE_IN_PROGRESS;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return RESPONSE_ERROR + " interrupted";
+		}
+		catch (Exception e) {
+			logger.error(name + ": unable to submit request " + docId + "... " + e.getMessage(), e);
+			return RESPONSE_ERROR + " " + e.getMessage();
+		}
+	}
+
+}
@@ -0,0 +1,256 @@
+package it.tredi.fca;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Circuit breaker di un host FCS alimentato dagli esiti delle elaborazioni. Gli esiti delle ultime fcs.circuitBreaker.windowSize richieste vengono
+ * mantenuti su una finestra circolare: raggiunto il numero minimo di richieste, se la percentuale di richieste fallite (o di richieste lente) supera la
+ * soglia configurata il circuito viene aperto e l'host escluso dalla selezione per fcs.circuitBreaker.openDuration ms. Al termine dell'attesa
+ * vengono inviate all'host al massimo fcs.circuitBreaker.halfOpenCalls richieste di prova: se tutte le prove hanno esito positivo il circuito viene
+ * chiuso, altrimenti viene nuovamente aperto.
+ * <p>
+ * Evita che un host che fallisce rapidamente (quindi con coda sempre vuota) venga considerato il piu' scarico e riceva la maggior parte delle richieste.
+ */
+public class FcsCircuitBreaker {
+
+	private static final Logger logger = LogManager.getLogger(Fca.class.getName());
+
+	private final FcsHost fcsHost;
+
+	private volatile FcsCircuitState state = FcsCircuitState.CLOSED;
+	private volatile long openUntil = 0;
+
+	// finestra circolare degli esiti (stato CLOSED)
+	private boolean[] failures = new boolean[0];
+	private boolean[] slowCalls = new boolean[0];
+	private int position = 0;
+	private int calls = 0;
+	private int failureCount = 0;
+	private int slowCallCount = 0;
+
+	// richieste di prova (stato HALF_OPEN)
+	private int trialPermits = 0;
+	private int trialCalls = 0;
+
+	public FcsCircuitBreaker(FcsHost fcsHost) {
+		this.fcsHost = fcsHost;
+	}
+
+	/**
+	 * Ritorna lo stato corrente del circuito
+	 * @return
+	 */
+	public FcsCircuitState getState() {
+		return state;
+	}
+
+	/**
+	 * Ritorna true se l'host puo' ricevere nuove richieste (circuito chiuso, attesa del circuito aperto terminata o richieste di prova ancora
+	 * disponibili). Non riserva alcun permesso: vedi {@link #tryAcquirePermission()}.
+	 * @return
+	 */
+	public boolean isCallPermitted() {
+		FcsCircuitState current = state;
+		if (current == FcsCircuitState.CLOSED)
+			return true;
+		if (resetIfDisabled())
+			return true;
+		if (current == FcsCircuitState.OPEN)
+			return System.currentTimeMillis() >= openUntil;
+		synchronized (this) {
+			return state != FcsCircuitState.HALF_OPEN || trialPermits > 0;
+		}
+	}
+
+	/**
+	 * Riserva il permesso di invio di una richiesta all'host. Con circuito aperto e attesa terminata il circuito passa in stato HALF_OPEN e viene
+	 * riservata una delle richieste di prova.
+	 * @return true se la richiesta puo' essere inviata all'host
+	 */
+	public boolean tryAcquirePermission() {
+		if (state == FcsCircuitState.CLOSED)
+			return true;
+		if (resetIfDisabled())
+			return true;
+
+		boolean exhausted = false;
+		synchronized (this) {
+			if (state == FcsCircuitState.OPEN) {
+				if (System.currentTimeMillis() < openUntil)
+					return false;
+				halfOpen();
+			}
+			if (state == FcsCircuitState.HALF_OPEN) {
+				if (trialPermits <= 0)
+					return false;
+				exhausted = --trialPermits == 0;
+			}
+		}
+
+		// richieste di prova esaurite: host non piu' selezionabile, ricalcolo dei crediti (fuori dal lock del circuito)
+		if (exhausted)
+			FcsSlotCredits.getInstance().signal();
+		return true;
+	}
+
+	/**
+	 * Rilascio del permesso riservato tramite {@link #tryAcquirePermission()} senza registrazione di alcun esito (es. richieste scartate, annullate
+	 * o scadute, non imputabili all'host). Con circuito HALF_OPEN la richiesta di prova torna disponibile, altrimenti il circuito resterebbe
+	 * in attesa di un esito che non verra' mai registrato.
+	 */
+	public void releasePermission() {
+		if (state != FcsCircuitState.HALF_OPEN)
+			return;
+
+		boolean released = false;
+		synchronized (this) {
+			FcaConfig config = getConfig();
+			int halfOpenCalls = (config != null) ? config.getFcsCircuitBreakerHalfOpenCalls() : 1;
+			// permesso restituito solo se risulta almeno una richiesta di prova in corso
+			if (state == FcsCircuitState.HALF_OPEN && trialPermits + trialCalls < halfOpenCalls) {
+				trialPermits++;
+				released = true;
+			}
+		}
+
+		// richiesta di prova nuovamente disponibile: risveglio degli invoker in attesa (fuori dal lock del circuito)
+		if (released)
+			FcsSlotCredits.getInstance().signal();
+	}
+
+	/**
+	 * Registrazione dell'esito di una elaborazione sull'host
+	 * @param success true se l'elaborazione e' stata completata
+	 * @param duration Durata (in ms) dell'elaborazione
+	 */
+	public void onResult(boolean success, long duration) {
+		FcaConfig config = getConfig();
+		if (config == null || !config.isFcsCircuitBreakerEnabled())
+			return;
+
+		boolean slow = config.getFcsCircuitBreakerSlowCallDuration() > 0 && duration >= config.getFcsCircuitBreakerSlowCallDuration();
+		boolean changed = false;
+		synchronized (this) {
+			FcsCircuitState previous = state;
+			if (state == FcsCircuitState.CLOSED) {
+				record(!success, slow, config.getFcsCircuitBreakerWindowSize());
+				if (calls >= config.getFcsCircuitBreakerMinCalls()) {
+					int failureRate = failureCount * 100 / calls;
+					int slowCallRate = slowCallCount * 100 / calls;
+					if (failureRate >= config.getFcsCircuitBreakerFailureRate())
+						open(config, "failure rate " + failureRate + "%");
+					else if (config.getFcsCircuitBreakerSlowCallDuration() > 0 && slowCallRate >= config.getFcsCircuitBreakerSlowCallRate())
+						open(config, "slow call rate " + slowCallRate + "%");
+				}
+			}
+			else if (state == FcsCircuitState.HALF_OPEN) {
+				if (!success || slow)
+					open(config, "trial request " + (success ? "slow (" + duration + " ms.)" : "failed"));
+				else if (++trialCalls >= config.getFcsCircuitBreakerHalfOpenCalls())
+					close();
+			}
+			// circuito aperto: esiti di richieste inviate prima dell'apertura ignorati
+			changed = state != previous;
+		}
+
+		// host escluso o nuovamente selezionabile: ricalcolo dei crediti e risveglio degli invoker in attesa (fuori dal lock del circuito)
+		if (changed)
+			FcsSlotCredits.getInstance().signal();
+	}
+
+	/**
+	 * Chiusura del circuito nel caso in cui il circuit breaker sia stato disabilitato (fcs.circuitBreaker.enabled=false) con circuito aperto o
+	 * in stato HALF_OPEN (es. ricaricamento della configurazione)
+	 * @return true se il circuit breaker risulta disabilitato
+	 */
+	private boolean resetIfDisabled() {
+		FcaConfig config = getConfig();
+		if (config == null || config.isFcsCircuitBreakerEnabled())
+			return false;
+
+		boolean closed = false;
+		synchronized (this) {
+			if (state != FcsCircuitState.CLOSED) {
+				close();
+				closed = true;
+			}
+		}
+
+		// host nuovamente selezionabile: risveglio degli invoker in attesa (fuori dal lock del circuito)
+		if (closed)
+			FcsSlotCredits.getInstance().signal();
+		return true;
+	}
+
+	/**
+	 * Registrazione di un esito sulla finestra circolare (da invocare con lock acquisito)
+	 * @param failure
+	 * @param slow
+	 * @param windowSize
+	 */
+	private void record(boolean failure, boolean slow, int windowSize) {
+		if (failures.length != windowSize)
+			resetWindow(windowSize);
+
+		if (calls == windowSize) {
+			// sostituzione dell'esito meno recente
+			if (failures[position])
+				failureCount--;
+			if (slowCalls[position])
+				slowCallCount--;
+		}
+		else
+			calls++;
+
+		failures[position] = failure;
+		slowCalls[position] = slow;
+		if (failure)
+			failureCount++;
+		if (slow)
+			slowCallCount++;
+		position = (position + 1) % windowSize;
+	}
+
+	private void resetWindow(int windowSize) {
+		failures = new boolean[windowSize];
+		slowCalls = new boolean[windowSize];
+		position = 0;
+		calls = 0;
+		failureCount = 0;
+		slowCallCount = 0;
+	}
+
+	private void open(FcaConfig config, String reason) {
+		openUntil = System.currentTimeMillis() + config.getFcsCircuitBreakerOpenDuration();
+		state = FcsCircuitState.OPEN;
+		trialPermits = 0;
+		logger.warn("FcsCircuitBreaker: host " + fcsHost.getHost() + ":" + fcsHost.getPort() + " circuit OPEN (" + reason + ")... excluded for " + config.getFcsCircuitBreakerOpenDuration() + " ms.");
+	}
+
+	private void halfOpen() {
+		FcaConfig config = getConfig();
+		state = FcsCircuitState.HALF_OPEN;
+		trialPermits = (config != null) ? config.getFcsCircuitBreakerHalfOpenCalls() : 1;
+		trialCalls = 0;
+		if (logger.isInfoEnabled())
+			logger.info("FcsCircuitBreaker: host " + fcsHost.getHost() + ":" + fcsHost.getPort() + " circuit HALF_OPEN (" + trialPermits + " trial requests)");
+	}
+
+	private void close() {
+		state = FcsCircuitState.CLOSED;
+		resetWindow(failures.length);
+		if (logger.isInfoEnabled())
+			logger.info("FcsCircuitBreaker: host " + fcsHost.getHost() + ":" + fcsHost.getPort() + " circuit CLOSED");
+	}
+
+	private FcaConfig getConfig() {
+		try {
+			return FcaConfig.getInstance();
+		}
+		catch (Exception e) {
+			return null;
+		}
+	}
+
+}
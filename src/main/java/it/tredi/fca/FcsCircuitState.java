@@ -0,0 +1,12 @@
+package it.tredi.fca;
+
+/**
+ * Stato del circuit breaker di un host FCS (vedi {@link FcsCircuitBreaker})
+ */
+public enum FcsCircuitState {
+
+	CLOSED, // host selezionabile (esiti delle elaborazioni registrati sulla finestra di osservazione)
+	OPEN, // host escluso dalla selezione fino al termine dell'attesa configurata
+	HALF_OPEN // host selezionabile solo per un numero limitato di richieste di prova
+
+}
@@ -0,0 +1,140 @@
+package it.tredi.fca;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.tredi.fcs.socket.commands.Protocol;
+
+/**
+ * Connessione socket verso un host FCS (socket, buffer e protocollo di dialogo). La connessione puo' essere riutilizzata per richieste consecutive
+ * tramite il pool di connessioni dell'host (vedi {@link FcsConnectionPool}).
+ */
+public class FcsConnection {
+
+	private static final Logger logger = LogManager.getLogger(Fca.class.getName());
+
+	private final FcsHost fcsHost;
+	private final Socket client;
+	private final DataInputStream dis;
+	private final DataOutputStream dos;
+	private final Protocol protocol;
+
+	private volatile long lastUsed;
+
+	private FcsConnection(FcsHost fcsHost, Socket client) throws IOException {
+		this.fcsHost = fcsHost;
+		this.client = client;
+		this.dos = new DataOutputStream(client.getOutputStream());
+		this.dis = new DataInputStream(client.getInputStream());
+		this.protocol = new Protocol(dis, dos);
+		this.lastUsed = System.currentTimeMillis();
+	}
+
+	/**
+	 * Apertura di una nuova connessione verso l'host FCS
+	 * @param fcsHost Host FCS di destinazione
+	 * @param soTimeout Timeout (in ms) di lettura dal socket (0 = senza timeout)
+	 * @return
+	 * @throws IOException
+	 */
+	public static FcsConnection open(FcsHost fcsHost, int soTimeout) throws IOException {
+		Socket client = new Socket();
+		try {
+			if (soTimeout > 0)
+				client.setSoTimeout(soTimeout);
+			client.connect(new InetSocketAddress(fcsHost.getHost(), fcsHost.getPort()), Fca.SOCKET_CONNECT_TIMEOUT_DEFAULT_VALUE);
+			return new FcsConnection(fcsHost, client);
+		}
+		catch (IOException e) {
+			try {
+				client.close();
+			}
+			catch (Exception ce) {
+				logger.warn("FcsConnection.open(): unable to close socket connection... " + ce.getMessage());
+			}
+			throw e;
+		}
+	}
+
+	public FcsHost getFcsHost() {
+		return fcsHost;
+	}
+
+	/**
+	 * Ritorna il protocollo di dialogo con l'host FCS
+	 * @return
+	 */
+	public Protocol getProtocol() {
+		return protocol;
+	}
+
+	/**
+	 * Imposta il timeout (in ms) di lettura dal socket (0 = senza timeout)
+	 * @param soTimeout
+	 * @throws SocketException
+	 */
+	public void setSoTimeout(int soTimeout) throws SocketException {
+		client.setSoTimeout(soTimeout > 0 ? soTimeout : 0);
+	}
+
+	/**
+	 * Aggiorna l'istante di ultimo utilizzo della connessione
+	 */
+	public void touch() {
+		this.lastUsed = System.currentTimeMillis();
+	}
+
+	/**
+	 * Ritorna true se la connessione risulta inutilizzata da piu' del tempo indicato
+	 * @param idleTimeout Tempo (in ms) massimo di inattivita'
+	 * @return
+	 */
+	public boolean isIdleExpired(long idleTimeout) {
+		return System.currentTimeMillis() - lastUsed > idleTimeout;
+	}
+
+	/**
+	 * Ritorna true se la connessione risulta ancora aperta (lato FCA)
+	 * @return
+	 */
+	public boolean isOpen() {
+		return client.isConnected() && !client.isClosed() && !client.isInputShutdown() && !client.isOutputShutdown();
+	}
+
+	/**
+	 * Chiusura dei buffer e del socket
+	 */
+	public void close() {
+		try {
+			dis.close();
+		}
+		catch (Exception e) {
+			logger.warn("FcsConnection.close(): unable to close InputStream... " + e.getMessage());
+		}
+		try {
+			dos.close();
+		}
+		catch (Exception e) {
+			logger.warn("FcsConnection.close(): unable to close OutputStream... " + e.getMessage());
+		}
+		try {
+			client.close();
+		}
+		catch (Exception e) {
+			logger.warn("FcsConnection.close(): unable to close socket connection... " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return fcsHost.getHost() + ":" + fcsHost.getPort() + " [local port: " + client.getLocalPort() + "]";
+	}
+
+}
@@ -0,0 +1,112 @@
+package it.tredi.fca;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Pool di connessioni (keep-alive) verso uno specifico host FCS. Le connessioni inattive vengono mantenute (al massimo una per ogni slot di elaborazione
+ * dell'host) per essere riutilizzate dalle richieste successive, evitando l'apertura di un nuovo socket per ogni richiesta.
+ * Le connessioni inattive da piu' di fcs.connection.idleTimeout ms vengono chiuse.
+ */
+public class FcsConnectionPool {
+
+	private static final Logger logger = LogManager.getLogger(Fca.class.getName());
+
+	private final FcsHost fcsHost;
+
+	// connessioni inattive (LIFO: viene riutilizzata la connessione usata piu' di recente)
+	private final ConcurrentLinkedDeque<FcsConnection> idleConnections = new ConcurrentLinkedDeque<FcsConnection>();
+
+	public FcsConnectionPool(FcsHost fcsHost) {
+		this.fcsHost = fcsHost;
+	}
+
+	/**
+	 * Recupero di una connessione inattiva dal pool. Le connessioni scadute o chiuse vengono scartate.
+	 * @return Connessione da riutilizzare, null se non e' disponibile alcuna connessione (occorre aprirne una nuova)
+	 */
+	public FcsConnection borrow() {
+		long idleTimeout = getIdleTimeout();
+		FcsConnection connection;
+		while ((connection = idleConnections.pollFirst()) != null) {
+			if (connection.isOpen() && !connection.isIdleExpired(idleTimeout))
+				return connection;
+			connection.close();
+		}
+		return null;
+	}
+
+	/**
+	 * Restituzione al pool di una connessione al termine di una richiesta completata correttamente. La connessione viene chiusa se il keep-alive
+	 * risulta disabilitato, se il pool ha gia' raggiunto la dimensione massima o se l'host e' stato rimosso dal pool di FCS.
+	 * @param connection
+	 */
+	public void release(FcsConnection connection) {
+		if (connection == null)
+			return;
+
+		if (isKeepAliveEnabled() && !fcsHost.isDraining() && connection.isOpen() && idleConnections.size() < fcsHost.getQueueMaxSize()) {
+			connection.touch();
+			idleConnections.offerFirst(connection);
+		}
+		else
+			connection.close();
+	}
+
+	/**
+	 * Chiusura delle connessioni inattive da piu' di fcs.connection.idleTimeout ms
+	 */
+	public void evictIdle() {
+		long idleTimeout = getIdleTimeout();
+		Iterator<FcsConnection> iterator = idleConnections.iterator();
+		while (iterator.hasNext()) {
+			FcsConnection connection = iterator.next();
+			if (!connection.isOpen() || connection.isIdleExpired(idleTimeout)) {
+				if (idleConnections.removeFirstOccurrence(connection)) {
+					if (logger.isDebugEnabled())
+						logger.debug("FcsConnectionPool.evictIdle(): close idle connection " + connection);
+					connection.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Chiusura di tutte le connessioni inattive (es. host FCS non raggiungibile)
+	 */
+	public void closeAll() {
+		FcsConnection connection;
+		while ((connection = idleConnections.pollFirst()) != null)
+			connection.close();
+	}
+
+	/**
+	 * Ritorna il numero di connessioni inattive presenti nel pool
+	 * @return
+	 */
+	public int countIdle() {
+		return idleConnections.size();
+	}
+
+	private boolean isKeepAliveEnabled() {
+		try {
+			return FcaConfig.getInstance().isFcsConnectionKeepAlive();
+		}
+		catch (Exception e) {
+			return false;
+		}
+	}
+
+	private long getIdleTimeout() {
+		try {
+			return FcaConfig.getInstance().getFcsConnectionIdleTimeout();
+		}
+		catch (Exception e) {
+			return 0;
+		}
+	}
+
+}
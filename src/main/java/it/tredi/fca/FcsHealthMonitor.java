@@ -0,0 +1,246 @@
+package it.tredi.fca;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.tredi.fcs.socket.commands.HeaderRequest;
+import it.tredi.fcs.socket.commands.HeaderResponse;
+import it.tredi.fcs.socket.commands.Protocol;
+
+/**
+ * Monitor (in background) dello stato degli host FCS. Ad intervalli regolari viene verificato che ogni host del pool sia attivo (server socket in ascolto)
+ * e configurato. Lo stato rilevato viene mantenuto sul singolo host in modo che la selezione dell'host di destinazione non richieda alcuna
+ * connessione verso FCS.
+ */
+public class FcsHealthMonitor implements Runnable {
+
+	private static final Logger logger = LogManager.getLogger(Fca.class.getName());
+
+	private final Object lock = new Object();
+	private boolean probeRequested = false;
+	private Thread thread = null;
+
+	// Singleton
+	private static FcsHealthMonitor instance = null;
+
+	/**
+	 * Costruttore privato
+	 */
+	private FcsHealthMonitor() {
+	}
+
+	/**
+	 * Ritorna il monitor degli host FCS
+	 * @return
+	 */
+	public static FcsHealthMonitor getInstance() {
+		if (instance == null) {
+			synchronized (FcsHealthMonitor.class) {
+				if (instance == null) {
+					if (logger.isInfoEnabled())
+						logger.info("FcsHealthMonitor instance is null... create one");
+					instance = new FcsHealthMonitor();
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Avvio del monitor: verifica immediata (sincrona) di tutti gli host FCS e avvio del thread di controllo periodico
+	 */
+	public synchronized void start() {
+		if (thread != null)
+			return;
+
+		probeAll();
+
+		thread = new Thread(this, "FcsHealthMonitor");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void run() {
+		if (logger.isInfoEnabled())
+			logger.info("FcsHealthMonitor: thread started...");
+
+		try {
+			while (true) {
+				synchronized (lock) {
+					if (!probeRequested)
+						lock.wait(FcaConfig.getInstance().getFcsHealthInterval());
+					probeRequested = false;
+				}
+				probeAll();
+			}
+		}
+		catch (InterruptedException e) {
+			if (logger.isInfoEnabled())
+				logger.info("FcsHealthMonitor: thread interrupted... " + e.getMessage());
+		}
+		catch (Exception e) {
+			logger.error("FcsHealthMonitor: FATAL, unable to check FCS hosts (quit thread)... " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Richiede una verifica anticipata (rispetto all'intervallo configurato) di tutti gli host FCS
+	 */
+	public void requestProbe() {
+		synchronized (lock) {
+			probeRequested = true;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Segnala un host FCS come non raggiungibile (es. errore di connessione in fase di elaborazione). L'host viene escluso dalla selezione fino alla
+	 * successiva verifica positiva.
+	 * @param host
+	 */
+	public void markDown(FcsHost host) {
+		updateStatus(host, FcsHostStatus.DOWN);
+		host.getConnectionPool().closeAll();
+		requestProbe();
+	}
+
+	/**
+	 * Segnala un host FCS come privo dei parametri di attivazione (es. host FCS riavviato). I parametri verranno inviati alla successiva verifica.
+	 * @param host
+	 */
+	public void markNeedsConfig(FcsHost host) {
+		updateStatus(host, FcsHostStatus.NEEDS_CONFIG);
+		host.getConnectionPool().closeAll();
+		requestProbe();
+	}
+
+	/**
+	 * Verifica di tutti gli host FCS del pool (e chiusura delle connessioni inattive da troppo tempo)
+	 */
+	private void probeAll() {
+		try {
+			for (FcsHost fcsHost : FcaConfig.getInstance().getFcsPool()) {
+				updateStatus(fcsHost, probeFcsHost(fcsHost));
+				fcsHost.getConnectionPool().evictIdle();
+			}
+		}
+		catch (Exception e) {
+			logger.error("FcsHealthMonitor.probeAll(): got exception... " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Aggiornamento dello stato di un host FCS (con log dell'eventuale cambio di stato)
+	 * @param host
+	 * @param status
+	 */
+	private void updateStatus(FcsHost host, FcsHostStatus status) {
+		FcsHostStatus previous = host.getStatus();
+		host.setStatus(status);
+		if (previous != status) {
+			if (status == FcsHostStatus.UP) {
+				if (logger.isInfoEnabled())
+					logger.info("FcsHealthMonitor: host " + host.getHost() + ":" + host.getPort() + " status changed " + previous + " -> " + status);
+			}
+			else
+				logger.warn("FcsHealthMonitor: host " + host.getHost() + ":" + host.getPort() + " status changed " + previous + " -> " + status);
+		}
+	}
+
+	/**
+	 * Verifica che l'host FCS sia effettivamente attivo (server socket in ascolto). Nel caso in cui l'host risulti attivo ma non configurato vengono
+	 * inviati i parametri di attivazione.
+	 * @param host
+	 * @return Stato rilevato per l'host
+	 */
+	public static FcsHostStatus probeFcsHost(FcsHost host) {
+		long startTime = System.currentTimeMillis();
+		FcsHostStatus status = FcsHostStatus.DOWN;
+		Socket client = null;
+		DataInputStream dis = null;
+		DataOutputStream dos = null;
+		try {
+			client = new Socket();
+			if (FcaConfig.getInstance().getFcsAliveTimeout() > 0)
+				client.setSoTimeout(FcaConfig.getInstance().getFcsAliveTimeout());
+			client.connect(new InetSocketAddress(host.getHost(), host.getPort()), Fca.SOCKET_CONNECT_TIMEOUT_DEFAULT_VALUE);
+
+			dis = new DataInputStream(client.getInputStream());
+			dos = new DataOutputStream(client.getOutputStream());
+
+			Protocol protocol = new Protocol(dis, dos);
+			protocol.sendHeader(HeaderRequest.ALIVE_HEADER.bytes());
+
+			// attesa di risposta da parte dell'host FCS
+			HeaderResponse response = HeaderResponse.getHeaderResponse(protocol.receiveHeader());
+			if (response == HeaderResponse.ACK_HEADER) {
+				status = FcsHostStatus.UP; // risposta positiva del server (server attivo e correttamente configurato)
+			}
+			else if (response == HeaderResponse.TO_CONFIG_HEADER) {
+				// server attivo, ma mancano i parametri di attivazione... occorre spedirli al server
+				status = FcsHostStatus.NEEDS_CONFIG;
+
+				// invio dei parametri di configurazione di FCS (recuperati da file di properties di FCA, serializzati alla lettura della configurazione)
+				FcaConfig fcaConfig = FcaConfig.getInstance();
+				protocol.sendString(fcaConfig.getJsonFcsConfig());
+				protocol.sendHeader(HeaderRequest.FCS_CONF_HEADER.bytes());
+
+				// attesa di risposta da parte dell'host FCS
+				response = HeaderResponse.getHeaderResponse(protocol.receiveHeader());
+				if (response == HeaderResponse.ACK_HEADER) {
+					status = FcsHostStatus.UP; // risposta positiva del server (server attivo e correttamente configurato)
+					host.setConfigVersion(fcaConfig.getFcsConfigVersion());
+				}
+				else // riscontrato problema durante la fase di invio configurazioni a server FCS
+					logger.error("FcsHealthMonitor.probeFcsHost(): unexpected server configuration response... " + response.header());
+			}
+			else {
+				// rispsta inaspettata da perte del server
+				logger.error("FcsHealthMonitor.probeFcsHost(): unable to recognize server response... " + response.header());
+			}
+		}
+		catch (SocketTimeoutException e) {
+			logger.error("FcsHealthMonitor.probeFcsHost(): got socket timeout exception on " + host.getHost() + ":" + host.getPort() + "... " + e.getMessage());
+		}
+		catch (Exception e) {
+			logger.error("FcsHealthMonitor.probeFcsHost(): got exception on " + host.getHost() + ":" + host.getPort() + "... " + e.getMessage());
+		}
+		finally {
+			// chiusura dei buffer e del socket
+			try {
+				if (dis != null)
+					dis.close();
+			}
+			catch (Exception e) {
+				logger.warn("FcsHealthMonitor.probeFcsHost(): unable to close InputStream... " + e.getMessage());
+			}
+			try {
+				if (dos != null)
+					dos.close();
+			}
+			catch (Exception e) {
+				logger.warn("FcsHealthMonitor.probeFcsHost(): unable to close OutputStream... " + e.getMessage());
+			}
+			try {
+				if (client != null)
+					client.close();
+			}
+			catch (Exception e) {
+				logger.warn("FcsHealthMonitor.probeFcsHost(): unable to close socket connection... " + e.getMessage(), e);
+			}
+		}
+
+		host.getMetrics().getProbeHistogram().record((System.currentTimeMillis() - startTime) * 1000);
+		if (logger.isDebugEnabled())
+			logger.debug("FcsHealthMonitor.probeFcsHost() - host= " + host.getHost() + ":" + host.getPort() + " status= " + status + " time required: " + (System.currentTimeMillis() - startTime));
+		return status;
+	}
+
+}
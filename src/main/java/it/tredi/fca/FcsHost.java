@@ -1,22 +1,45 @@
 package it.tredi.fca;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import it.tredi.fca.metrics.FcsHostMetrics;
+
 /**
  * Definizione di un host FCS (con indicazione del numero massimo di richieste che possono essere gestite sull'host)
  * @author mbernardini
  */
 public class FcsHost {
 
+	// peso dell'ultimo tempo di risposta sulla media mobile esponenziale (EWMA)
+	private static final double RESPONSE_TIME_EWMA_ALPHA = 0.2;
+
 	private String host;
 	private int port;
-	private int queueMaxSize; // numero massimo di richieste concorrenti
-	private int queueInProgressSize; // numero di richieste attualmente in fase di processo
+	private volatile int queueMaxSize; // numero massimo di richieste concorrenti
+	private volatile int weight; // peso dell'host per la selezione weighted round robin
+	private volatile boolean draining = false; // host rimosso dal pool (in attesa del completamento delle elaborazioni in corso)
+	private final AtomicInteger queueInProgressSize = new AtomicInteger(0); // numero di richieste attualmente in fase di processo
+	private volatile FcsHostStatus status = FcsHostStatus.DOWN; // stato dell'host (aggiornato da FcsHealthMonitor)
+	private final FcsConnectionPool connectionPool; // connessioni verso l'host da riutilizzare (keep-alive)
+	private final FcsCircuitBreaker circuitBreaker; // esclusione dell'host in caso di troppe richieste fallite (o lente)
+	private final AtomicLong responseTimeEwma = new AtomicLong(Double.doubleToLongBits(0)); // media mobile dei tempi di risposta (0 = nessun campione)
+	private final FcsHostMetrics metrics; // metriche dell'host (esiti e latenze)
+	private volatile String configVersion = null; // versione dei parametri di attivazione inviati all'host (vedi FcaConfig.getFcsConfigVersion())
 
 	public FcsHost(String host, int port, int queueMaxSize) {
+		this(host, port, queueMaxSize, 1);
+	}
+
+	public FcsHost(String host, int port, int queueMaxSize, int weight) {
 		this.host = host;
 		this.port = port;
 		
 		this.queueMaxSize = queueMaxSize;
-		this.queueInProgressSize = 0;
+		this.weight = (weight > 0) ? weight : 1;
+		this.connectionPool = new FcsConnectionPool(this);
+		this.circuitBreaker = new FcsCircuitBreaker(this);
+		this.metrics = new FcsHostMetrics(this);
 	}
 
 	public String getHost() {
@@ -31,6 +54,114 @@ public class FcsHost {
 		return queueMaxSize;
 	}
 
+	/**
+	 * Aggiorna il numero massimo di richieste concorrenti (ricaricamento della configurazione). In caso di riduzione le elaborazioni in corso
+	 * vengono completate, ma non vengono assegnate nuove richieste fino al rientro nel nuovo limite.
+	 * @param queueMaxSize
+	 */
+	public void setQueueMaxSize(int queueMaxSize) {
+		this.queueMaxSize = queueMaxSize;
+		FcsSlotCredits.getInstance().signal();
+	}
+
+	/**
+	 * Ritorna il peso dell'host (quota di richieste assegnate in caso di selezione weighted round robin)
+	 * @return
+	 */
+	public int getWeight() {
+		return weight;
+	}
+
+	public void setWeight(int weight) {
+		this.weight = (weight > 0) ? weight : 1;
+	}
+
+	/**
+	 * Ritorna true se l'host e' stato rimosso dal pool e non deve ricevere nuove richieste (completamento delle elaborazioni in corso)
+	 * @return
+	 */
+	public boolean isDraining() {
+		return draining;
+	}
+
+	/**
+	 * Esclusione definitiva dell'host dalla selezione (host rimosso dal pool): le elaborazioni in corso vengono completate e le connessioni
+	 * non vengono piu' mantenute nel pool
+	 */
+	public void drain() {
+		this.draining = true;
+		connectionPool.closeAll();
+		FcsSlotCredits.getInstance().signal();
+	}
+
+	/**
+	 * Registrazione del tempo di risposta di una elaborazione completata sull'host (aggiornamento della media mobile esponenziale)
+	 * @param duration Durata (in ms) dell'elaborazione
+	 */
+	public void recordResponseTime(long duration) {
+		while (true) {
+			long current = responseTimeEwma.get();
+			double ewma = Double.longBitsToDouble(current);
+			double updated = (ewma == 0) ? Math.max(duration, 1) : ewma + RESPONSE_TIME_EWMA_ALPHA * (duration - ewma);
+			if (responseTimeEwma.compareAndSet(current, Double.doubleToLongBits(updated)))
+				return;
+		}
+	}
+
+	/**
+	 * Ritorna la media mobile esponenziale (in ms) dei tempi di risposta dell'host (0 se non sono ancora state completate elaborazioni)
+	 * @return
+	 */
+	public double getResponseTimeEwma() {
+		return Double.longBitsToDouble(responseTimeEwma.get());
+	}
+
+	/**
+	 * Stima del tempo di risposta di una nuova richiesta inviata all'host: tempo medio di risposta moltiplicato per il numero di elaborazioni in corso
+	 * (compresa la nuova richiesta). Gli host senza campioni restituiscono 0, in modo da essere selezionati e misurati.
+	 * @return
+	 */
+	public double getExpectedResponseTime() {
+		return getResponseTimeEwma() * (queueInProgressSize.get() + 1);
+	}
+
+	/**
+	 * Ritorna la versione dei parametri di attivazione inviati all'host da FCA (null se l'host non ha richiesto la configurazione da parte di questa
+	 * istanza di FCA, es. host gia' configurato all'avvio)
+	 * @return
+	 */
+	public String getConfigVersion() {
+		return configVersion;
+	}
+
+	public void setConfigVersion(String configVersion) {
+		this.configVersion = configVersion;
+	}
+
+	/**
+	 * Ritorna il pool di connessioni verso l'host FCS
+	 * @return
+	 */
+	public FcsConnectionPool getConnectionPool() {
+		return connectionPool;
+	}
+
+	/**
+	 * Ritorna le metriche dell'host FCS
+	 * @return
+	 */
+	public FcsHostMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Ritorna il circuit breaker dell'host FCS
+	 * @return
+	 */
+	public FcsCircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
 	/**
 	 * Setta il completamento dell'elaborazione sull'host corrente per uno specifico documento. Elimina l'identificativo del documento
 	 * dalla lista contenente le lavorazioni correnti.
@@ -48,27 +179,104 @@ public class FcsHost {
 	 * @return
 	 */
 	public int getQueueInProgressSize() {
-		return queueInProgressSize;
+		return queueInProgressSize.get();
+	}
+
+	/**
+	 * Ritorna true se tutti gli slot di elaborazione dell'host risultano impegnati
+	 * @return
+	 */
+	public boolean isFullQueue() {
+		return queueInProgressSize.get() >= queueMaxSize;
+	}
+
+	/**
+	 * Riserva (in modo atomico) uno slot di elaborazione sull'host FCS. L'incremento avviene solo se la coda dell'host non risulta piena e se il
+	 * circuit breaker consente l'invio della richiesta (eventuale richiesta di prova con circuito HALF_OPEN).
+	 * @return true se lo slot e' stato riservato, false in caso di coda piena o circuito aperto
+	 */
+	public boolean tryIncrementQueueInProgressSize() {
+		while (true) {
+			int current = queueInProgressSize.get();
+			if (current >= queueMaxSize)
+				return false;
+			if (queueInProgressSize.compareAndSet(current, current + 1))
+				break;
+		}
+		// credito consumato prima del permesso del circuit breaker (eventuale ricalcolo dei crediti all'esaurimento delle richieste di prova)
+		FcsSlotCredits credits = FcsSlotCredits.getInstance();
+		credits.onSlotAcquired();
+		if (!circuitBreaker.tryAcquirePermission()) {
+			queueInProgressSize.decrementAndGet();
+			credits.onSlotAcquireFailed();
+			return false;
+		}
+		return true;
 	}
 
 	/**
 	 * Incrementa di 1 il numero di elaborazioni in corso sull'host FCS
+	 * @deprecated Non verifica la dimensione massima della coda, utilizzare {@link #tryIncrementQueueInProgressSize()}
 	 */
+	@Deprecated
 	public void incrementQueueInProgressSize() {
-		this.queueInProgressSize++;
+		queueInProgressSize.incrementAndGet();
+		FcsSlotCredits.getInstance().onSlotAcquired();
 	}
 	
 	/**
-	 * Decrementa di 1 il numero di elaborazioni in corso sull'host FCS
+	 * Decrementa di 1 il numero di elaborazioni in corso sull'host FCS (rilascio di un credito di elaborazione)
 	 */
 	public void decrementQueueInProgressSize() {
-		if (this.queueInProgressSize > 0)
-			this.queueInProgressSize--;
+		while (true) {
+			int current = queueInProgressSize.get();
+			if (current <= 0)
+				return;
+			if (queueInProgressSize.compareAndSet(current, current - 1))
+				break;
+		}
+		FcsSlotCredits.getInstance().onSlotReleased(this);
+	}
+
+	/**
+	 * Restituisce l'ultimo stato rilevato per l'host FCS
+	 * @return
+	 */
+	public FcsHostStatus getStatus() {
+		return status;
+	}
+
+	/**
+	 * Aggiorna lo stato dell'host FCS
+	 * @param status
+	 */
+	public void setStatus(FcsHostStatus status) {
+		FcsHostStatus previous = this.status;
+		this.status = status;
+		if (previous != status)
+			FcsSlotCredits.getInstance().signal();
+	}
+
+	/**
+	 * Ritorna true se l'host FCS risulta attivo e configurato (quindi selezionabile per nuove elaborazioni)
+	 * @return
+	 */
+	public boolean isAvailable() {
+		return status == FcsHostStatus.UP;
+	}
+
+	/**
+	 * Ritorna true se l'host FCS risulta disponibile e il circuit breaker consente l'invio di nuove richieste (circuito chiuso o richieste di prova
+	 * ancora disponibili)
+	 * @return
+	 */
+	public boolean isSelectable() {
+		return isAvailable() && !draining && circuitBreaker.isCallPermitted();
 	}
 
 	@Override
 	public String toString() {
-		return host + ":" + port + " [size: " + queueInProgressSize + "]";
+		return host + ":" + port + " [size: " + queueInProgressSize + ", weight: " + weight + ", ewma: " + Math.round(getResponseTimeEwma()) + ", status: " + status + ", circuit: " + circuitBreaker.getState() + "]";
 	}
 
 }
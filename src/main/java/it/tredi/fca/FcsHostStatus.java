@@ -0,0 +1,12 @@
+package it.tredi.fca;
+
+/**
+ * Stato di un host FCS (rilevato dal monitor di verifica degli host o dagli invoker in fase di elaborazione)
+ */
+public enum FcsHostStatus {
+
+	UP, // host attivo e correttamente configurato
+	DOWN, // host non raggiungibile o che non risponde correttamente
+	NEEDS_CONFIG // host attivo ma privo dei parametri di attivazione (es. riavvio dell'host FCS)
+	
+}
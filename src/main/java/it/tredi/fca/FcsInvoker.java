@@ -1,15 +1,21 @@
 package it.tredi.fca;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import it.tredi.fca.entity.FcsRequest;
+import it.tredi.fca.entity.FcsRequestResult;
+import it.tredi.fca.metrics.FcaMetrics;
 import it.tredi.fcs.socket.commands.HeaderRequest;
 import it.tredi.fcs.socket.commands.HeaderResponse;
 import it.tredi.fcs.socket.commands.Protocol;
@@ -24,17 +30,47 @@ public class FcsInvoker implements Runnable {
 
 	private static final int FCS_WORK_TIMEOUT_SOCKET_ADDON = 5000;
 
+	// attesa massima (in ms) di una richiesta dalla coda condivisa prima di verificare la richiesta di arresto dell'invoker
+	private static final int STOP_CHECK_INTERVAL = 1000;
+
+	// attesa massima (in ms) di un host FCS disponibile in caso di fca.waiting.step=0 (stati dipendenti dal tempo, es. circuit breaker)
+	private static final int HOST_WAIT_DEFAULT_TIMEOUT = 1000;
+
 	private String id;
 	private int fcsWorkTimeout = 0;
+	private Fca fca = null;
 	private BlockingQueue<FcsRequest> fcsRequestQueue = null;
 
+	// connessione verso l'host FCS utilizzata per la richiesta (o il gruppo di richieste) corrente
+	private volatile FcsConnection session = null;
+
+	// richiesta in elaborazione sull'host FCS
+	private volatile FcsRequest currentRequest = null;
+
+	// richiesta di arresto dell'invoker (al termine dell'elaborazione corrente)
+	private volatile boolean stopped = false;
+
+	// credito di elaborazione riservato per la richiesta prelevata (rilasciato alla prenotazione dello slot sull'host)
+	private boolean creditReserved = false;
+
+	/**
+	 * Costruttore
+	 * @param fca Istanza di FCA che alimenta la coda condivisa
+	 * @param fcsRequestQueue
+	 */
+	public FcsInvoker(Fca fca, BlockingQueue<FcsRequest> fcsRequestQueue) {
+		this(Thread.currentThread().getName(), fca, fcsRequestQueue);
+	}
+
 	/**
 	 * Costruttore
-	 * @param id
+	 * @param id Identificativo dell'invoker (utilizzato sui log)
+	 * @param fca Istanza di FCA che alimenta la coda condivisa
 	 * @param fcsRequestQueue
 	 */
-	public FcsInvoker(BlockingQueue<FcsRequest> fcsRequestQueue) {
-		this.id = Thread.currentThread().getName();
+	public FcsInvoker(String id, Fca fca, BlockingQueue<FcsRequest> fcsRequestQueue) {
+		this.id = id;
+		this.fca = fca;
 		this.fcsRequestQueue = fcsRequestQueue;
 
 		try {
@@ -53,119 +89,510 @@ public class FcsInvoker implements Runnable {
 			if (logger.isInfoEnabled())
 				logger.info("FcsInvoker[" + getIdentifier() + "]: thread started...");
 			
-			while(true) {
-				FcsRequest fcsRequest = fcsRequestQueue.take();
-				if (logger.isInfoEnabled())
-					logger.info("FcsInvoker[" + getIdentifier() + "]: took request " + (fcsRequest != null ? fcsRequest.getDocId() : "NULL") + " from blocking queue...");
-				
-				FcsHost fcsHost = null;
-				int attemps = 1;
-				
-				while(fcsHost == null) {
-					fcsHost = Fca.getTargetFcs();
-					
-					if(fcsHost == null) {
+			while(!stopped) {
+				FcsRequest fcsRequest = pollRequest(STOP_CHECK_INTERVAL);
+				if (fcsRequest == null)
+					continue;
+				// raggruppamento prima della prenotazione dello slot (nessuno slot impegnato durante l'attesa del gruppo)
+				List<FcsRequest> candidates = collectBatch(fcsRequest);
+				FcsHost fcsHost = awaitTargetFcs(fcsRequest);
+				execute(fcsHost, selectBatch(fcsHost, candidates));
+			}
+
+			if (logger.isInfoEnabled())
+				logger.info("FcsInvoker[" + getIdentifier() + "]: thread stopped!");
+		} 
+		catch (InterruptedException e) {
+			// arresto del servizio
+			if (logger.isInfoEnabled())
+				logger.info("FcsInvoker[" + getIdentifier() + "]: thread interrupted... " + e.getMessage());
+		}
+		catch (Exception e) {
+			// TODO mail di notifica all'amministratore che ci sono dei servizi fcs previsti inattivi
+			logger.error("FcsInvoker[" + getIdentifier() + "]: FATAL, unable to read requestsQueue (quit thread)... " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Prelievo (bloccante) di una richiesta dalla coda condivisa, dopo aver riservato un credito di elaborazione (vedi {@link FcsSlotCredits})
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public FcsRequest takeRequest() throws InterruptedException {
+		FcsRequest fcsRequest = null;
+		while (fcsRequest == null)
+			fcsRequest = pollRequest(STOP_CHECK_INTERVAL);
+		return fcsRequest;
+	}
+
+	/**
+	 * Prelievo di una richiesta dalla coda condivisa con attesa massima. La richiesta viene prelevata solo dopo aver riservato un credito di
+	 * elaborazione (slot libero su un host FCS), rilasciato alla prenotazione dello slot tramite {@link #awaitTargetFcs(FcsRequest)}.
+	 * @param timeout Attesa massima (in ms)
+	 * @return Richiesta prelevata, null se non si e' liberato alcuno slot o la coda e' rimasta vuota per tutta l'attesa
+	 * @throws InterruptedException
+	 */
+	public FcsRequest pollRequest(long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		if (!creditReserved) {
+			if (!FcsSlotCredits.getInstance().tryAcquire(timeout))
+				return null;
+			creditReserved = true;
+		}
+
+		FcsRequest fcsRequest = null;
+		try {
+			fcsRequest = fcsRequestQueue.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+			if (fcsRequest != null) {
+				onRequestTaken(fcsRequest);
+				FcaMetrics.getInstance().recordDispatchWait(fcsRequest.getEnqueueTime());
+				if (discard(fcsRequest))
+					fcsRequest = null;
+			}
+		}
+		finally {
+			if (fcsRequest == null)
+				releaseCredit();
+		}
+		return fcsRequest;
+	}
+
+	/**
+	 * Scarto della richiesta se annullata o scaduta (vedi {@link Fca#onFcsRequestDiscarded(FcsRequest)})
+	 * @param fcsRequest
+	 * @return true se la richiesta e' stata scartata
+	 */
+	private boolean discard(FcsRequest fcsRequest) {
+		if (!fcsRequest.isCancelled() && !fcsRequest.isExpired())
+			return false;
+		fca.onFcsRequestDiscarded(fcsRequest);
+		return true;
+	}
+
+	/**
+	 * Interruzione dell'elaborazione della richiesta annullata: se la richiesta e' in elaborazione la connessione verso l'host FCS viene chiusa
+	 * (il dialogo termina immediatamente con errore), altrimenti la richiesta verra' scartata prima dell'invio
+	 * @param fcsRequest Richiesta annullata (vedi {@link FcsRequest#cancel()})
+	 */
+	public void abort(FcsRequest fcsRequest) {
+		FcsConnection connection = session;
+		if (currentRequest == fcsRequest && connection != null) {
+			if (logger.isInfoEnabled())
+				logger.info("FcsInvoker[" + getIdentifier() + "]: abort request " + fcsRequest.getDocId() + " on connection " + connection);
+			connection.close();
+		}
+	}
+
+	/**
+	 * Rilascio del credito di elaborazione eventualmente riservato
+	 */
+	private void releaseCredit() {
+		if (creditReserved) {
+			creditReserved = false;
+			FcsSlotCredits.getInstance().release();
+		}
+	}
+
+	private void onRequestTaken(FcsRequest fcsRequest) {
+		fca.onFcsRequestTaken();
+		if (logger.isInfoEnabled())
+			logger.info("FcsInvoker[" + getIdentifier() + "]: took request " + fcsRequest.getDocId() + " from blocking queue...");
+	}
+
+	/**
+	 * Richiesta di arresto dell'invoker: il thread termina al completamento dell'elaborazione corrente (o entro {@value #STOP_CHECK_INTERVAL} ms
+	 * se in attesa di richieste)
+	 */
+	public void stop() {
+		this.stopped = true;
+	}
+
+	/**
+	 * Attesa di un host FCS disponibile per la richiesta corrente. Lo slot di elaborazione sull'host restituito risulta gia' riservato.
+	 * In assenza di host disponibili l'invoker resta in attesa del rilascio di uno slot o di un cambio di stato degli host (al massimo
+	 * fca.waiting.step ms prima di un nuovo tentativo).
+	 * @param fcsRequest
+	 * @return
+	 * @throws Exception
+	 */
+	public FcsHost awaitTargetFcs(FcsRequest fcsRequest) throws Exception {
+		FcsSlotCredits credits = FcsSlotCredits.getInstance();
+		FcsHost fcsHost = null;
+		int attemps = 1;
+		long startNanos = System.nanoTime();
+
+		try {
+			while(fcsHost == null) {
+				long version = credits.getVersion();
+				fcsHost = Fca.getTargetFcs(fcsRequest);
+
+				if(fcsHost == null) {
+					int timeout = Fca.getFcaConfig().getFcaWaitingStep() > 0 ? Fca.getFcaConfig().getFcaWaitingStep() : HOST_WAIT_DEFAULT_TIMEOUT;
+					if (!credits.awaitChange(version, timeout)) {
 						//TODO mail di notifica all'amministratore che ci sono dei servizi fcs previsti inattivi
-						if (Fca.getFcaConfig().getFcaWaitingStep() > 0) {
-							logger.warn("FcsInvoker[" + fcsRequest.getDocId() + "]: No host found (attempt " + attemps + ")... wait for " + Fca.getFcaConfig().getFcaWaitingStep() + " millis...");
-							try {
-								Thread.sleep(Fca.getFcaConfig().getFcaWaitingStep());
-							} 
-							catch (InterruptedException e) {
-								logger.error("FcsInvoker[" + fcsRequest.getDocId() + "]: No host found error on sleep", e);
-							}
-							attemps++;
-						}
+						logger.warn("FcsInvoker[" + fcsRequest.getDocId() + "]: No host found (attempt " + attemps + ") after " + timeout + " millis...");
+						attemps++;
 					}
 				}
-				
-				if (logger.isInfoEnabled())
-					logger.info("FcsInvoker[" + getIdentifier() + "]: New Request -> " + fcsRequest.toString());
-				
-				Socket client = null;
-				DataOutputStream dos = null;
-				DataInputStream dis = null;
-				try {
-					client = new Socket();
-					if (fcsWorkTimeout > 0)
-						client.setSoTimeout(fcsWorkTimeout);
-					client.connect(new InetSocketAddress(fcsHost.getHost(), fcsHost.getPort()), Fca.SOCKET_CONNECT_TIMEOUT_DEFAULT_VALUE);
-
-					if (logger.isInfoEnabled())
-						logger.info("FcsInvoker[" + getIdentifier() + "]: client " + fcsHost.getHost() + ":" + fcsHost.getPort() + " ready!");
-
-					dos = new DataOutputStream(client.getOutputStream());
-		            dis = new DataInputStream(client.getInputStream());
-
-		            boolean success = false;
-
-		            long startTime = System.currentTimeMillis();
-
-		            // init del dialogo socket di indicizzazione/conversione
-		            Protocol protocol = new Protocol(dis, dos);
-					protocol.sendHeader(HeaderRequest.INIT_HEADER.bytes());
-					HeaderResponse response = HeaderResponse.getHeaderResponse(protocol.receiveHeader()); // attesa di risposta da parte dell'host FCS
-					if (response == HeaderResponse.ACK_HEADER) {
-
-						// invio a FCS la tipologia di comando da eseguire...
-						protocol.sendHeader(HeaderRequest.FCA_HEADER.bytes());
-						response = HeaderResponse.getHeaderResponse(protocol.receiveHeader()); // attesa di risposta da parte dell'host FCS
-						if (response == HeaderResponse.ACK_HEADER) {
-							// comando riconosciuto correttamente da parte di FCS...
-
-							// invio di tutti i parametri necessari a portare a termine la richiesta
-							protocol.sendString(fcsRequest.getDocId()); // invio dell'identificativo del documento da elaborare
-							protocol.sendString(fcsRequest.getConversionTo()); // definisce l'estensione (o estensioni) di destinazione delle conversioni dei file del documento
-							protocol.sendString(fcsRequest.getAdditionalParameters()); // eventuali parametri aggiuntivi da inviare all'host FCS
-
-							// client socket in attesa della risposta da parte dell'host FCS...
-							response = HeaderResponse.getHeaderResponse(protocol.receiveHeader());
-							if (response == HeaderResponse.DONE_HEADER)
-								success = true;
-						}
-					}
+			}
+		}
+		finally {
+			// slot riservato sull'host: il credito torna disponibile per il conteggio sugli slot liberi
+			releaseCredit();
+		}
+		FcaMetrics.getInstance().recordSelectionWait(startNanos);
+		return fcsHost;
+	}
 
-		        	if (success) {
-		        		if (logger.isInfoEnabled())
-		        			logger.info("FcsInvoker[" + getIdentifier() + "]: Request COMPLETED in " + (System.currentTimeMillis()-startTime) + " millis.!");
-		        	}
-					else
-						logger.warn("FcsInvoker[" + getIdentifier() + "]: Request FAILED in " + (System.currentTimeMillis()-startTime) + " millis.!");
-				}
-				catch(Exception e) {
-					logger.error("FcsInvoker[" + getIdentifier() + "]: Request FAILED! Got exception on socket dialogue... " + e.getMessage(), e);
-				}
-				finally {
-					// chiusura dei buffer e del socket
-					try {
-						if (dis != null)
-							dis.close();
-					}
-					catch(Exception e) {
-						logger.warn("FcsInvoker[" + getIdentifier() + "]: unable to close InputStream... " + e.getMessage());
-					}
-					try {
-						if (dos != null)
-							dos.close();
-					}
-					catch(Exception e) {
-						logger.warn("FcsInvoker[" + getIdentifier() + "]: unable to close OutputStream... " + e.getMessage());
-					}
-					try {
-						if (client != null)
-							client.close();
-					}
-					catch(Exception e) {
-						logger.warn("FcsInvoker[" + getIdentifier() + "]: unable to close socket connection... " + e.getMessage(), e);
-					}
+	/**
+	 * Elaborazione di un gruppo di richieste sull'host FCS selezionato. Al termine viene rilasciato lo slot di elaborazione riservato sull'host
+	 * (e il permesso del circuit breaker, se nessun esito e' stato registrato).
+	 * @param fcsHost Host FCS selezionato (slot gia' riservato)
+	 * @param batch Richieste da elaborare sulla stessa sessione
+	 */
+	public void execute(FcsHost fcsHost, List<FcsRequest> batch) {
+		boolean recorded = false;
+		try {
+			for (int i = 0; i < batch.size(); i++) {
+				FcsRequest batchRequest = batch.get(i);
+
+				// circuito non piu' chiuso (o host non piu' selezionabile) durante l'elaborazione del gruppo: le richieste restanti tornano sulla coda
+				if (i > 0 && (!fcsHost.isSelectable() || fcsHost.getCircuitBreaker().getState() != FcsCircuitState.CLOSED)) {
+					requeue(batch.subList(i, batch.size()));
+					break;
 				}
 
-				fcsHost.setRequestCompleted(fcsRequest.getDocId());
+				// richiesta annullata o scaduta durante l'attesa dell'host FCS (o del gruppo di richieste)
+				if (discard(batchRequest))
+					continue;
+
+				if (logger.isInfoEnabled())
+					logger.info("FcsInvoker[" + getIdentifier() + "]: New Request -> " + batchRequest.toString());
+
+				fca.onFcsRequestDispatched(this, fcsHost, batchRequest);
+				recorded |= process(fcsHost, batchRequest);
 			}
-		} 
-		catch (Exception e) {
-			// TODO mail di notifica all'amministratore che ci sono dei servizi fcs previsti inattivi
-			logger.error("FcsInvoker[" + getIdentifier() + "]: FATAL, unable to read requestsQueue (quit thread)... " + e.getMessage(), e);
+		}
+		finally {
+			// nessun esito registrato sul circuit breaker (richieste scartate, annullate o scadute): rilascio dell'eventuale richiesta di prova
+			if (!recorded)
+				fcsHost.getCircuitBreaker().releasePermission();
+			// al termine della sessione la connessione viene restituita al pool (riutilizzo se keep-alive abilitato)
+			if (session != null) {
+				fcsHost.getConnectionPool().release(session);
+				session = null;
+			}
+			fcsHost.decrementQueueInProgressSize();
+		}
+	}
+
+	/**
+	 * Raggruppamento delle richieste da inviare sulla stessa sessione: oltre alla richiesta corrente vengono prelevate dalla coda condivisa fino a
+	 * fcs.batch.size richieste, attendendo al massimo fcs.batch.linger ms. Da invocare prima della prenotazione dello slot sull'host FCS (vedi
+	 * {@link #awaitTargetFcs(FcsRequest)}): le richieste raccolte vengono poi filtrate in base all'host selezionato tramite
+	 * {@link #selectBatch(FcsHost, List)}.
+	 * @param fcsRequest Richiesta corrente
+	 * @return Richieste candidate (la richiesta corrente e' sempre la prima)
+	 * @throws Exception
+	 */
+	public List<FcsRequest> collectBatch(FcsRequest fcsRequest) throws Exception {
+		int batchSize = Fca.getFcaConfig().getFcsBatchSize();
+		if (batchSize <= 1)
+			return Collections.singletonList(fcsRequest);
+
+		List<FcsRequest> batch = new ArrayList<FcsRequest>(batchSize);
+		batch.add(fcsRequest);
+
+		long deadline = System.currentTimeMillis() + Fca.getFcaConfig().getFcsBatchLinger();
+		while (batch.size() < batchSize) {
+			long remaining = deadline - System.currentTimeMillis();
+			FcsRequest next = (remaining > 0) ? fcsRequestQueue.poll(remaining, TimeUnit.MILLISECONDS) : fcsRequestQueue.poll();
+			if (next == null)
+				break;
+			fca.onFcsRequestTaken();
+			FcaMetrics.getInstance().recordDispatchWait(next.getEnqueueTime());
+			if (!discard(next))
+				batch.add(next);
+		}
+
+		return batch;
+	}
+
+	/**
+	 * Selezione delle richieste candidate che possono essere elaborate sull'host FCS selezionato per la prima richiesta (vedi
+	 * {@link Fca#isTargetFcs(FcsHost, FcsRequest)}): le altre richieste tornano in testa alla coda condivisa. Il gruppo condivide lo slot (e il
+	 * credito di elaborazione) riservato per la prima richiesta.
+	 * @param fcsHost Host FCS selezionato per la prima richiesta (slot gia' riservato)
+	 * @param candidates Richieste raccolte tramite {@link #collectBatch(FcsRequest)}
+	 * @return Richieste da elaborare sulla stessa sessione
+	 * @throws Exception
+	 */
+	public List<FcsRequest> selectBatch(FcsHost fcsHost, List<FcsRequest> candidates) throws Exception {
+		if (candidates.size() <= 1)
+			return candidates;
+
+		List<FcsRequest> batch = new ArrayList<FcsRequest>(candidates.size());
+		List<FcsRequest> rejected = new ArrayList<FcsRequest>();
+		batch.add(candidates.get(0));
+		for (int i = 1; i < candidates.size(); i++) {
+			FcsRequest candidate = candidates.get(i);
+			if (Fca.isTargetFcs(fcsHost, candidate))
+				batch.add(candidate);
+			else
+				rejected.add(candidate);
+		}
+		requeue(rejected);
+
+		if (logger.isInfoEnabled() && batch.size() > 1)
+			logger.info("FcsInvoker[" + getIdentifier() + "]: batch of " + batch.size() + " requests on host " + fcsHost.getHost() + ":" + fcsHost.getPort() + " (" + rejected.size() + " requests put back on blocking queue)...");
+		return batch;
+	}
+
+	/**
+	 * Restituzione in testa alla coda condivisa delle richieste escluse dal gruppo (nello stesso ordine di prelievo)
+	 * @param requests
+	 */
+	private void requeue(List<FcsRequest> requests) {
+		for (int i = requests.size() - 1; i >= 0; i--) {
+			FcsRequest fcsRequest = requests.get(i);
+			if (fcsRequestQueue instanceof LaneBlockingQueue) {
+				((LaneBlockingQueue) fcsRequestQueue).requeue(fcsRequest);
+			}
+			else if (!fcsRequestQueue.offer(fcsRequest)) {
+				// coda nel frattempo piena: la richiesta viene rilasciata (nuovamente caricata dalla sorgente dati)
+				logger.warn("FcsInvoker[" + getIdentifier() + "]: unable to put back request " + fcsRequest.getDocId() + " on blocking queue... release");
+				fca.releaseFcsRequest(fcsRequest);
+			}
+		}
+	}
+
+	/**
+	 * Elaborazione di una richiesta sull'host FCS selezionato (esito registrato singolarmente per ogni documento)
+	 * @param fcsHost
+	 * @param fcsRequest
+	 * @return true se l'esito e' stato registrato sul circuit breaker dell'host
+	 */
+	private boolean process(FcsHost fcsHost, FcsRequest fcsRequest) {
+		long startTime = System.currentTimeMillis();
+		int attempt = fcsRequest.incrementAttempts();
+		boolean success = false;
+		Throwable cause = null;
+		currentRequest = fcsRequest;
+		try {
+			// annullamento richiesto prima della registrazione della richiesta in elaborazione
+			if (fcsRequest.isCancelled())
+				throw new CancellationException("request cancelled");
+			if (!fcsHost.isAvailable())
+				throw new IOException("host " + fcsHost.getHost() + ":" + fcsHost.getPort() + " not available");
+
+			HeaderResponse response = dialogue(fcsHost, fcsRequest);
+			success = (response == HeaderResponse.DONE_HEADER);
+
+        	if (success) {
+        		if (logger.isInfoEnabled())
+        			logger.info("FcsInvoker[" + getIdentifier() + "]: Request COMPLETED in " + (System.currentTimeMillis()-startTime) + " millis.!");
+        	}
+			else {
+				logger.warn("FcsInvoker[" + getIdentifier() + "]: Request FAILED in " + (System.currentTimeMillis()-startTime) + " millis.!");
+				cause = new Exception("Unexpected FCS response: " + (response != null ? response.header() : "NULL"));
+			}
+		}
+		catch(CancellationException e) {
+			logger.warn("FcsInvoker[" + getIdentifier() + "]: Request CANCELLED in " + (System.currentTimeMillis()-startTime) + " millis.!");
+			cause = e;
+		}
+		catch(TimeoutException e) {
+			logger.warn("FcsInvoker[" + getIdentifier() + "]: Request FAILED! Deadline expired before dialogue with FCS host");
+			cause = e;
+		}
+		catch(SocketTimeoutException e) {
+			if (fcsRequest.isExpired()) {
+				logger.warn("FcsInvoker[" + getIdentifier() + "]: Request FAILED! Deadline expired after " + (System.currentTimeMillis()-startTime) + " millis.!");
+				cause = new TimeoutException("request deadline expired");
+			}
+			else {
+				logger.error("FcsInvoker[" + getIdentifier() + "]: Request FAILED! Got socket timeout on socket dialogue... " + e.getMessage(), e);
+				cause = e;
+			}
+		}
+		catch(Exception e) {
+			if (fcsRequest.isCancelled()) {
+				// connessione chiusa dall'annullamento della richiesta (vedi abort)
+				logger.warn("FcsInvoker[" + getIdentifier() + "]: Request CANCELLED in " + (System.currentTimeMillis()-startTime) + " millis.!");
+				cause = new CancellationException("request cancelled");
+			}
+			else {
+				logger.error("FcsInvoker[" + getIdentifier() + "]: Request FAILED! Got exception on socket dialogue... " + e.getMessage(), e);
+				cause = e;
+
+				// errore di connessione verso l'host FCS: l'host viene escluso dalla selezione fino alla successiva verifica positiva
+				if (fcsHost.isAvailable())
+					FcsHealthMonitor.getInstance().markDown(fcsHost);
+			}
+		}
+		finally {
+			currentRequest = null;
+			// in caso di richiesta non completata la connessione viene chiusa (stato del dialogo non determinato)
+			if (!success)
+				closeSession();
+		}
+
+		// aggiornamento del circuit breaker e dei tempi di risposta dell'host con l'esito dell'elaborazione (escluse le richieste annullate o
+		// interrotte per scadenza, non imputabili all'host)
+		long duration = System.currentTimeMillis() - startTime;
+		boolean recorded = success || !(cause instanceof CancellationException || cause instanceof TimeoutException);
+		if (recorded)
+			fcsHost.getCircuitBreaker().onResult(success, duration);
+		if (success)
+			fcsHost.recordResponseTime(duration);
+		FcaMetrics.getInstance().onRequestProcessed(fcsHost, success);
+
+		String address = fcsHost.getHost() + ":" + fcsHost.getPort();
+		fcsRequest.setFailedFcsHost(success ? null : address);
+
+		// registrazione dell'esito (rilascio della richiesta o nuovo tentativo)
+		fca.onFcsRequestProcessed(new FcsRequestResult(fcsRequest, address, startTime, duration, attempt, success, cause));
+		return recorded;
+	}
+
+	/**
+	 * Dialogo con l'host FCS sulla sessione corrente. Se non e' presente una sessione aperta viene riutilizzata una connessione del pool
+	 * dell'host (keep-alive) o aperta una nuova connessione. In caso di connessione riutilizzata chiusa lato FCS il dialogo viene ripetuto su una
+	 * nuova connessione.
+	 * @param fcsHost
+	 * @param fcsRequest
+	 * @return Ultima risposta ricevuta dall'host FCS (DONE_HEADER in caso di elaborazione completata)
+	 * @throws Exception
+	 */
+	private HeaderResponse dialogue(FcsHost fcsHost, FcsRequest fcsRequest) throws Exception {
+		int soTimeout = getSoTimeout(fcsRequest);
+		if (session == null)
+			session = fcsHost.getConnectionPool().borrow();
+
+		if (session != null) {
+			try {
+				checkCancelled(fcsRequest);
+				session.setSoTimeout(soTimeout);
+				if (logger.isInfoEnabled())
+					logger.info("FcsInvoker[" + getIdentifier() + "]: reuse connection " + session + "!");
+				return invoke(session, fcsHost, fcsRequest, true);
+			}
+			catch (StaleConnectionException e) {
+				// connessione chiusa lato FCS prima dell'invio della richiesta... nuovo tentativo su una nuova connessione
+				if (logger.isInfoEnabled())
+					logger.info("FcsInvoker[" + getIdentifier() + "]: connection " + session + " closed by FCS host... open a new one");
+				closeSession();
+			}
+		}
+
+		session = FcsConnection.open(fcsHost, soTimeout);
+		checkCancelled(fcsRequest);
+		if (logger.isInfoEnabled())
+			logger.info("FcsInvoker[" + getIdentifier() + "]: client " + fcsHost.getHost() + ":" + fcsHost.getPort() + " ready!");
+		return invoke(session, fcsHost, fcsRequest, false);
+	}
+
+	/**
+	 * Timeout (in ms) di lettura dal socket per la richiesta: tempo massimo di elaborazione della richiesta (o fcs.work.timeout), limitato dal
+	 * tempo rimanente prima della scadenza della richiesta
+	 * @param fcsRequest
+	 * @return Timeout di lettura (0 = senza timeout)
+	 * @throws TimeoutException Scadenza della richiesta gia' superata
+	 */
+	private int getSoTimeout(FcsRequest fcsRequest) throws TimeoutException {
+		int soTimeout = (fcsRequest.getWorkTimeout() > 0) ? fcsRequest.getWorkTimeout() + FCS_WORK_TIMEOUT_SOCKET_ADDON : fcsWorkTimeout;
+		if (fcsRequest.getDeadline() > 0) {
+			long remaining = fcsRequest.getRemainingTime();
+			if (remaining <= 0)
+				throw new TimeoutException("request deadline expired");
+			if (soTimeout <= 0 || remaining < soTimeout)
+				soTimeout = (int) Math.min(remaining, Integer.MAX_VALUE);
+		}
+		return soTimeout;
+	}
+
+	/**
+	 * Verifica dell'annullamento della richiesta dopo l'assegnazione della sessione (annullamento concorrente all'apertura della connessione)
+	 * @param fcsRequest
+	 */
+	private void checkCancelled(FcsRequest fcsRequest) {
+		if (fcsRequest.isCancelled())
+			throw new CancellationException("request cancelled");
+	}
+
+	/**
+	 * Chiusura della sessione corrente
+	 */
+	private void closeSession() {
+		if (session != null) {
+			session.close();
+			session = null;
+		}
+	}
+
+	/**
+	 * Dialogo socket di indicizzazione/conversione di un documento con l'host FCS
+	 * @param connection Connessione verso l'host FCS
+	 * @param fcsHost Host FCS di destinazione
+	 * @param fcsRequest Richiesta da elaborare
+	 * @param reused true se la connessione e' stata recuperata dal pool (gia' utilizzata per richieste precedenti)
+	 * @return Ultima risposta ricevuta dall'host FCS (DONE_HEADER in caso di elaborazione completata)
+	 * @throws StaleConnectionException Connessione riutilizzata chiusa lato FCS prima dell'invio della richiesta
+	 * @throws Exception
+	 */
+	private HeaderResponse invoke(FcsConnection connection, FcsHost fcsHost, FcsRequest fcsRequest, boolean reused) throws Exception {
+		// init del dialogo socket di indicizzazione/conversione
+		Protocol protocol = connection.getProtocol();
+		HeaderResponse response = null;
+		long handshakeStart = System.nanoTime();
+		try {
+			protocol.sendHeader(HeaderRequest.INIT_HEADER.bytes());
+			response = HeaderResponse.getHeaderResponse(protocol.receiveHeader()); // attesa di risposta da parte dell'host FCS
+		}
+		catch (IOException e) {
+			if (reused && !(e instanceof SocketTimeoutException))
+				throw new StaleConnectionException(e);
+			throw e;
+		}
+
+		if (response == HeaderResponse.TO_CONFIG_HEADER) {
+			// host FCS attivo ma privo dei parametri di attivazione (es. riavvio dell'host)... la configurazione verra' inviata dal monitor
+			logger.warn("FcsInvoker[" + getIdentifier() + "]: host " + fcsHost.getHost() + ":" + fcsHost.getPort() + " needs configuration!");
+			FcsHealthMonitor.getInstance().markNeedsConfig(fcsHost);
+		}
+		else if (response == HeaderResponse.ACK_HEADER) {
+
+			// invio a FCS la tipologia di comando da eseguire...
+			protocol.sendHeader(HeaderRequest.FCA_HEADER.bytes());
+			response = HeaderResponse.getHeaderResponse(protocol.receiveHeader()); // attesa di risposta da parte dell'host FCS
+			if (response == HeaderResponse.ACK_HEADER) {
+				// comando riconosciuto correttamente da parte di FCS...
+				FcaMetrics.getInstance().recordHandshake(fcsHost, handshakeStart);
+				long conversionStart = System.nanoTime();
+
+				// invio di tutti i parametri necessari a portare a termine la richiesta
+				protocol.sendString(fcsRequest.getDocId()); // invio dell'identificativo del documento da elaborare
+				protocol.sendString(fcsRequest.getConversionTo()); // definisce l'estensione (o estensioni) di destinazione delle conversioni dei file del documento
+				protocol.sendString(fcsRequest.getAdditionalParameters()); // eventuali parametri aggiuntivi da inviare all'host FCS
+
+				// client socket in attesa della risposta da parte dell'host FCS (timeout aggiornato in base alla scadenza della richiesta)...
+				connection.setSoTimeout(getSoTimeout(fcsRequest));
+				response = HeaderResponse.getHeaderResponse(protocol.receiveHeader());
+				FcaMetrics.getInstance().recordConversion(fcsHost, conversionStart);
+			}
+		}
+		return response;
+	}
+
+	/**
+	 * Connessione recuperata dal pool e chiusa lato FCS (keep-alive non gestito o connessione scaduta lato server)
+	 */
+	private static class StaleConnectionException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		public StaleConnectionException(IOException cause) {
+			super(cause.getMessage(), cause);
 		}
 	}
 
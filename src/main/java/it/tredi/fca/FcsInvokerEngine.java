@@ -0,0 +1,36 @@
+package it.tredi.fca;
+
+import java.util.concurrent.BlockingQueue;
+
+import it.tredi.fca.entity.FcsRequest;
+
+/**
+ * Modalita' di esecuzione degli invoker (thread che prelevano le richieste dalla coda condivisa ed invocano gli host FCS). In ogni caso il numero
+ * di elaborazioni concorrenti e' limitato dagli slot disponibili sugli host FCS (vedi {@link FcsHost#getQueueMaxSize()}).
+ * L'implementazione utilizzata puo' essere sostituita ridefinendo {@link Fca#createInvokerEngine()}.
+ */
+public interface FcsInvokerEngine {
+
+	/**
+	 * Avvio degli invoker
+	 * @param fca Istanza di FCA che alimenta la coda condivisa
+	 * @param fcsRequestQueue Coda condivisa delle richieste
+	 * @param slots Numero totale di slot di elaborazione sugli host FCS
+	 * @throws Exception
+	 */
+	public void start(Fca fca, BlockingQueue<FcsRequest> fcsRequestQueue, int slots) throws Exception;
+
+	/**
+	 * Arresto degli invoker (interruzione dei thread)
+	 */
+	public void stop();
+
+	/**
+	 * Adeguamento degli invoker al numero totale di slot di elaborazione (ricaricamento della configurazione con variazione del pool di host FCS).
+	 * Di default non viene eseguita alcuna azione.
+	 * @param slots Nuovo numero totale di slot di elaborazione sugli host FCS
+	 */
+	public default void resize(int slots) {
+	}
+
+}
@@ -0,0 +1,15 @@
+package it.tredi.fca;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+import it.tredi.fca.entity.FcsRequest;
+
+/**
+ * Cursore sulle richieste di indicizzazione/conversione pendenti. Consente all'implementazione di FCA di recuperare le richieste in modo
+ * incrementale (es. cursore su database o caricamento a pagine): FCA legge dal cursore solo le richieste che puo' effettivamente accodare
+ * e chiude il cursore al termine di ogni ciclo di caricamento.
+ */
+public interface FcsRequestCursor extends Iterator<FcsRequest>, Closeable {
+
+}
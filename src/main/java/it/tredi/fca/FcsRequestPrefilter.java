@@ -0,0 +1,88 @@
+package it.tredi.fca;
+
+import java.util.List;
+
+import it.tredi.fca.entity.FcsFileInfo;
+import it.tredi.fca.entity.FcsRequest;
+import it.tredi.fcs.socket.commands.entity.FcsActivationParams;
+
+/**
+ * Verifica preventiva (lato FCA) delle richieste tramite le stesse regole applicate dagli host FCS (parametri di attivazione fcs.index.* e
+ * fcs.convert.*): i documenti privi di file da indicizzare o convertire vengono completati senza impegnare la coda condivisa e gli host FCS.
+ * La verifica viene eseguita solo sulle richieste per le quali l'implementazione di FCA fornisce i metadati dei file (vedi
+ * {@link FcsRequest#setFiles(List)}); le richieste che tramite parametri aggiuntivi modificano le regole di elaborazione non devono
+ * riportare i metadati dei file.
+ */
+public class FcsRequestPrefilter {
+
+	private final FcsActivationParams params;
+
+	/**
+	 * Costruttore
+	 * @param params Parametri di attivazione inviati agli host FCS
+	 */
+	public FcsRequestPrefilter(FcsActivationParams params) {
+		this.params = params;
+	}
+
+	/**
+	 * Ritorna true se la richiesta deve essere inviata ad un host FCS (almeno un file da indicizzare o convertire, o metadati dei file non disponibili)
+	 * @param fcsRequest
+	 * @return
+	 */
+	public boolean requiresFcs(FcsRequest fcsRequest) {
+		List<FcsFileInfo> files = fcsRequest.getFiles();
+		if (files == null || params == null)
+			return true;
+
+		for (FcsFileInfo file : files) {
+			if (isIndexable(file) || isConvertible(file))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Ritorna true se il file deve essere indicizzato (fcs.index.enabled, fcs.index.fileTypes.include, fcs.index.fileTypes.exclude,
+	 * fcs.index.maxFileSize)
+	 * @param file
+	 * @return
+	 */
+	public boolean isIndexable(FcsFileInfo file) {
+		if (!params.isIndexEnabled())
+			return false;
+		if (!isEmpty(params.getIndexFileTypesInclude()) && !file.hasExtension(params.getIndexFileTypesInclude()))
+			return false;
+		if (file.hasExtension(params.getIndexFileTypesExclude()))
+			return false;
+		return isWithinLimit(file, params.getIndexMaxFileSize());
+	}
+
+	/**
+	 * Ritorna true se il file deve essere convertito (fcs.convert.enabled, fcs.convert.fileTypes, fcs.convert.maxFileSize)
+	 * @param file
+	 * @return
+	 */
+	public boolean isConvertible(FcsFileInfo file) {
+		if (!params.isConvertEnabled())
+			return false;
+		if (!isEmpty(params.getConvertFileTypes()) && !file.hasExtension(params.getConvertFileTypes()))
+			return false;
+		return isWithinLimit(file, params.getConvertMaxFileSize());
+	}
+
+	/**
+	 * Verifica della dimensione massima del file (limite minore o uguale a 0 o dimensione non nota: nessun limite)
+	 * @param file
+	 * @param maxFileSize
+	 * @return
+	 */
+	private static boolean isWithinLimit(FcsFileInfo file, long maxFileSize) {
+		return maxFileSize <= 0 || file.getSize() < 0 || file.getSize() <= maxFileSize;
+	}
+
+	private static boolean isEmpty(List<String> values) {
+		return values == null || values.isEmpty();
+	}
+
+}
@@ -0,0 +1,219 @@
+package it.tredi.fca;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.tredi.fca.entity.FcsRequest;
+import it.tredi.fca.entity.FcsRequestResult;
+
+/**
+ * Notifica asincrona (e a gruppi) degli esiti delle elaborazioni all'implementazione di FCA (vedi {@link Fca#onRequestsCompleted(List)} e
+ * {@link Fca#onRequestsFailed(List)}). Gli esiti vengono raccolti fino a fca.callback.batchSize elementi o per al massimo fca.callback.linger ms,
+ * in modo che l'implementazione possa aggiornare la sorgente dati con una unica scrittura.
+ */
+public class FcsResultDispatcher implements Runnable {
+
+	private static final Logger logger = LogManager.getLogger(Fca.class.getName());
+
+	// esito fittizio accodato in fase di arresto per risvegliare il thread di notifica (mai notificato)
+	private static final FcsRequestResult STOP = new FcsRequestResult(new FcsRequest("STOP"), null, 0, 0, 0, false, null);
+
+	private final Fca fca;
+	private final BlockingQueue<FcsRequestResult> results = new LinkedBlockingQueue<FcsRequestResult>();
+
+	private Thread thread = null;
+	private Thread stoppedThread = null;
+	private volatile boolean stopRequested = false;
+
+	public FcsResultDispatcher(Fca fca) {
+		this.fca = fca;
+	}
+
+	/**
+	 * Avvio del thread di notifica
+	 */
+	public synchronized void start() {
+		if (thread != null)
+			return;
+
+		stopRequested = false;
+		thread = new Thread(this, "FcsResultDispatcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Arresto del thread di notifica: l'eventuale notifica in corso viene completata e gli esiti ancora in attesa vengono notificati (senza
+	 * attendere fca.callback.linger) prima della chiusura del thread
+	 */
+	public synchronized void stop() {
+		if (thread != null) {
+			stopRequested = true;
+			results.add(STOP);
+			stoppedThread = thread;
+			thread = null;
+		}
+	}
+
+	/**
+	 * Attesa della chiusura del thread di notifica dopo l'arresto (notifica degli esiti ancora in attesa). Se il thread non termina entro il
+	 * timeout (es. notifica bloccata sull'implementazione di FCA) viene interrotto.
+	 * @param timeout Attesa massima (in ms)
+	 * @return true se il thread risulta chiuso entro il timeout
+	 */
+	public boolean awaitTermination(long timeout) {
+		Thread stopping;
+		synchronized (this) {
+			stopping = stoppedThread;
+		}
+		if (stopping == null)
+			return true;
+		try {
+			stopping.join(timeout);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (!stopping.isAlive())
+			return true;
+
+		logger.warn("FcsResultDispatcher: thread still running after " + timeout + " ms... interrupt it (" + results.size() + " results pending)");
+		stopping.interrupt();
+		return false;
+	}
+
+	/**
+	 * Registrazione dell'esito di una elaborazione (notificato in modo asincrono)
+	 * @param result
+	 */
+	public void add(FcsRequestResult result) {
+		results.add(result);
+	}
+
+	/**
+	 * Ritorna il numero di esiti in attesa di notifica
+	 * @return
+	 */
+	public int countPending() {
+		return results.size();
+	}
+
+	@Override
+	public void run() {
+		if (logger.isInfoEnabled())
+			logger.info("FcsResultDispatcher: thread started...");
+
+		try {
+			while (!stopRequested) {
+				FcsRequestResult result = results.take();
+				if (result == STOP)
+					break;
+				List<FcsRequestResult> batch = new ArrayList<FcsRequestResult>();
+				batch.add(result);
+				collect(batch);
+				dispatch(batch);
+			}
+		}
+		catch (InterruptedException e) {
+			if (logger.isInfoEnabled())
+				logger.info("FcsResultDispatcher: thread interrupted... " + e.getMessage());
+		}
+		finally {
+			// notifica degli esiti ancora in attesa
+			flush();
+		}
+	}
+
+	/**
+	 * Notifica (sincrona) di tutti gli esiti ancora in attesa
+	 */
+	public void flush() {
+		List<FcsRequestResult> batch = new ArrayList<FcsRequestResult>();
+		while (results.drainTo(batch, getBatchSize()) > 0) {
+			dispatch(batch);
+			batch = new ArrayList<FcsRequestResult>();
+		}
+	}
+
+	/**
+	 * Raccolta degli esiti fino a fca.callback.batchSize elementi o per al massimo fca.callback.linger ms
+	 * @param batch
+	 * @throws InterruptedException
+	 */
+	private void collect(List<FcsRequestResult> batch) throws InterruptedException {
+		int batchSize = getBatchSize();
+		long deadline = System.currentTimeMillis() + getLinger();
+		while (batch.size() < batchSize) {
+			results.drainTo(batch, batchSize - batch.size());
+			long remaining = deadline - System.currentTimeMillis();
+			if (batch.size() >= batchSize || remaining <= 0 || stopRequested)
+				break;
+
+			FcsRequestResult result = results.poll(remaining, TimeUnit.MILLISECONDS);
+			if (result == null)
+				break;
+			batch.add(result);
+		}
+	}
+
+	/**
+	 * Notifica all'implementazione di FCA degli esiti raccolti (separando elaborazioni completate e fallite)
+	 * @param batch
+	 */
+	private void dispatch(List<FcsRequestResult> batch) {
+		List<FcsRequestResult> completed = new ArrayList<FcsRequestResult>();
+		List<FcsRequestResult> failed = new ArrayList<FcsRequestResult>();
+		for (FcsRequestResult result : batch) {
+			if (result == STOP)
+				continue;
+			if (result.isSuccess())
+				completed.add(result);
+			else
+				failed.add(result);
+		}
+
+		if (!completed.isEmpty()) {
+			try {
+				fca.onRequestsCompleted(completed);
+				fca.onFcsResultsNotified(completed);
+			}
+			catch (Exception e) {
+				logger.error("FcsResultDispatcher: got exception on onRequestsCompleted()... " + e.getMessage(), e);
+				fca.releaseSkippedRequests(completed);
+			}
+		}
+		if (!failed.isEmpty()) {
+			try {
+				fca.onRequestsFailed(failed);
+			}
+			catch (Exception e) {
+				logger.error("FcsResultDispatcher: got exception on onRequestsFailed()... " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private int getBatchSize() {
+		try {
+			return FcaConfig.getInstance().getFcaCallbackBatchSize();
+		}
+		catch (Exception e) {
+			return 1;
+		}
+	}
+
+	private int getLinger() {
+		try {
+			return FcaConfig.getInstance().getFcaCallbackLinger();
+		}
+		catch (Exception e) {
+			return 0;
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+package it.tredi.fca;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Politica di ripetizione delle richieste fallite: ogni richiesta viene ripetuta fino a maxAttempts tentativi, con attesa esponenziale
+ * (a partire da baseDelay ms, al massimo maxDelay ms) e jitter casuale. Superato il numero massimo di tentativi la richiesta viene spostata fra le
+ * richieste scartate (vedi {@link DeadLetterRequests}).
+ */
+public class FcsRetryPolicy {
+
+	private final int maxAttempts;
+	private final long baseDelay;
+	private final long maxDelay;
+
+	/**
+	 * Costruttore
+	 * @param maxAttempts Numero massimo di tentativi per ogni richiesta (0 = ripetizione disabilitata, richieste fallite nuovamente caricate
+	 * al successivo ciclo di caricamento)
+	 * @param baseDelay Attesa (in ms) prima del primo nuovo tentativo
+	 * @param maxDelay Attesa (in ms) massima fra due tentativi
+	 */
+	public FcsRetryPolicy(int maxAttempts, long baseDelay, long maxDelay) {
+		this.maxAttempts = Math.max(0, maxAttempts);
+		this.baseDelay = Math.max(0, baseDelay);
+		this.maxDelay = Math.max(this.baseDelay, maxDelay);
+	}
+
+	/**
+	 * Ritorna true se la ripetizione delle richieste fallite risulta abilitata
+	 * @return
+	 */
+	public boolean isEnabled() {
+		return maxAttempts > 0;
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * Ritorna true se la richiesta fallita al tentativo indicato puo' essere ripetuta
+	 * @param attempt Numero del tentativo fallito (a partire da 1)
+	 * @return
+	 */
+	public boolean canRetry(int attempt) {
+		return attempt < maxAttempts;
+	}
+
+	/**
+	 * Calcolo dell'attesa prima del nuovo tentativo: backoff esponenziale con jitter (attesa casuale fra meta' e il valore pieno del backoff)
+	 * @param attempt Numero del tentativo fallito (a partire da 1)
+	 * @return Attesa in ms
+	 */
+	public long getRetryDelay(int attempt) {
+		long delay = baseDelay;
+		for (int i = 1; i < attempt && delay < maxDelay; i++)
+			delay *= 2;
+		delay = Math.min(delay, maxDelay);
+
+		long half = delay / 2;
+		return half + (half > 0 ? ThreadLocalRandom.current().nextLong(half + 1) : 0);
+	}
+
+}
@@ -1,11 +1,15 @@
 package it.tredi.fca;
 
 /**
- * Tipologie di selezione di un host FCS
+ * Tipologie di selezione di un host FCS (vedi implementazioni di it.tredi.fca.selector.FcsHostSelector)
  */
 public enum FcsSelectionMode {
 
 	ROUNDROBIN,
-	QUEUE_SIZE
+	QUEUE_SIZE,
+	WEIGHTED_ROUNDROBIN, // round robin proporzionale al peso dell'host (quarto campo di fcs.pool)
+	LEAST_RESPONSE_TIME, // host con il minor tempo di risposta stimato (media mobile dei tempi di risposta per elaborazioni in corso)
+	POWER_OF_TWO, // confronto del tempo di risposta stimato di due host scelti a caso
+	AFFINITY // consistent hashing sulla chiave di instradamento della richiesta (con spostamento sull'host successivo in caso di coda piena)
 	
 }
@@ -0,0 +1,266 @@
+package it.tredi.fca;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Crediti di elaborazione: ogni slot libero di un host FCS selezionabile corrisponde ad un credito. Un invoker preleva una richiesta dalla coda
+ * condivisa solo dopo aver riservato un credito, quindi le richieste restano in coda (ordinate per corsia) fino a quando non possono essere
+ * effettivamente inviate ad un host.
+ * <p>
+ * Il numero di crediti disponibili viene mantenuto su un contatore atomico aggiornato ad ogni prenotazione e rilascio di uno slot (nessun lock
+ * sul percorso di elaborazione delle richieste) e ricalcolato dai contatori degli host solo ai cambi di stato di un host, del circuit breaker o
+ * della configurazione (vedi {@link #signal()}) e allo scadere delle attese.
+ * <p>
+ * In assenza di crediti (o di un host adatto alla richiesta) gli invoker restano in attesa su una condition: ogni slot rilasciato risveglia un
+ * solo invoker in attesa, mentre i cambi di stato risvegliano tutti gli invoker. Nessuna attesa attiva, anche con fca.waiting.step=0.
+ */
+public class FcsSlotCredits {
+
+	private static final Logger logger = LogManager.getLogger(Fca.class.getName());
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition creditAvailable = lock.newCondition(); // attesa di un credito (prelievo dalla coda condivisa)
+	private final Condition changed = lock.newCondition(); // attesa di una variazione della capacita' (selezione dell'host)
+
+	// crediti disponibili: slot liberi sugli host selezionabili al netto dei crediti riservati
+	private final AtomicInteger available = new AtomicInteger(0);
+
+	// crediti riservati da invoker che non hanno ancora riservato lo slot sull'host
+	private final AtomicInteger reserved = new AtomicInteger(0);
+
+	// versione della capacita' (incrementata ad ogni variazione)
+	private final AtomicLong version = new AtomicLong(0);
+
+	// thread in attesa (il lock viene acquisito per il risveglio solo in presenza di thread in attesa)
+	private final AtomicInteger waiters = new AtomicInteger(0);
+
+	// Singleton
+	private static FcsSlotCredits instance = null;
+
+	/**
+	 * Costruttore privato
+	 */
+	private FcsSlotCredits() {
+	}
+
+	/**
+	 * Ritorna l'oggetto di gestione dei crediti di elaborazione
+	 * @return
+	 */
+	public static FcsSlotCredits getInstance() {
+		if (instance == null) {
+			synchronized (FcsSlotCredits.class) {
+				if (instance == null) {
+					if (logger.isInfoEnabled())
+						logger.info("FcsSlotCredits instance is null... create one");
+					instance = new FcsSlotCredits();
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Riserva un credito di elaborazione, attendendo al massimo timeout ms che si liberi uno slot
+	 * @param timeout Attesa massima (in ms)
+	 * @return true se il credito e' stato riservato (da rilasciare tramite {@link #release()})
+	 * @throws InterruptedException
+	 */
+	public boolean tryAcquire(long timeout) throws InterruptedException {
+		if (tryReserve())
+			return true;
+
+		long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+		lock.lockInterruptibly();
+		waiters.incrementAndGet();
+		try {
+			while (!tryReserve()) {
+				if (nanos <= 0) {
+					// attesa scaduta: ricalcolo dei crediti (es. attesa del circuito aperto terminata, senza alcuna notifica)
+					recount();
+					return tryReserve();
+				}
+				nanos = creditAvailable.awaitNanos(nanos);
+			}
+
+			// crediti ancora disponibili: risveglio di un altro invoker in attesa (notifica non persa in caso di attesa scaduta o interrotta)
+			if (available.get() > 0)
+				creditAvailable.signal();
+			return true;
+		}
+		finally {
+			waiters.decrementAndGet();
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Rilascio di un credito riservato (slot gia' riservato sull'host selezionato o richiesta non prelevata)
+	 */
+	public void release() {
+		while (true) {
+			int current = reserved.get();
+			if (current <= 0)
+				return;
+			if (reserved.compareAndSet(current, current - 1))
+				break;
+		}
+		if (available.incrementAndGet() > 0)
+			wakeUpOne(false);
+	}
+
+	/**
+	 * Notifica della prenotazione di uno slot su un host FCS (vedi {@link FcsHost#tryIncrementQueueInProgressSize()})
+	 */
+	public void onSlotAcquired() {
+		available.decrementAndGet();
+	}
+
+	/**
+	 * Annullamento della prenotazione di uno slot notificata tramite {@link #onSlotAcquired()} (permesso negato dal circuit breaker): lo slot non
+	 * e' mai stato impegnato, quindi non viene risvegliato alcun invoker
+	 */
+	public void onSlotAcquireFailed() {
+		available.incrementAndGet();
+	}
+
+	/**
+	 * Notifica del rilascio di uno slot su un host FCS (vedi {@link FcsHost#decrementQueueInProgressSize()}): se l'host risulta selezionabile
+	 * viene reso disponibile un credito e risvegliato un solo invoker in attesa
+	 * @param fcsHost
+	 */
+	public void onSlotReleased(FcsHost fcsHost) {
+		if (fcsHost.isSelectable() && fcsHost.getQueueInProgressSize() < fcsHost.getQueueMaxSize())
+			available.incrementAndGet();
+		version.incrementAndGet();
+		wakeUpOne(true);
+	}
+
+	/**
+	 * Notifica di una variazione della capacita' (cambio di stato di un host o del circuit breaker, ricaricamento della configurazione): i crediti
+	 * disponibili vengono ricalcolati e vengono risvegliati tutti gli invoker in attesa
+	 */
+	public void signal() {
+		recount();
+		version.incrementAndGet();
+		lock.lock();
+		try {
+			creditAvailable.signalAll();
+			changed.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Ritorna la versione corrente della capacita' (da leggere prima di un tentativo di selezione, vedi {@link #awaitChange(long, long)})
+	 * @return
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * Attesa di una variazione della capacita' successiva alla versione indicata
+	 * @param observed Versione letta prima del tentativo di selezione fallito
+	 * @param timeout Attesa massima (in ms)
+	 * @return true se la capacita' e' variata, false in caso di attesa scaduta
+	 * @throws InterruptedException
+	 */
+	public boolean awaitChange(long observed, long timeout) throws InterruptedException {
+		if (version.get() != observed)
+			return true;
+
+		long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+		lock.lockInterruptibly();
+		waiters.incrementAndGet();
+		try {
+			while (version.get() == observed) {
+				if (nanos <= 0)
+					return false;
+				nanos = changed.awaitNanos(nanos);
+			}
+			return true;
+		}
+		finally {
+			waiters.decrementAndGet();
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Ritorna il numero di crediti disponibili (slot liberi sugli host selezionabili non ancora riservati)
+	 * @return
+	 */
+	public int countAvailable() {
+		return Math.max(0, available.get());
+	}
+
+	/**
+	 * Prenotazione di un credito disponibile (senza attesa)
+	 * @return
+	 */
+	private boolean tryReserve() {
+		while (true) {
+			int current = available.get();
+			if (current <= 0)
+				return false;
+			if (available.compareAndSet(current, current - 1)) {
+				reserved.incrementAndGet();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Risveglio di un solo thread in attesa di un credito (ed eventualmente di una variazione della capacita')
+	 * @param changes true per risvegliare anche un thread in attesa di una variazione della capacita'
+	 */
+	private void wakeUpOne(boolean changes) {
+		if (waiters.get() == 0)
+			return;
+		lock.lock();
+		try {
+			creditAvailable.signal();
+			if (changes)
+				changed.signal();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Ricalcolo dei crediti disponibili dai contatori degli host FCS selezionabili
+	 */
+	private void recount() {
+		available.set(countFreeSlots() - reserved.get());
+	}
+
+	/**
+	 * Conteggio degli slot liberi sugli host FCS selezionabili
+	 * @return
+	 */
+	private int countFreeSlots() {
+		int free = 0;
+		try {
+			for (FcsHost fcsHost : FcaConfig.getInstance().getFcsPool()) {
+				if (fcsHost.isSelectable())
+					free += Math.max(0, fcsHost.getQueueMaxSize() - fcsHost.getQueueInProgressSize());
+			}
+		}
+		catch (Exception e) {
+			logger.error("FcsSlotCredits: unable to count free slots... " + e.getMessage(), e);
+		}
+		return free;
+	}
+
+}
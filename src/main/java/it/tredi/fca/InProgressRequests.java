@@ -1,13 +1,20 @@
 package it.tredi.fca;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import it.tredi.fca.entity.FcsRequest;
+
 /**
- * Mantiene la lista di richieste pendenti a FCA (richieste in attesa di elaborazione, aggiunte alla blocking queue o in fase di elaborazione su un host FCS)
+ * Mantiene la lista di richieste pendenti a FCA (richieste in attesa di elaborazione, aggiunte alla blocking queue o in fase di elaborazione su un host FCS).
+ * Le richieste sono mantenute su un set concorrente (hash): verifica, aggiunta e rimozione in tempo costante e senza lock.
  * @author mbernardini
  */
 public class InProgressRequests {
@@ -17,13 +24,15 @@ public class InProgressRequests {
 	// Singleton
     private static InProgressRequests instance = null;
     
-    private List<String> inprogressIds;
+    private Set<String> inprogressIds;
+    private Map<String, FcsRequest> inprogressRequests; // richieste registrate tramite tryAcquire(FcsRequest)
     
     /**
      * Costruttore privato
      */
     private InProgressRequests() {
-    	this.inprogressIds = new ArrayList<String>();
+    	this.inprogressIds = ConcurrentHashMap.newKeySet();
+    	this.inprogressRequests = new ConcurrentHashMap<String, FcsRequest>();
     }
 	
     /**
@@ -44,22 +53,58 @@ public class InProgressRequests {
 	}
 	
 	/**
-	 * Aggiunta di una richiesta alla lista di richieste pendenti
+	 * Aggiunta (atomica) di una richiesta alla lista di richieste pendenti, solo se non gia' presente
 	 * @param idReq Identificativo della richiesta da aggiungere (nuova richiesta da elaborare)
+	 * @return true se la richiesta e' stata aggiunta, false se gia' presente fra quelle pendenti (o identificativo non valido)
 	 */
-	public synchronized void addRequest(String idReq) {
+	public boolean tryAcquire(String idReq) {
 		if (idReq != null && !idReq.isEmpty())
-			inprogressIds.add(idReq);
+			return inprogressIds.add(idReq);
+		else
+			return false;
+	}
+
+	/**
+	 * Aggiunta (atomica) di una richiesta alla lista di richieste pendenti, solo se non gia' presente. La richiesta resta recuperabile tramite
+	 * {@link #getRequest(String)} fino alla rimozione.
+	 * @param fcsRequest Richiesta da aggiungere (nuova richiesta da elaborare)
+	 * @return true se la richiesta e' stata aggiunta, false se gia' presente fra quelle pendenti (o identificativo non valido)
+	 */
+	public boolean tryAcquire(FcsRequest fcsRequest) {
+		if (fcsRequest == null || !tryAcquire(fcsRequest.getDocId()))
+			return false;
+		inprogressRequests.put(fcsRequest.getDocId(), fcsRequest);
+		return true;
+	}
+
+	/**
+	 * Ritorna la richiesta pendente corrispondente all'identificativo indicato (null se non presente o registrata solo tramite identificativo)
+	 * @param idReq
+	 * @return
+	 */
+	public FcsRequest getRequest(String idReq) {
+		if (idReq != null && !idReq.isEmpty())
+			return inprogressRequests.get(idReq);
+		else
+			return null;
+	}
+
+	/**
+	 * Aggiunta di una richiesta alla lista di richieste pendenti
+	 * @param idReq Identificativo della richiesta da aggiungere (nuova richiesta da elaborare)
+	 */
+	public void addRequest(String idReq) {
+		tryAcquire(idReq);
 	}
 	
 	/**
 	 * Eliminazione di una richiesta alla lista di richieste pendenti
 	 * @param idReq Identificativo della richiesta da rimuovere (richiesta per la quale e' stata completata l'elaborazione)
 	 */
-	public synchronized void removeRequest(String idReq) {
-		if (idReq != null && !idReq.isEmpty() && inprogressIds.contains(idReq))
-			inprogressIds.remove(idReq);
-		else
+	public void removeRequest(String idReq) {
+		if (idReq != null)
+			inprogressRequests.remove(idReq);
+		if (idReq == null || idReq.isEmpty() || !inprogressIds.remove(idReq))
 			logger.warn("InProgressRequests.removeRequest(): Req " + idReq + " not contained in in-progress list");
 	}
 	
@@ -84,11 +129,11 @@ public class InProgressRequests {
 	}
 	
 	/**
-	 * Ritorna l'elenco delle richieste pendenti
+	 * Ritorna l'elenco delle richieste pendenti (copia non modificabile della lista corrente)
 	 * @return
 	 */
 	public List<String> listRequests() {
-		return inprogressIds;
+		return Collections.unmodifiableList(new ArrayList<String>(inprogressIds));
 	}
 	
 	
@@ -0,0 +1,373 @@
+package it.tredi.fca;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import it.tredi.fca.entity.FcsRequest;
+import it.tredi.fca.entity.FcsRequestLane;
+
+/**
+ * Coda condivisa (bloccante) suddivisa in corsie di priorita' (vedi {@link FcsRequestLane}). Ogni corsia ha una capacita' pari alla dimensione
+ * della coda, in modo che un accodamento massivo non impedisca l'inserimento di richieste interattive. Il prelievo avviene tramite
+ * weighted round robin (smooth) sulle corsie non vuote: a parita' di richieste in attesa ogni corsia ottiene una quota di prelievi
+ * proporzionale al proprio peso, quindi nessuna corsia viene bloccata dalle altre.
+ */
+public class LaneBlockingQueue extends AbstractQueue<FcsRequest> implements BlockingQueue<FcsRequest> {
+
+	private static final FcsRequestLane[] LANES = FcsRequestLane.values();
+
+	private int capacity;
+	private final int[] weights;
+	private final int[] currentWeights;
+	private final ArrayDeque<FcsRequest>[] lanes;
+	private int count = 0;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+
+	/**
+	 * Costruttore
+	 * @param capacity Capacita' della coda (per ogni corsia)
+	 * @param laneWeights Pesi delle corsie (corsie non indicate o con peso non valido hanno peso 1)
+	 */
+	@SuppressWarnings("unchecked")
+	public LaneBlockingQueue(int capacity, Map<FcsRequestLane, Integer> laneWeights) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Invalid queue capacity: " + capacity);
+
+		this.capacity = capacity;
+		this.weights = new int[LANES.length];
+		this.currentWeights = new int[LANES.length];
+		this.lanes = new ArrayDeque[LANES.length];
+		for (FcsRequestLane lane : LANES) {
+			Integer weight = (laneWeights != null) ? laneWeights.get(lane) : null;
+			this.weights[lane.ordinal()] = (weight != null && weight > 0) ? weight : 1;
+			this.lanes[lane.ordinal()] = new ArrayDeque<FcsRequest>();
+		}
+	}
+
+	/**
+	 * Ritorna la capacita' della coda (per ogni corsia)
+	 * @return
+	 */
+	public int getCapacity() {
+		lock.lock();
+		try {
+			return capacity;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Aggiorna la capacita' della coda (es. variazione degli slot degli host FCS). In caso di riduzione le richieste gia' accodate vengono mantenute.
+	 * @param capacity
+	 */
+	public void setCapacity(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Invalid queue capacity: " + capacity);
+
+		lock.lock();
+		try {
+			this.capacity = capacity;
+			notFull.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Ritorna il numero di richieste in attesa sulla corsia indicata
+	 * @param lane
+	 * @return
+	 */
+	public int size(FcsRequestLane lane) {
+		lock.lock();
+		try {
+			return lanes[lane.ordinal()].size();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Spazio libero sulla coda: somma dello spazio libero delle corsie (ogni corsia ha una capacita' pari alla dimensione della coda)
+	 */
+	@Override
+	public int remainingCapacity() {
+		lock.lock();
+		try {
+			int remaining = 0;
+			for (ArrayDeque<FcsRequest> lane : lanes)
+				remaining += Math.max(0, capacity - lane.size());
+			return remaining;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Spazio libero sulla corsia indicata
+	 * @param lane
+	 * @return
+	 */
+	public int remainingCapacity(FcsRequestLane lane) {
+		lock.lock();
+		try {
+			return Math.max(0, capacity - lanes[lane.ordinal()].size());
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(FcsRequest fcsRequest) {
+		checkNotNull(fcsRequest);
+		lock.lock();
+		try {
+			if (isFull(fcsRequest.getLane()))
+				return false;
+			enqueue(fcsRequest);
+			return true;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(FcsRequest fcsRequest, long timeout, TimeUnit unit) throws InterruptedException {
+		checkNotNull(fcsRequest);
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (isFull(fcsRequest.getLane())) {
+				if (nanos <= 0)
+					return false;
+				nanos = notFull.awaitNanos(nanos);
+			}
+			enqueue(fcsRequest);
+			return true;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(FcsRequest fcsRequest) throws InterruptedException {
+		checkNotNull(fcsRequest);
+		lock.lockInterruptibly();
+		try {
+			while (isFull(fcsRequest.getLane()))
+				notFull.await();
+			enqueue(fcsRequest);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Restituzione in testa alla propria corsia di una richiesta gia' prelevata (es. richiesta esclusa da un gruppo di richieste), anche in caso di
+	 * corsia piena: la richiesta occupava gia' lo spazio sulla coda
+	 * @param fcsRequest
+	 */
+	public void requeue(FcsRequest fcsRequest) {
+		checkNotNull(fcsRequest);
+		lock.lock();
+		try {
+			lanes[fcsRequest.getLane().ordinal()].addFirst(fcsRequest);
+			count++;
+			notEmpty.signal();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public FcsRequest poll() {
+		lock.lock();
+		try {
+			return (count > 0) ? dequeue() : null;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public FcsRequest poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (count == 0) {
+				if (nanos <= 0)
+					return null;
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return dequeue();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public FcsRequest take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (count == 0)
+				notEmpty.await();
+			return dequeue();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public FcsRequest peek() {
+		lock.lock();
+		try {
+			for (FcsRequestLane lane : LANES) {
+				FcsRequest fcsRequest = lanes[lane.ordinal()].peekFirst();
+				if (fcsRequest != null)
+					return fcsRequest;
+			}
+			return null;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (o == null)
+			return false;
+		lock.lock();
+		try {
+			for (ArrayDeque<FcsRequest> lane : lanes) {
+				if (lane.removeFirstOccurrence(o)) {
+					count--;
+					notFull.signalAll();
+					return true;
+				}
+			}
+			return false;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super FcsRequest> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super FcsRequest> c, int maxElements) {
+		if (c == null)
+			throw new NullPointerException();
+		if (c == this)
+			throw new IllegalArgumentException();
+
+		lock.lock();
+		try {
+			int n = 0;
+			while (n < maxElements && count > 0) {
+				c.add(dequeue());
+				n++;
+			}
+			return n;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Iteratore su una copia delle richieste in attesa (in ordine di corsia)
+	 */
+	@Override
+	public Iterator<FcsRequest> iterator() {
+		lock.lock();
+		try {
+			List<FcsRequest> snapshot = new ArrayList<FcsRequest>(count);
+			for (ArrayDeque<FcsRequest> lane : lanes)
+				snapshot.addAll(lane);
+			return snapshot.iterator();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean isFull(FcsRequestLane lane) {
+		return lanes[lane.ordinal()].size() >= capacity;
+	}
+
+	private void enqueue(FcsRequest fcsRequest) {
+		lanes[fcsRequest.getLane().ordinal()].addLast(fcsRequest);
+		count++;
+		notEmpty.signal();
+	}
+
+	/**
+	 * Prelievo di una richiesta tramite smooth weighted round robin sulle corsie non vuote (da invocare con lock acquisito e coda non vuota)
+	 * @return
+	 */
+	private FcsRequest dequeue() {
+		int selected = -1;
+		int totalWeight = 0;
+		for (int i = 0; i < lanes.length; i++) {
+			if (!lanes[i].isEmpty()) {
+				currentWeights[i] += weights[i];
+				totalWeight += weights[i];
+				if (selected < 0 || currentWeights[i] > currentWeights[selected])
+					selected = i;
+			}
+		}
+		currentWeights[selected] -= totalWeight;
+
+		FcsRequest fcsRequest = lanes[selected].pollFirst();
+		count--;
+		notFull.signalAll();
+		return fcsRequest;
+	}
+
+	private static void checkNotNull(FcsRequest fcsRequest) {
+		if (fcsRequest == null)
+			throw new NullPointerException();
+	}
+
+}
@@ -0,0 +1,35 @@
+package it.tredi.fca;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import it.tredi.fca.entity.FcsRequest;
+
+/**
+ * Adattatore da lista di richieste pendenti (vedi {@link Fca#loadFcsPendingRequests()}) a cursore. La chiusura non ha effetto: lo stesso
+ * cursore puo' essere letto su piu' cicli di caricamento fino al termine della lista.
+ */
+public class ListFcsRequestCursor implements FcsRequestCursor {
+
+	private final Iterator<FcsRequest> iterator;
+
+	public ListFcsRequestCursor(List<FcsRequest> fcsRequests) {
+		this.iterator = (fcsRequests != null) ? fcsRequests.iterator() : Collections.<FcsRequest>emptyIterator();
+	}
+
+	@Override
+	public boolean hasNext() {
+		return iterator.hasNext();
+	}
+
+	@Override
+	public FcsRequest next() {
+		return iterator.next();
+	}
+
+	@Override
+	public void close() {
+	}
+
+}
@@ -0,0 +1,78 @@
+package it.tredi.fca;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.tredi.fca.entity.FcsRequest;
+
+/**
+ * Esecuzione degli invoker su thread dedicati: per ogni slot di elaborazione definito sugli host FCS viene generato un thread di invoker che si
+ * mette in attesa di leggere delle richieste di indicizzazione/conversione dalla coda condivisa
+ */
+public class ThreadPerSlotInvokerEngine implements FcsInvokerEngine {
+
+	private static final Logger logger = LogManager.getLogger(Fca.class.getName());
+
+	private final List<FcsInvoker> invokers = new ArrayList<FcsInvoker>();
+	private final List<Thread> threads = new ArrayList<Thread>();
+
+	private Fca fca;
+	private BlockingQueue<FcsRequest> fcsRequestQueue;
+	private int counter = 0;
+
+	@Override
+	public synchronized void start(Fca fca, BlockingQueue<FcsRequest> fcsRequestQueue, int slots) throws Exception {
+		this.fca = fca;
+		this.fcsRequestQueue = fcsRequestQueue;
+		for (int i = 0; i < slots; i++)
+			startInvoker();
+
+		if (logger.isInfoEnabled())
+			logger.info("ThreadPerSlotInvokerEngine: started " + slots + " invoker threads");
+	}
+
+	@Override
+	public synchronized void stop() {
+		for (FcsInvoker invoker : invokers)
+			invoker.stop();
+		for (Thread thread : threads)
+			thread.interrupt();
+		invokers.clear();
+		threads.clear();
+	}
+
+	/**
+	 * Avvio di nuovi invoker o arresto (al termine dell'elaborazione corrente) degli invoker in eccesso
+	 */
+	@Override
+	public synchronized void resize(int slots) {
+		if (fca == null)
+			return;
+
+		int current = threads.size();
+		while (threads.size() < slots)
+			startInvoker();
+		while (threads.size() > slots && !threads.isEmpty()) {
+			int last = threads.size() - 1;
+			invokers.remove(last).stop();
+			threads.remove(last);
+		}
+
+		if (current != slots && logger.isInfoEnabled())
+			logger.info("ThreadPerSlotInvokerEngine: invoker threads resized " + current + " -> " + slots);
+	}
+
+	private void startInvoker() {
+		String name = "Invoker" + (counter++);
+		FcsInvoker fcsInvoker = new FcsInvoker(name, fca, fcsRequestQueue);
+		Thread thread = new Thread(fcsInvoker, name);
+		invokers.add(fcsInvoker);
+		threads.add(thread);
+		thread.start();
+	}
+
+}
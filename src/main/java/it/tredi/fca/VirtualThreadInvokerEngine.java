@@ -0,0 +1,120 @@
+package it.tredi.fca;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.tredi.fca.entity.FcsRequest;
+
+/**
+ * Esecuzione degli invoker su virtual thread (JDK 21+). Un unico thread di dispatch preleva le richieste dalla coda condivisa, attende uno slot
+ * libero su un host FCS e avvia un virtual thread per il dialogo con l'host: il numero di elaborazioni concorrenti e' limitato esclusivamente dagli
+ * slot degli host FCS e i thread in attesa di risposta da FCS non impegnano thread di piattaforma.
+ * <p>
+ * I virtual thread vengono istanziati tramite reflection (artefatto compilato per Java 8): su JDK che non li supportano viene utilizzata
+ * l'esecuzione su thread dedicati ({@link ThreadPerSlotInvokerEngine}).
+ */
+public class VirtualThreadInvokerEngine implements FcsInvokerEngine, Runnable {
+
+	private static final Logger logger = LogManager.getLogger(Fca.class.getName());
+
+	private Fca fca;
+	private BlockingQueue<FcsRequest> fcsRequestQueue;
+	private ThreadFactory virtualThreadFactory;
+
+	private Thread dispatcher = null;
+	private FcsInvokerEngine fallback = null;
+
+	/**
+	 * Ritorna true se la JVM corrente supporta i virtual thread
+	 * @return
+	 */
+	public static boolean isSupported() {
+		return createVirtualThreadFactory() != null;
+	}
+
+	@Override
+	public synchronized void start(Fca fca, BlockingQueue<FcsRequest> fcsRequestQueue, int slots) throws Exception {
+		this.fca = fca;
+		this.fcsRequestQueue = fcsRequestQueue;
+		this.virtualThreadFactory = createVirtualThreadFactory();
+
+		if (virtualThreadFactory == null) {
+			logger.warn("VirtualThreadInvokerEngine: virtual threads NOT supported by current JVM (" + System.getProperty("java.version") + ")... use one thread per slot");
+			fallback = new ThreadPerSlotInvokerEngine();
+			fallback.start(fca, fcsRequestQueue, slots);
+			return;
+		}
+
+		dispatcher = new Thread(this, "InvokerDispatcher");
+		dispatcher.start();
+
+		if (logger.isInfoEnabled())
+			logger.info("VirtualThreadInvokerEngine: started (concurrency limited by " + slots + " FCS slots)");
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (fallback != null)
+			fallback.stop();
+		if (dispatcher != null)
+			dispatcher.interrupt();
+	}
+
+	/**
+	 * Con virtual thread la concorrenza segue direttamente gli slot degli host FCS (nessun adeguamento necessario)
+	 */
+	@Override
+	public synchronized void resize(int slots) {
+		if (fallback != null)
+			fallback.resize(slots);
+	}
+
+	@Override
+	public void run() {
+		FcsInvoker dispatcherInvoker = new FcsInvoker("InvokerDispatcher", fca, fcsRequestQueue);
+		long counter = 0;
+		try {
+			while (true) {
+				// prelievo della richiesta (e del gruppo di richieste) e attesa di uno slot libero su un host FCS (permesso di elaborazione)
+				FcsRequest fcsRequest = dispatcherInvoker.takeRequest();
+				List<FcsRequest> candidates = dispatcherInvoker.collectBatch(fcsRequest);
+				final FcsHost fcsHost = dispatcherInvoker.awaitTargetFcs(fcsRequest);
+				final List<FcsRequest> batch = dispatcherInvoker.selectBatch(fcsHost, candidates);
+
+				// dialogo con l'host FCS su un nuovo virtual thread (lo slot viene rilasciato al termine dell'elaborazione)
+				final FcsInvoker fcsInvoker = new FcsInvoker("VirtualInvoker" + (counter++), fca, fcsRequestQueue);
+				virtualThreadFactory.newThread(() -> fcsInvoker.execute(fcsHost, batch)).start();
+			}
+		}
+		catch (InterruptedException e) {
+			if (logger.isInfoEnabled())
+				logger.info("VirtualThreadInvokerEngine: dispatcher interrupted... " + e.getMessage());
+		}
+		catch (Exception e) {
+			logger.error("VirtualThreadInvokerEngine: FATAL, unable to dispatch requests (quit thread)... " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Istanzia una factory di virtual thread (Thread.ofVirtual().name("VirtualInvoker", 0).factory()) tramite reflection
+	 * @return Factory di virtual thread, null se non supportati dalla JVM corrente
+	 */
+	private static ThreadFactory createVirtualThreadFactory() {
+		try {
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = ofVirtual.invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "VirtualInvoker", 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		}
+		catch (Exception e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+package it.tredi.fca.entity;
+
+import java.util.List;
+
+/**
+ * Metadati di un file del documento da elaborare (nome e dimensione), utilizzati per la verifica preventiva delle regole di indicizzazione e
+ * conversione di FCS prima dell'invio della richiesta (vedi fca.prefilter.enabled)
+ */
+public class FcsFileInfo {
+
+	private final String fileName;
+	private final long size; // dimensione in bytes (negativa se non nota)
+
+	/**
+	 * Costruttore
+	 * @param fileName Nome del file (comprensivo di estensione)
+	 * @param size Dimensione del file in bytes (negativa se non nota)
+	 */
+	public FcsFileInfo(String fileName, long size) {
+		this.fileName = fileName;
+		this.size = size;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Ritorna true se il file ha una delle estensioni indicate (confronto non case sensitive, sono ammesse estensioni composte, es. tar.gz)
+	 * @param extensions Estensioni (minuscole, senza punto iniziale)
+	 * @return
+	 */
+	public boolean hasExtension(List<String> extensions) {
+		if (fileName == null || extensions == null)
+			return false;
+		String name = fileName.toLowerCase();
+		for (String extension : extensions) {
+			if (!extension.isEmpty() && name.endsWith("." + extension))
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return fileName + " [" + size + " bytes]";
+	}
+
+}
@@ -1,11 +1,23 @@
 package it.tredi.fca.entity;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class FcsRequest {
 	
 	public static final String CONVERSION_TO_PDF = "pdf";
 
 	private String docId; // TODO l'identificativo del record da indicizzare/convertire potrebbe essere definito come object generico
 	private String convTo;
+	private FcsRequestLane lane = FcsRequestLane.NORMAL; // corsia di priorita' della richiesta
+	private int attempts = 0; // numero di tentativi di elaborazione effettuati
+	private String failedFcsHost = null; // host FCS (host:port) dell'ultimo tentativo fallito
+	private String routingKey = null; // chiave di instradamento verso l'host FCS (selezione affinity)
+	private long deadline = 0; // istante (in ms) oltre il quale la richiesta non deve piu' essere elaborata (0 = nessuna scadenza)
+	private int workTimeout = 0; // tempo massimo (in ms) di elaborazione sull'host FCS (0 = fcs.work.timeout)
+	private volatile boolean cancelled = false; // richiesta annullata (vedi Fca.cancelRequest)
+	private long enqueueTime = 0; // istante (System.nanoTime()) dell'ultimo accodamento (metriche di attesa sulla coda)
+	private List<FcsFileInfo> files = null; // metadati dei file del documento (null = non disponibili, nessuna verifica preventiva)
 
 	/**
 	 * Eventuali parametri aggiuntivi da inviare all'host FCS per il completamento delle attivita' di indicizzazione
@@ -39,9 +51,162 @@ public class FcsRequest {
 	public void setAdditionalParameters(String additionalParameters) {
 		this.additionalParameters = additionalParameters;
 	}
+
+	/**
+	 * Ritorna la chiave di instradamento della richiesta (es. archivio o tenant del documento): con selezione affinity le richieste con la stessa
+	 * chiave vengono inviate allo stesso host FCS. Se non valorizzata viene utilizzata la chiave definita da fcs.affinity.key.
+	 * @return
+	 */
+	public String getRoutingKey() {
+		return routingKey;
+	}
+
+	public void setRoutingKey(String routingKey) {
+		this.routingKey = routingKey;
+	}
+
+	/**
+	 * Ritorna l'istante (in ms, epoch) oltre il quale la richiesta non deve piu' essere elaborata (0 = nessuna scadenza). Le richieste scadute
+	 * in coda vengono scartate prima dell'invio ad un host FCS, quelle in elaborazione vengono interrotte alla scadenza.
+	 * @return
+	 */
+	public long getDeadline() {
+		return deadline;
+	}
+
+	public void setDeadline(long deadline) {
+		this.deadline = Math.max(0, deadline);
+	}
+
+	/**
+	 * Imposta la scadenza della richiesta a partire dall'istante corrente
+	 * @param timeout Tempo (in ms) a disposizione per il completamento della richiesta
+	 */
+	public void setDeadlineAfter(long timeout) {
+		this.deadline = System.currentTimeMillis() + Math.max(0, timeout);
+	}
+
+	/**
+	 * Ritorna true se la scadenza della richiesta risulta superata
+	 * @return
+	 */
+	public boolean isExpired() {
+		return deadline > 0 && System.currentTimeMillis() >= deadline;
+	}
+
+	/**
+	 * Ritorna il tempo (in ms) rimanente prima della scadenza della richiesta (Long.MAX_VALUE se la richiesta non ha scadenza)
+	 * @return
+	 */
+	public long getRemainingTime() {
+		return (deadline > 0) ? Math.max(0, deadline - System.currentTimeMillis()) : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Ritorna il tempo massimo (in ms) di elaborazione della richiesta sull'host FCS (0 = timeout definito da fcs.work.timeout)
+	 * @return
+	 */
+	public int getWorkTimeout() {
+		return workTimeout;
+	}
+
+	public void setWorkTimeout(int workTimeout) {
+		this.workTimeout = Math.max(0, workTimeout);
+	}
+
+	/**
+	 * Ritorna true se la richiesta e' stata annullata
+	 * @return
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Annullamento della richiesta (da utilizzare tramite Fca.cancelRequest, che interrompe anche l'eventuale elaborazione in corso)
+	 */
+	public void cancel() {
+		this.cancelled = true;
+	}
+
+	/**
+	 * Ritorna l'istante (System.nanoTime()) dell'ultimo inserimento della richiesta nella coda condivisa (0 se non accodata)
+	 * @return
+	 */
+	public long getEnqueueTime() {
+		return enqueueTime;
+	}
+
+	public void setEnqueueTime(long enqueueTime) {
+		this.enqueueTime = enqueueTime;
+	}
+
+	/**
+	 * Ritorna i metadati dei file del documento (null se non forniti dall'implementazione di FCA)
+	 * @return
+	 */
+	public List<FcsFileInfo> getFiles() {
+		return files;
+	}
+
+	/**
+	 * Imposta i metadati dei file del documento, utilizzati per la verifica preventiva delle regole di indicizzazione e conversione
+	 * (fca.prefilter.enabled). Una lista vuota indica un documento privo di file.
+	 * @param files
+	 */
+	public void setFiles(List<FcsFileInfo> files) {
+		this.files = files;
+	}
+
+	/**
+	 * Aggiunge i metadati di un file del documento (vedi {@link #setFiles(List)})
+	 * @param fileName Nome del file
+	 * @param size Dimensione del file in bytes (negativa se non nota)
+	 */
+	public void addFile(String fileName, long size) {
+		if (files == null)
+			files = new ArrayList<FcsFileInfo>();
+		files.add(new FcsFileInfo(fileName, size));
+	}
+
+	public FcsRequestLane getLane() {
+		return lane;
+	}
+
+	public void setLane(FcsRequestLane lane) {
+		this.lane = (lane != null) ? lane : FcsRequestLane.NORMAL;
+	}
 	
+	/**
+	 * Ritorna il numero di tentativi di elaborazione della richiesta (invii ad un host FCS)
+	 * @return
+	 */
+	public int getAttempts() {
+		return attempts;
+	}
+
+	/**
+	 * Incrementa di 1 il numero di tentativi di elaborazione della richiesta
+	 * @return Numero del tentativo corrente
+	 */
+	public int incrementAttempts() {
+		return ++attempts;
+	}
+
+	/**
+	 * Ritorna l'host FCS (host:port) sul quale e' fallito l'ultimo tentativo di elaborazione (null se non sono presenti tentativi falliti)
+	 * @return
+	 */
+	public String getFailedFcsHost() {
+		return failedFcsHost;
+	}
+
+	public void setFailedFcsHost(String failedFcsHost) {
+		this.failedFcsHost = failedFcsHost;
+	}
+
 	@Override
 	public String toString() {
-		return "[ID = " + docId + ", convTo = " + convTo + "]";
+		return "[ID = " + docId + ", convTo = " + convTo + ", lane = " + lane + "]";
 	}
 }
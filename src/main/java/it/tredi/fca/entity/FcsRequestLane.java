@@ -0,0 +1,13 @@
+package it.tredi.fca.entity;
+
+/**
+ * Corsie di priorita' delle richieste di indicizzazione/conversione. Le richieste vengono prelevate dalla coda condivisa in base ai pesi
+ * configurati per le corsie (fca.queue.lane.weights): le elaborazioni massive non bloccano le richieste interattive.
+ */
+public enum FcsRequestLane {
+
+	INTERACTIVE, // richieste interattive (es. conversione richiesta da un utente)
+	NORMAL, // richieste ordinarie (default)
+	BULK // elaborazioni massive (es. reindicizzazione di un archivio)
+	
+}
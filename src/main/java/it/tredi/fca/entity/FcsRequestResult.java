@@ -0,0 +1,97 @@
+package it.tredi.fca.entity;
+
+/**
+ * Esito dell'elaborazione di una richiesta di indicizzazione/conversione da parte di un host FCS
+ */
+public class FcsRequestResult {
+
+	private final FcsRequest request;
+	private final String fcsHost; // host FCS che ha elaborato la richiesta (host:port)
+	private final long startTime;
+	private final long duration;
+	private final int attempt;
+	private final boolean success;
+	private final Throwable cause;
+	private boolean retryScheduled = false; // nuovo tentativo pianificato (esito non definitivo)
+
+	/**
+	 * Costruttore
+	 * @param request Richiesta elaborata
+	 * @param fcsHost Host FCS che ha elaborato la richiesta (host:port), null se la richiesta non e' stata inviata ad alcun host
+	 * @param startTime Istante di inizio dell'elaborazione
+	 * @param duration Durata (in ms) dell'elaborazione
+	 * @param attempt Numero del tentativo di elaborazione (a partire da 1)
+	 * @param success true se la richiesta e' stata completata da FCS
+	 * @param cause Causa del fallimento (null in caso di richiesta completata)
+	 */
+	public FcsRequestResult(FcsRequest request, String fcsHost, long startTime, long duration, int attempt, boolean success, Throwable cause) {
+		this.request = request;
+		this.fcsHost = fcsHost;
+		this.startTime = startTime;
+		this.duration = duration;
+		this.attempt = attempt;
+		this.success = success;
+		this.cause = cause;
+	}
+
+	public FcsRequest getRequest() {
+		return request;
+	}
+
+	public String getDocId() {
+		return request.getDocId();
+	}
+
+	public String getFcsHost() {
+		return fcsHost;
+	}
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public long getDuration() {
+		return duration;
+	}
+
+	public int getAttempt() {
+		return attempt;
+	}
+
+	public boolean isSuccess() {
+		return success;
+	}
+
+	/**
+	 * Ritorna true se la richiesta e' stata completata senza invio agli host FCS (documento privo di file da indicizzare o convertire, vedi
+	 * fca.prefilter.enabled). In questo caso nessun host FCS ha aggiornato il documento: l'implementazione di FCA deve registrare il
+	 * completamento sulla sorgente dati, altrimenti il documento verrebbe nuovamente caricato ad ogni ciclo.
+	 * @return
+	 */
+	public boolean isSkipped() {
+		return success && fcsHost == null;
+	}
+
+	public Throwable getCause() {
+		return cause;
+	}
+
+	/**
+	 * Ritorna true se per la richiesta fallita e' stato pianificato un nuovo tentativo di elaborazione (fcs.retry.maxAttempts): l'esito non e'
+	 * definitivo e il documento resta fra le richieste in elaborazione. Impostato da FCA prima della notifica dell'esito.
+	 * @return
+	 */
+	public boolean isRetryScheduled() {
+		return retryScheduled;
+	}
+
+	public void setRetryScheduled(boolean retryScheduled) {
+		this.retryScheduled = retryScheduled;
+	}
+
+	@Override
+	public String toString() {
+		return "[ID = " + getDocId() + ", host = " + fcsHost + ", success = " + success + ", duration = " + duration + ", attempt = " + attempt
+				+ (retryScheduled ? ", retry scheduled" : "") + (cause != null ? ", cause = " + cause.getMessage() : "") + "]";
+	}
+}
@@ -0,0 +1,327 @@
+package it.tredi.fca.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.tredi.fca.Fca;
+import it.tredi.fca.FcaConfig;
+import it.tredi.fca.FcsHost;
+import it.tredi.fca.InProgressRequests;
+
+/**
+ * Registro delle metriche della pipeline di smistamento delle richieste (caricamento, coda condivisa, selezione dell'host, dialogo con FCS).
+ * Contatori e istogrammi sono lock-free (vedi {@link LatencyHistogram}), quindi la registrazione non rallenta gli invoker. Le metriche globali
+ * e quelle dei singoli host FCS (vedi {@link FcsHost#getMetrics()}) vengono esposte via JMX (fca.metrics.jmx) e tramite un exporter periodico
+ * (vedi {@link FcaMetricsExporter}).
+ */
+public class FcaMetrics implements FcaMetricsMXBean {
+
+	private static final Logger logger = LogManager.getLogger(Fca.class.getName());
+
+	private static final String JMX_DOMAIN = "it.tredi.fca";
+
+	private final LongAdder submitted = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder retried = new LongAdder();
+	private final LongAdder discarded = new LongAdder();
+	private final LongAdder skipped = new LongAdder();
+	private final LongAdder polls = new LongAdder();
+
+	private final LatencyHistogram dispatchWait = new LatencyHistogram();
+	private final LatencyHistogram selectionWait = new LatencyHistogram();
+	private final LatencyHistogram handshake = new LatencyHistogram();
+	private final LatencyHistogram conversion = new LatencyHistogram();
+	private final LatencyHistogram pollDuration = new LatencyHistogram();
+
+	private volatile IntSupplier queueDepth = () -> 0;
+
+	// MBean registrati per gli host FCS (host:port -> nome JMX)
+	private final Map<String, ObjectName> hostMBeans = new HashMap<String, ObjectName>();
+	private ObjectName mbeanName = null;
+
+	// Singleton
+	private static volatile FcaMetrics instance = null;
+
+	/**
+	 * Costruttore privato
+	 */
+	private FcaMetrics() {
+	}
+
+	/**
+	 * Ritorna il registro delle metriche di FCA
+	 * @return
+	 */
+	public static FcaMetrics getInstance() {
+		if (instance == null) {
+			synchronized (FcaMetrics.class) {
+				if (instance == null) {
+					if (logger.isInfoEnabled())
+						logger.info("FcaMetrics instance is null... create one");
+					instance = new FcaMetrics();
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Imposta la sorgente della profondita' della coda condivisa
+	 * @param queueDepth
+	 */
+	public void setQueueDepth(IntSupplier queueDepth) {
+		this.queueDepth = (queueDepth != null) ? queueDepth : () -> 0;
+	}
+
+	public void onRequestSubmitted() {
+		submitted.increment();
+	}
+
+	/**
+	 * Registrazione dell'esito di una elaborazione
+	 * @param fcsHost Host FCS che ha elaborato la richiesta (null se la richiesta non e' stata inviata)
+	 * @param success
+	 */
+	public void onRequestProcessed(FcsHost fcsHost, boolean success) {
+		if (success)
+			completed.increment();
+		else
+			failed.increment();
+		if (fcsHost != null)
+			fcsHost.getMetrics().recordResult(success);
+	}
+
+	public void onRequestRetried() {
+		retried.increment();
+	}
+
+	public void onRequestDiscarded() {
+		discarded.increment();
+	}
+
+	public void onRequestSkipped() {
+		skipped.increment();
+	}
+
+	/**
+	 * Registrazione dell'attesa di una richiesta sulla coda condivisa
+	 * @param enqueueTime Istante di accodamento (System.nanoTime(), 0 se non disponibile)
+	 */
+	public void recordDispatchWait(long enqueueTime) {
+		if (enqueueTime != 0)
+			dispatchWait.recordSince(enqueueTime);
+	}
+
+	/**
+	 * Registrazione dell'attesa di un host FCS disponibile
+	 * @param startNanos Istante di inizio dell'attesa (System.nanoTime())
+	 */
+	public void recordSelectionWait(long startNanos) {
+		selectionWait.recordSince(startNanos);
+	}
+
+	/**
+	 * Registrazione della durata dell'handshake con un host FCS
+	 * @param fcsHost
+	 * @param startNanos Istante di inizio dell'handshake (System.nanoTime())
+	 */
+	public void recordHandshake(FcsHost fcsHost, long startNanos) {
+		long micros = (System.nanoTime() - startNanos) / 1000;
+		handshake.record(micros);
+		fcsHost.getMetrics().getHandshakeHistogram().record(micros);
+	}
+
+	/**
+	 * Registrazione della durata di elaborazione di una richiesta su un host FCS
+	 * @param fcsHost
+	 * @param startNanos Istante di invio dei parametri della richiesta (System.nanoTime())
+	 */
+	public void recordConversion(FcsHost fcsHost, long startNanos) {
+		long micros = (System.nanoTime() - startNanos) / 1000;
+		conversion.record(micros);
+		fcsHost.getMetrics().getConversionHistogram().record(micros);
+	}
+
+	/**
+	 * Registrazione della durata di un ciclo di caricamento delle richieste pendenti
+	 * @param startNanos Istante di inizio del caricamento (System.nanoTime())
+	 */
+	public void recordPoll(long startNanos) {
+		polls.increment();
+		pollDuration.recordSince(startNanos);
+	}
+
+	/**
+	 * Ritorna gli host FCS del pool corrente
+	 * @return
+	 */
+	public List<FcsHost> getFcsHosts() {
+		try {
+			return FcaConfig.getInstance().getFcsPool();
+		}
+		catch (Exception e) {
+			return Collections.emptyList();
+		}
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return queueDepth.getAsInt();
+	}
+
+	@Override
+	public int getInProgressRequests() {
+		return InProgressRequests.getInstance().countRequests();
+	}
+
+	@Override
+	public int getInFlightRequests() {
+		int inFlight = 0;
+		for (FcsHost fcsHost : getFcsHosts())
+			inFlight += fcsHost.getQueueInProgressSize();
+		return inFlight;
+	}
+
+	@Override
+	public int getTotalSlots() {
+		int slots = 0;
+		for (FcsHost fcsHost : getFcsHosts())
+			slots += fcsHost.getQueueMaxSize();
+		return slots;
+	}
+
+	@Override
+	public long getSubmittedRequests() {
+		return submitted.sum();
+	}
+
+	@Override
+	public long getCompletedRequests() {
+		return completed.sum();
+	}
+
+	@Override
+	public long getFailedRequests() {
+		return failed.sum();
+	}
+
+	@Override
+	public long getRetriedRequests() {
+		return retried.sum();
+	}
+
+	@Override
+	public long getDiscardedRequests() {
+		return discarded.sum();
+	}
+
+	@Override
+	public long getSkippedRequests() {
+		return skipped.sum();
+	}
+
+	@Override
+	public double getSuccessRate() {
+		long ok = completed.sum();
+		long total = ok + failed.sum();
+		return (total > 0) ? 100.0 * ok / total : 100;
+	}
+
+	@Override
+	public long getPolls() {
+		return polls.sum();
+	}
+
+	@Override
+	public LatencySnapshot getDispatchWait() {
+		return dispatchWait.snapshot();
+	}
+
+	@Override
+	public LatencySnapshot getSelectionWait() {
+		return selectionWait.snapshot();
+	}
+
+	@Override
+	public LatencySnapshot getHandshakeLatency() {
+		return handshake.snapshot();
+	}
+
+	@Override
+	public LatencySnapshot getConversionLatency() {
+		return conversion.snapshot();
+	}
+
+	@Override
+	public LatencySnapshot getPollDuration() {
+		return pollDuration.snapshot();
+	}
+
+	/**
+	 * Registrazione (o aggiornamento, es. ricaricamento della configurazione) degli MBean JMX delle metriche globali e degli host FCS del pool
+	 * corrente. Gli MBean degli host rimossi dal pool vengono deregistrati.
+	 */
+	public synchronized void registerMBeans() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if (mbeanName == null) {
+				ObjectName name = new ObjectName(JMX_DOMAIN + ":type=FcaMetrics");
+				if (!server.isRegistered(name))
+					server.registerMBean(this, name);
+				mbeanName = name;
+			}
+
+			Map<String, ObjectName> previous = new HashMap<String, ObjectName>(hostMBeans);
+			for (FcsHost fcsHost : getFcsHosts()) {
+				String address = fcsHost.getHost() + ":" + fcsHost.getPort();
+				if (previous.remove(address) == null) {
+					ObjectName name = new ObjectName(JMX_DOMAIN + ":type=FcsHost,name=" + ObjectName.quote(address));
+					if (server.isRegistered(name))
+						server.unregisterMBean(name);
+					server.registerMBean(fcsHost.getMetrics(), name);
+					hostMBeans.put(address, name);
+				}
+			}
+			for (Map.Entry<String, ObjectName> removed : previous.entrySet()) {
+				server.unregisterMBean(removed.getValue());
+				hostMBeans.remove(removed.getKey());
+			}
+		}
+		catch (Exception e) {
+			logger.error("FcaMetrics: unable to register JMX MBeans... " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Deregistrazione di tutti gli MBean JMX (arresto del servizio)
+	 */
+	public synchronized void unregisterMBeans() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			for (ObjectName name : hostMBeans.values()) {
+				if (server.isRegistered(name))
+					server.unregisterMBean(name);
+			}
+			hostMBeans.clear();
+			if (mbeanName != null && server.isRegistered(mbeanName))
+				server.unregisterMBean(mbeanName);
+			mbeanName = null;
+		}
+		catch (Exception e) {
+			logger.warn("FcaMetrics: unable to unregister JMX MBeans... " + e.getMessage());
+		}
+	}
+
+}
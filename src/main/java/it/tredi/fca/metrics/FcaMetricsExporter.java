@@ -0,0 +1,21 @@
+package it.tredi.fca.metrics;
+
+/**
+ * Esportazione periodica (ogni fca.metrics.interval ms) delle metriche di FCA verso un sistema di monitoraggio. L'implementazione utilizzata puo'
+ * essere sostituita ridefinendo Fca.createMetricsExporter() (di default {@link LoggingMetricsExporter}).
+ */
+public interface FcaMetricsExporter {
+
+	/**
+	 * Esportazione delle metriche correnti
+	 * @param metrics Registro delle metriche di FCA (metriche globali e per host FCS)
+	 */
+	public void export(FcaMetrics metrics);
+
+	/**
+	 * Chiusura dell'exporter (arresto del servizio). Di default non viene eseguita alcuna azione.
+	 */
+	public default void close() {
+	}
+
+}
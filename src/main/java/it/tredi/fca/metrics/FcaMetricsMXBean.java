@@ -0,0 +1,54 @@
+package it.tredi.fca.metrics;
+
+/**
+ * Metriche globali della pipeline di smistamento delle richieste esposte via JMX (it.tredi.fca:type=FcaMetrics). Le latenze sono espresse in
+ * microsecondi e cumulative dall'avvio del servizio.
+ */
+public interface FcaMetricsMXBean {
+
+	/** Richieste in attesa sulla coda condivisa */
+	public int getQueueDepth();
+
+	/** Richieste in elaborazione (accodate, inviate agli host FCS o in attesa di un nuovo tentativo) */
+	public int getInProgressRequests();
+
+	/** Slot di elaborazione occupati sugli host FCS */
+	public int getInFlightRequests();
+
+	/** Slot di elaborazione configurati sugli host FCS */
+	public int getTotalSlots();
+
+	public long getSubmittedRequests();
+
+	public long getCompletedRequests();
+
+	public long getFailedRequests();
+
+	public long getRetriedRequests();
+
+	public long getDiscardedRequests();
+
+	/** Richieste completate senza invio agli host FCS (verifica preventiva, fca.prefilter.enabled) */
+	public long getSkippedRequests();
+
+	/** Percentuale di richieste completate sul totale delle richieste elaborate */
+	public double getSuccessRate();
+
+	public long getPolls();
+
+	/** Attesa delle richieste sulla coda condivisa (dall'accodamento al prelievo da parte di un invoker) */
+	public LatencySnapshot getDispatchWait();
+
+	/** Attesa di un host FCS disponibile (slot libero) per la richiesta prelevata */
+	public LatencySnapshot getSelectionWait();
+
+	/** Handshake con l'host FCS (dall'invio della richiesta di init alla conferma del comando) */
+	public LatencySnapshot getHandshakeLatency();
+
+	/** Elaborazione della richiesta sull'host FCS (dall'invio dei parametri alla risposta) */
+	public LatencySnapshot getConversionLatency();
+
+	/** Durata dei cicli di caricamento delle richieste pendenti */
+	public LatencySnapshot getPollDuration();
+
+}
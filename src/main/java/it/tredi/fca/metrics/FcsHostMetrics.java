@@ -0,0 +1,122 @@
+package it.tredi.fca.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import it.tredi.fca.FcsHost;
+
+/**
+ * Metriche di un host FCS: contatori degli esiti e istogrammi delle latenze di handshake, elaborazione e verifica di stato
+ */
+public class FcsHostMetrics implements FcsHostMetricsMXBean {
+
+	private final FcsHost fcsHost;
+
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LatencyHistogram handshake = new LatencyHistogram();
+	private final LatencyHistogram conversion = new LatencyHistogram();
+	private final LatencyHistogram probe = new LatencyHistogram();
+
+	public FcsHostMetrics(FcsHost fcsHost) {
+		this.fcsHost = fcsHost;
+	}
+
+	/**
+	 * Registrazione dell'esito di una elaborazione sull'host
+	 * @param success
+	 */
+	public void recordResult(boolean success) {
+		if (success)
+			completed.increment();
+		else
+			failed.increment();
+	}
+
+	public LatencyHistogram getHandshakeHistogram() {
+		return handshake;
+	}
+
+	public LatencyHistogram getConversionHistogram() {
+		return conversion;
+	}
+
+	public LatencyHistogram getProbeHistogram() {
+		return probe;
+	}
+
+	@Override
+	public String getAddress() {
+		return fcsHost.getHost() + ":" + fcsHost.getPort();
+	}
+
+	@Override
+	public String getStatus() {
+		return String.valueOf(fcsHost.getStatus());
+	}
+
+	@Override
+	public String getCircuitState() {
+		return String.valueOf(fcsHost.getCircuitBreaker().getState());
+	}
+
+	@Override
+	public String getConfigVersion() {
+		return fcsHost.getConfigVersion();
+	}
+
+	@Override
+	public int getInFlightRequests() {
+		return fcsHost.getQueueInProgressSize();
+	}
+
+	@Override
+	public int getQueueMaxSize() {
+		return fcsHost.getQueueMaxSize();
+	}
+
+	@Override
+	public double getUtilization() {
+		int max = fcsHost.getQueueMaxSize();
+		return (max > 0) ? 100.0 * fcsHost.getQueueInProgressSize() / max : 0;
+	}
+
+	@Override
+	public long getCompletedRequests() {
+		return completed.sum();
+	}
+
+	@Override
+	public long getFailedRequests() {
+		return failed.sum();
+	}
+
+	@Override
+	public double getSuccessRate() {
+		long ok = completed.sum();
+		long total = ok + failed.sum();
+		return (total > 0) ? 100.0 * ok / total : 100;
+	}
+
+	@Override
+	public LatencySnapshot getHandshakeLatency() {
+		return handshake.snapshot();
+	}
+
+	@Override
+	public LatencySnapshot getConversionLatency() {
+		return conversion.snapshot();
+	}
+
+	@Override
+	public LatencySnapshot getProbeLatency() {
+		return probe.snapshot();
+	}
+
+	@Override
+	public String toString() {
+		return getAddress() + " [status: " + getStatus() + ", circuit: " + getCircuitState() + ", in-flight: " + getInFlightRequests() + "/" + getQueueMaxSize()
+				+ ", completed: " + getCompletedRequests() + ", failed: " + getFailedRequests() + ", handshake: " + handshake.snapshot()
+				+ ", conversion: " + conversion.snapshot() + "]";
+	}
+
+}
@@ -0,0 +1,39 @@
+package it.tredi.fca.metrics;
+
+/**
+ * Metriche di un host FCS esposte via JMX (it.tredi.fca:type=FcsHost,name=host:port). Le latenze sono espresse in microsecondi.
+ */
+public interface FcsHostMetricsMXBean {
+
+	public String getAddress();
+
+	public String getStatus();
+
+	public String getCircuitState();
+
+	/** Versione dei parametri di attivazione inviati all'host (vedi FcaConfig.getFcsConfigVersion()) */
+	public String getConfigVersion();
+
+	/** Richieste in elaborazione sull'host */
+	public int getInFlightRequests();
+
+	/** Numero massimo di richieste concorrenti sull'host (fcs.pool) */
+	public int getQueueMaxSize();
+
+	/** Percentuale di slot occupati sull'host */
+	public double getUtilization();
+
+	public long getCompletedRequests();
+
+	public long getFailedRequests();
+
+	public double getSuccessRate();
+
+	public LatencySnapshot getHandshakeLatency();
+
+	public LatencySnapshot getConversionLatency();
+
+	/** Verifica di stato dell'host (FcsHealthMonitor) */
+	public LatencySnapshot getProbeLatency();
+
+}
@@ -0,0 +1,99 @@
+package it.tredi.fca.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Istogramma (lock-free) delle latenze con bucket log-lineari: i valori inferiori a {@value #SUB_BUCKETS} sono registrati in modo esatto, i valori
+ * superiori su {@value #SUB_BUCKETS} bucket per ogni potenza di 2 (errore relativo massimo di circa il 3%, come un istogramma HDR con 2 cifre
+ * significative). La registrazione richiede solo incrementi atomici e non alloca memoria.
+ * I valori sono espressi in microsecondi.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_VALUE_BITS = 43; // valori limitati a 2^43 microsecondi (circa 100 giorni)
+	private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS * (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1));
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Registrazione di un valore
+	 * @param value Latenza (in microsecondi). I valori negativi vengono registrati come 0.
+	 */
+	public void record(long value) {
+		long v = Math.min(Math.max(0, value), MAX_VALUE);
+		counts.incrementAndGet(indexOf(v));
+		count.increment();
+		sum.add(v);
+		max.accumulate(v);
+	}
+
+	/**
+	 * Registrazione di una durata misurata tramite System.nanoTime()
+	 * @param startNanos Istante iniziale (System.nanoTime())
+	 */
+	public void recordSince(long startNanos) {
+		record((System.nanoTime() - startNanos) / 1000);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Ritorna il valore (in microsecondi) al di sotto del quale ricade la percentuale di campioni indicata (limite superiore del bucket)
+	 * @param percentile Percentile (da 0 a 100)
+	 * @return
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		long[] snapshot = new long[counts.length()];
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0)
+			return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= rank)
+				return Math.min(upperBoundOf(i), max.get());
+		}
+		return max.get();
+	}
+
+	/**
+	 * Ritorna una fotografia (count, media, percentili e massimo) dell'istogramma
+	 * @return
+	 */
+	public LatencySnapshot snapshot() {
+		long n = count.sum();
+		return new LatencySnapshot(n, (n > 0) ? sum.sum() / n : 0, getPercentile(50), getPercentile(90), getPercentile(99), max.get());
+	}
+
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		int sub = (int) (value >>> shift) - SUB_BUCKETS;
+		return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+	}
+
+	private static long upperBoundOf(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+		int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+	}
+
+}
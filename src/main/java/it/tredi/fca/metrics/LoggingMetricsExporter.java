@@ -0,0 +1,30 @@
+package it.tredi.fca.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.tredi.fca.Fca;
+import it.tredi.fca.FcsHost;
+
+/**
+ * Esportazione delle metriche di FCA sul log applicativo (livello INFO): una riga per le metriche globali e una riga per ogni host FCS
+ */
+public class LoggingMetricsExporter implements FcaMetricsExporter {
+
+	private static final Logger logger = LogManager.getLogger(Fca.class.getName());
+
+	@Override
+	public void export(FcaMetrics metrics) {
+		if (!logger.isInfoEnabled())
+			return;
+
+		logger.info("FcaMetrics: queue = " + metrics.getQueueDepth() + ", in-progress = " + metrics.getInProgressRequests() + ", in-flight = "
+				+ metrics.getInFlightRequests() + "/" + metrics.getTotalSlots() + ", completed = " + metrics.getCompletedRequests() + ", failed = "
+				+ metrics.getFailedRequests() + ", retried = " + metrics.getRetriedRequests() + ", discarded = " + metrics.getDiscardedRequests()
+				+ ", skipped = " + metrics.getSkippedRequests()				+ ", dispatchWait = " + metrics.getDispatchWait() + ", selectionWait = " + metrics.getSelectionWait() + ", handshake = "
+				+ metrics.getHandshakeLatency() + ", conversion = " + metrics.getConversionLatency() + ", poll = " + metrics.getPollDuration());
+		for (FcsHost fcsHost : metrics.getFcsHosts())
+			logger.info("FcaMetrics: host " + fcsHost.getMetrics());
+	}
+
+}
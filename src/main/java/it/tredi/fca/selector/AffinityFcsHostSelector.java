@@ -0,0 +1,233 @@
+package it.tredi.fca.selector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import it.tredi.fca.FcaConfig;
+import it.tredi.fca.FcsHost;
+import it.tredi.fca.FcsSelectionMode;
+import it.tredi.fca.entity.FcsRequest;
+
+/**
+ * Selezione di un host FCS tramite consistent hashing sulla chiave di instradamento della richiesta (vedi {@link FcsRequest#getRoutingKey()}):
+ * richieste con la stessa chiave vengono inviate allo stesso host, preservando le cache locali degli host FCS. Ogni host occupa
+ * fcs.affinity.virtualNodes posizioni (moltiplicate per il peso) sull'anello, calcolate a partire da host:port: aggiungendo o rimuovendo un host
+ * viene spostata solo la quota di chiavi corrispondente.
+ * <p>
+ * Se l'host preferito risulta saturo, non disponibile o escluso (es. host del tentativo fallito) la richiesta viene assegnata al successivo host
+ * dell'anello con almeno uno slot libero (carico limitato da queueMaxSize). L'anello viene calcolato una sola volta per il pool completo: gli
+ * host esclusi vengono saltati durante la scansione.
+ */
+public class AffinityFcsHostSelector implements FcsHostSelector {
+
+	// fallback per le richieste prive di chiave
+	private final QueueSizeFcsHostSelector fallback = new QueueSizeFcsHostSelector();
+
+	// anello calcolato per l'ultimo pool utilizzato
+	private volatile Ring ring = null;
+
+	@Override
+	public FcsSelectionMode getMode() {
+		return FcsSelectionMode.AFFINITY;
+	}
+
+	@Override
+	public FcsHost select(List<FcsHost> pool) {
+		return fallback.select(pool);
+	}
+
+	@Override
+	public FcsHost select(List<FcsHost> pool, FcsRequest fcsRequest) {
+		return select(pool, fcsRequest, null);
+	}
+
+	@Override
+	public FcsHost select(List<FcsHost> pool, FcsRequest fcsRequest, FcsHost excluded) {
+		String key = getRoutingKey(fcsRequest);
+		if (key == null || pool.isEmpty())
+			return fallback.select(pool, null, excluded);
+
+		Ring current = getRing(pool);
+		long hash = hash(key);
+
+		// scansione in senso orario dei nodi a partire dalla posizione della chiave (ogni host verificato una sola volta)
+		boolean[] visited = new boolean[current.hosts.length];
+		int remaining = current.hosts.length;
+		int start = current.indexOf(hash);
+		for (int i = 0; i < current.points.length && remaining > 0; i++) {
+			int owner = current.owners[(start + i) % current.points.length];
+			if (visited[owner])
+				continue;
+			visited[owner] = true;
+			remaining--;
+
+			FcsHost fcsHost = current.hosts[owner];
+			if (fcsHost != excluded && fcsHost.isSelectable() && fcsHost.tryIncrementQueueInProgressSize())
+				return fcsHost;
+		}
+		return null;
+	}
+
+	/**
+	 * La richiesta puo' essere elaborata sull'host indicato solo se la scansione dell'anello a partire dalla chiave di instradamento raggiunge
+	 * l'host prima di qualsiasi altro host selezionabile con slot liberi (host escluso saltato)
+	 */
+	@Override
+	public boolean accepts(List<FcsHost> pool, FcsHost fcsHost, FcsRequest fcsRequest, FcsHost excluded) {
+		String key = getRoutingKey(fcsRequest);
+		if (key == null || pool.isEmpty())
+			return true;
+
+		Ring current = getRing(pool);
+		boolean[] visited = new boolean[current.hosts.length];
+		int remaining = current.hosts.length;
+		int start = current.indexOf(hash(key));
+		for (int i = 0; i < current.points.length && remaining > 0; i++) {
+			int owner = current.owners[(start + i) % current.points.length];
+			if (visited[owner])
+				continue;
+			visited[owner] = true;
+			remaining--;
+
+			FcsHost candidate = current.hosts[owner];
+			if (candidate == fcsHost)
+				return candidate != excluded;
+			if (candidate != excluded && candidate.isSelectable() && !candidate.isFullQueue())
+				return false;
+		}
+		return false;
+	}
+
+	/**
+	 * Ritorna la chiave di instradamento della richiesta: chiave indicata sulla richiesta, parametri aggiuntivi (se fcs.affinity.key=parameters)
+	 * o identificativo del documento
+	 * @param fcsRequest
+	 * @return
+	 */
+	private static String getRoutingKey(FcsRequest fcsRequest) {
+		if (fcsRequest == null)
+			return null;
+		if (fcsRequest.getRoutingKey() != null && !fcsRequest.getRoutingKey().isEmpty())
+			return fcsRequest.getRoutingKey();
+		if (isKeyParameters() && !fcsRequest.getAdditionalParameters().isEmpty())
+			return fcsRequest.getAdditionalParameters();
+		return fcsRequest.getDocId();
+	}
+
+	/**
+	 * Ritorna l'anello per il pool indicato (ricalcolato in caso di variazione del pool)
+	 * @param pool
+	 * @return
+	 */
+	private Ring getRing(List<FcsHost> pool) {
+		Ring current = ring;
+		if (current == null || !current.matches(pool)) {
+			current = new Ring(pool, getVirtualNodes());
+			ring = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Hash a 64 bit (FNV-1a con finalizzazione murmur3) di una stringa
+	 * @param value
+	 * @return
+	 */
+	static long hash(String value) {
+		long h = 0xcbf29ce484222325L;
+		for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+			h ^= (b & 0xff);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private static boolean isKeyParameters() {
+		try {
+			return FcaConfig.getInstance().isFcsAffinityKeyParameters();
+		}
+		catch (Exception e) {
+			return false;
+		}
+	}
+
+	private static int getVirtualNodes() {
+		try {
+			return FcaConfig.getInstance().getFcsAffinityVirtualNodes();
+		}
+		catch (Exception e) {
+			return 100;
+		}
+	}
+
+	/**
+	 * Anello di consistent hashing: posizioni ordinate dei nodi virtuali con relativo host
+	 */
+	private static class Ring {
+
+		private final FcsHost[] hosts;
+		private final int[] weights;
+		private final long[] points;
+		private final int[] owners;
+
+		Ring(List<FcsHost> pool, int virtualNodes) {
+			this.hosts = pool.toArray(new FcsHost[pool.size()]);
+			this.weights = new int[hosts.length];
+			for (int i = 0; i < hosts.length; i++)
+				weights[i] = hosts[i].getWeight();
+
+			int total = 0;
+			for (int weight : weights)
+				total += virtualNodes * weight;
+
+			// posizione del nodo virtuale (bit piu' significativi) e host di appartenenza (bit meno significativi) su un unico long: ordinamento
+			// di un array di primitivi senza perdere l'associazione con l'host
+			int hostBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(hosts.length));
+			long hostMask = (1L << hostBits) - 1;
+			long[] nodes = new long[total];
+			int n = 0;
+			for (int i = 0; i < hosts.length; i++) {
+				String address = hosts[i].getHost() + ":" + hosts[i].getPort();
+				for (int v = 0; v < virtualNodes * weights[i]; v++)
+					nodes[n++] = (hash(address + "#" + v) & ~hostMask) | i;
+			}
+			Arrays.sort(nodes);
+
+			this.points = new long[total];
+			this.owners = new int[total];
+			for (int i = 0; i < total; i++) {
+				points[i] = nodes[i] & ~hostMask;
+				owners[i] = (int) (nodes[i] & hostMask);
+			}
+		}
+
+		/**
+		 * Indice del primo nodo con posizione maggiore o uguale all'hash indicato (circolare)
+		 * @param hash
+		 * @return
+		 */
+		int indexOf(long hash) {
+			int index = Arrays.binarySearch(points, hash);
+			if (index < 0)
+				index = -index - 1;
+			return (index >= points.length) ? 0 : index;
+		}
+
+		boolean matches(List<FcsHost> pool) {
+			if (pool.size() != hosts.length)
+				return false;
+			for (int i = 0; i < hosts.length; i++) {
+				if (pool.get(i) != hosts[i] || hosts[i].getWeight() != weights[i])
+					return false;
+			}
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,90 @@
+package it.tredi.fca.selector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import it.tredi.fca.FcsHost;
+import it.tredi.fca.FcsSelectionMode;
+import it.tredi.fca.entity.FcsRequest;
+
+/**
+ * Strategia di selezione di un host FCS dal pool. La selezione riserva (in modo atomico) uno slot di elaborazione sull'host restituito: lo slot
+ * deve essere rilasciato al completamento della richiesta tramite {@link FcsHost#setRequestCompleted(String)}.
+ * Le implementazioni devono essere thread-safe senza ricorrere a lock globali (invocate in concorrenza da tutti i thread di invoker).
+ */
+public interface FcsHostSelector {
+
+	/**
+	 * Ritorna la modalita' di selezione implementata
+	 * @return
+	 */
+	public FcsSelectionMode getMode();
+
+	/**
+	 * Selezione di un host FCS attivo (con circuito non aperto, vedi {@link FcsHost#isSelectable()}) e con almeno uno slot libero. In caso di selezione avvenuta, uno slot dell'host risulta gia' riservato.
+	 * @param pool Pool di host FCS
+	 * @return Host FCS selezionato, null se nessun host risulta disponibile
+	 */
+	public FcsHost select(List<FcsHost> pool);
+
+	/**
+	 * Selezione di un host FCS per la richiesta indicata. Di default la richiesta non influisce sulla selezione.
+	 * @param pool Pool di host FCS
+	 * @param fcsRequest Richiesta da elaborare (puo' essere null)
+	 * @return Host FCS selezionato, null se nessun host risulta disponibile
+	 */
+	public default FcsHost select(List<FcsHost> pool, FcsRequest fcsRequest) {
+		return select(pool);
+	}
+
+	/**
+	 * Selezione di un host FCS per la richiesta indicata escludendo un host del pool (es. host sul quale e' fallito il tentativo precedente).
+	 * Il pool resta invariato, in modo che le implementazioni con strutture di selezione calcolate per il pool (anello, sequenza pesata) non
+	 * debbano ricalcolarle: di default la selezione avviene su una copia del pool priva dell'host escluso.
+	 * @param pool Pool di host FCS
+	 * @param fcsRequest Richiesta da elaborare (puo' essere null)
+	 * @param excluded Host FCS da escludere (null per nessuna esclusione)
+	 * @return Host FCS selezionato, null se nessun host risulta disponibile
+	 */
+	public default FcsHost select(List<FcsHost> pool, FcsRequest fcsRequest, FcsHost excluded) {
+		if (excluded == null)
+			return select(pool, fcsRequest);
+		List<FcsHost> others = new ArrayList<FcsHost>(pool);
+		others.remove(excluded);
+		return select(others, fcsRequest);
+	}
+
+	/**
+	 * Verifica se la richiesta puo' essere elaborata sull'host indicato, gia' selezionato per un'altra richiesta (raggruppamento delle richieste
+	 * sulla stessa sessione, vedi fcs.batch.size). Lo slot dell'host non viene riservato. Di default la richiesta non vincola la selezione.
+	 * @param pool Pool di host FCS
+	 * @param fcsHost Host FCS gia' selezionato
+	 * @param fcsRequest Richiesta da elaborare
+	 * @param excluded Host FCS escluso dalla selezione per la richiesta (null per nessuna esclusione)
+	 * @return true se la selezione per la richiesta non indica un host differente
+	 */
+	public default boolean accepts(List<FcsHost> pool, FcsHost fcsHost, FcsRequest fcsRequest, FcsHost excluded) {
+		return true;
+	}
+
+	/**
+	 * Istanzia il selettore corrispondente alla modalita' di selezione indicata
+	 * @param mode
+	 * @return
+	 */
+	public static FcsHostSelector create(FcsSelectionMode mode) {
+		if (mode == FcsSelectionMode.ROUNDROBIN)
+			return new RoundRobinFcsHostSelector();
+		else if (mode == FcsSelectionMode.WEIGHTED_ROUNDROBIN)
+			return new WeightedRoundRobinFcsHostSelector();
+		else if (mode == FcsSelectionMode.LEAST_RESPONSE_TIME)
+			return new LeastResponseTimeFcsHostSelector();
+		else if (mode == FcsSelectionMode.POWER_OF_TWO)
+			return new PowerOfTwoFcsHostSelector();
+		else if (mode == FcsSelectionMode.AFFINITY)
+			return new AffinityFcsHostSelector();
+		else
+			return new QueueSizeFcsHostSelector();
+	}
+
+}
@@ -0,0 +1,53 @@
+package it.tredi.fca.selector;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.tredi.fca.FcsHost;
+import it.tredi.fca.FcsSelectionMode;
+
+/**
+ * Selezione dell'host FCS con il minor tempo di risposta stimato (vedi {@link FcsHost#getExpectedResponseTime()}): media mobile esponenziale dei
+ * tempi di risposta misurati dagli invoker moltiplicata per il numero di elaborazioni in corso. A parita' di coda gli host piu' veloci ricevono
+ * piu' richieste; gli host senza misurazioni vengono selezionati per primi. La prenotazione dello slot avviene tramite CAS sul contatore dell'host.
+ */
+public class LeastResponseTimeFcsHostSelector implements FcsHostSelector {
+
+	// punto di partenza della scansione (a parita' di stima gli host vengono alternati)
+	private final AtomicInteger cursor = new AtomicInteger(0);
+
+	@Override
+	public FcsSelectionMode getMode() {
+		return FcsSelectionMode.LEAST_RESPONSE_TIME;
+	}
+
+	@Override
+	public FcsHost select(List<FcsHost> pool) {
+		int size = pool.size();
+		if (size == 0)
+			return null;
+
+		while (true) {
+			int start = cursor.getAndIncrement();
+			FcsHost min = null;
+			double minResponseTime = 0;
+			for (int i = 0; i < size; i++) {
+				FcsHost fcsHost = pool.get(Math.floorMod(start + i, size));
+				if (!fcsHost.isFullQueue() && fcsHost.isSelectable()) {
+					double responseTime = fcsHost.getExpectedResponseTime();
+					if (min == null || responseTime < minResponseTime) {
+						min = fcsHost;
+						minResponseTime = responseTime;
+					}
+				}
+			}
+
+			if (min == null)
+				return null; // nessun host disponibile
+			if (min.tryIncrementQueueInProgressSize())
+				return min;
+			// host saturato da un altro thread... nuova selezione
+		}
+	}
+
+}
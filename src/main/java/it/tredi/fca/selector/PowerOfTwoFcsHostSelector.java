@@ -0,0 +1,59 @@
+package it.tredi.fca.selector;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import it.tredi.fca.FcsHost;
+import it.tredi.fca.FcsSelectionMode;
+
+/**
+ * Selezione di un host FCS tramite power of two choices: fra due host disponibili scelti a caso viene selezionato quello con il minor tempo di
+ * risposta stimato (vedi {@link FcsHost#getExpectedResponseTime()}). Rispetto alla scansione dell'intero pool evita che tutti gli invoker
+ * concorrenti scelgano lo stesso host sulla base di una stima non ancora aggiornata.
+ */
+public class PowerOfTwoFcsHostSelector implements FcsHostSelector {
+
+	@Override
+	public FcsSelectionMode getMode() {
+		return FcsSelectionMode.POWER_OF_TWO;
+	}
+
+	@Override
+	public FcsHost select(List<FcsHost> pool) {
+		int size = pool.size();
+		if (size == 0)
+			return null;
+
+		int[] candidates = new int[size];
+		while (true) {
+			// host disponibili e con almeno uno slot libero
+			int count = 0;
+			for (int i = 0; i < size; i++) {
+				FcsHost fcsHost = pool.get(i);
+				if (!fcsHost.isFullQueue() && fcsHost.isSelectable())
+					candidates[count++] = i;
+			}
+			if (count == 0)
+				return null; // nessun host disponibile
+
+			FcsHost selected;
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			if (count == 1)
+				selected = pool.get(candidates[0]);
+			else {
+				int first = random.nextInt(count);
+				int second = random.nextInt(count - 1);
+				if (second >= first)
+					second++;
+				FcsHost a = pool.get(candidates[first]);
+				FcsHost b = pool.get(candidates[second]);
+				selected = (b.getExpectedResponseTime() < a.getExpectedResponseTime()) ? b : a;
+			}
+
+			if (selected.tryIncrementQueueInProgressSize())
+				return selected;
+			// host saturato da un altro thread... nuova selezione
+		}
+	}
+
+}
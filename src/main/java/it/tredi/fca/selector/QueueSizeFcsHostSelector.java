@@ -0,0 +1,52 @@
+package it.tredi.fca.selector;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.tredi.fca.FcsHost;
+import it.tredi.fca.FcsSelectionMode;
+
+/**
+ * Selezione di un host FCS tramite analisi della coda delle richieste (viene assegnato il piu' scarico). La prenotazione dello slot avviene
+ * tramite CAS sul contatore dell'host: se nel frattempo l'host e' stato saturato da un altro thread la selezione viene ripetuta.
+ */
+public class QueueSizeFcsHostSelector implements FcsHostSelector {
+
+	// punto di partenza della scansione (a parita' di coda gli host vengono alternati)
+	private final AtomicInteger cursor = new AtomicInteger(0);
+
+	@Override
+	public FcsSelectionMode getMode() {
+		return FcsSelectionMode.QUEUE_SIZE;
+	}
+
+	@Override
+	public FcsHost select(List<FcsHost> pool) {
+		int size = pool.size();
+		if (size == 0)
+			return null;
+
+		while (true) {
+			int start = cursor.getAndIncrement();
+			FcsHost min = null;
+			int minInProgress = 0;
+			for (int i = 0; i < size; i++) {
+				FcsHost fcsHost = pool.get(Math.floorMod(start + i, size));
+				int inProgress = fcsHost.getQueueInProgressSize();
+				if (inProgress < fcsHost.getQueueMaxSize() && fcsHost.isSelectable()) {
+					if (min == null || inProgress < minInProgress) {
+						min = fcsHost;
+						minInProgress = inProgress;
+					}
+				}
+			}
+
+			if (min == null)
+				return null; // nessun host disponibile
+			if (min.tryIncrementQueueInProgressSize())
+				return min;
+			// host saturato da un altro thread... nuova selezione
+		}
+	}
+
+}
@@ -0,0 +1,36 @@
+package it.tredi.fca.selector;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.tredi.fca.FcsHost;
+import it.tredi.fca.FcsSelectionMode;
+
+/**
+ * Selezione di un host FCS tramite RoundRobin. Il cursore e' atomico: thread concorrenti partono da posizioni differenti del pool.
+ */
+public class RoundRobinFcsHostSelector implements FcsHostSelector {
+
+	private final AtomicInteger cursor = new AtomicInteger(0);
+
+	@Override
+	public FcsSelectionMode getMode() {
+		return FcsSelectionMode.ROUNDROBIN;
+	}
+
+	@Override
+	public FcsHost select(List<FcsHost> pool) {
+		int size = pool.size();
+		if (size == 0)
+			return null;
+
+		int start = cursor.getAndIncrement();
+		for (int i = 0; i < size; i++) {
+			FcsHost fcsHost = pool.get(Math.floorMod(start + i, size));
+			if (fcsHost.isSelectable() && fcsHost.tryIncrementQueueInProgressSize())
+				return fcsHost;
+		}
+		return null;
+	}
+
+}
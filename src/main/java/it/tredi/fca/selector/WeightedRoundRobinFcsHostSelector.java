@@ -0,0 +1,116 @@
+package it.tredi.fca.selector;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.tredi.fca.FcsHost;
+import it.tredi.fca.FcsSelectionMode;
+import it.tredi.fca.entity.FcsRequest;
+
+/**
+ * Selezione di un host FCS tramite weighted round robin: ogni host riceve una quota di richieste proporzionale al proprio peso (quarto campo di
+ * fcs.pool). La sequenza di selezione (smooth weighted round robin, host alternati e non raggruppati) viene calcolata una sola volta per il pool e
+ * percorsa tramite cursore atomico. Host non disponibili, saturi o esclusi (es. host del tentativo fallito) vengono saltati.
+ */
+public class WeightedRoundRobinFcsHostSelector implements FcsHostSelector {
+
+	private final AtomicInteger cursor = new AtomicInteger(0);
+
+	// sequenza di selezione (indici sul pool) calcolata per l'ultimo pool utilizzato
+	private volatile Schedule schedule = null;
+
+	@Override
+	public FcsSelectionMode getMode() {
+		return FcsSelectionMode.WEIGHTED_ROUNDROBIN;
+	}
+
+	@Override
+	public FcsHost select(List<FcsHost> pool) {
+		return selectExcluding(pool, null);
+	}
+
+	@Override
+	public FcsHost select(List<FcsHost> pool, FcsRequest fcsRequest, FcsHost excluded) {
+		return selectExcluding(pool, excluded);
+	}
+
+	/**
+	 * Selezione tramite la sequenza calcolata per il pool completo, saltando l'host escluso
+	 * @param pool
+	 * @param excluded Host FCS da escludere (null per nessuna esclusione)
+	 * @return
+	 */
+	private FcsHost selectExcluding(List<FcsHost> pool, FcsHost excluded) {
+		int size = pool.size();
+		if (size == 0)
+			return null;
+
+		int[] sequence = getSequence(pool);
+		int start = cursor.getAndIncrement();
+		for (int i = 0; i < sequence.length; i++) {
+			FcsHost fcsHost = pool.get(sequence[Math.floorMod(start + i, sequence.length)]);
+			if (fcsHost != excluded && fcsHost.isSelectable() && fcsHost.tryIncrementQueueInProgressSize())
+				return fcsHost;
+		}
+		return null;
+	}
+
+	/**
+	 * Ritorna la sequenza di selezione per il pool indicato (ricalcolata in caso di variazione del pool)
+	 * @param pool
+	 * @return
+	 */
+	private int[] getSequence(List<FcsHost> pool) {
+		Schedule current = schedule;
+		if (current == null || !current.matches(pool)) {
+			current = new Schedule(pool);
+			schedule = current;
+		}
+		return current.sequence;
+	}
+
+	/**
+	 * Sequenza di selezione smooth weighted round robin (lunghezza pari alla somma dei pesi)
+	 */
+	private static class Schedule {
+
+		private final FcsHost[] hosts;
+		private final int[] weights;
+		private final int[] sequence;
+
+		Schedule(List<FcsHost> pool) {
+			this.hosts = pool.toArray(new FcsHost[pool.size()]);
+			this.weights = new int[hosts.length];
+			for (int i = 0; i < hosts.length; i++)
+				weights[i] = hosts[i].getWeight();
+
+			int totalWeight = 0;
+			for (int weight : weights)
+				totalWeight += weight;
+
+			this.sequence = new int[totalWeight];
+			int[] currentWeights = new int[hosts.length];
+			for (int n = 0; n < totalWeight; n++) {
+				int selected = 0;
+				for (int i = 0; i < hosts.length; i++) {
+					currentWeights[i] += weights[i];
+					if (currentWeights[i] > currentWeights[selected])
+						selected = i;
+				}
+				currentWeights[selected] -= totalWeight;
+				sequence[n] = selected;
+			}
+		}
+
+		boolean matches(List<FcsHost> pool) {
+			if (pool.size() != hosts.length)
+				return false;
+			for (int i = 0; i < hosts.length; i++) {
+				if (pool.get(i) != hosts[i] || hosts[i].getWeight() != weights[i])
+					return false;
+			}
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+package it.tredi.fca;
+
+import junit.framework.TestCase;
+
+/**
+ * Test della pianificazione adattiva dei cicli di caricamento: backoff esponenziale sui caricamenti a vuoto, reset su wakeUp e caricamento
+ * anticipato quando si libera spazio sulla coda condivisa
+ */
+public class BackoffPollSchedulerTest extends TestCase {
+
+	private static final long MIN_DELAY = 40;
+	private static final long MAX_DELAY = 320;
+	private static final long LONG_MAX_DELAY = 10000;
+
+	// tolleranza sui tempi di attesa misurati
+	private static final long TOLERANCE = 150;
+
+	public void testBackoffDoublingOnEmptyPolls() throws Exception {
+		BackoffPollScheduler scheduler = new BackoffPollScheduler(MIN_DELAY, MAX_DELAY);
+
+		long[] expected = { 40, 80, 160, 320, 320 };
+		for (long delay : expected) {
+			scheduler.onPollCompleted(0, 0, 10);
+			assertWait(scheduler, delay);
+		}
+	}
+
+	public void testEnqueuedResetsBackoff() throws Exception {
+		BackoffPollScheduler scheduler = new BackoffPollScheduler(MIN_DELAY, MAX_DELAY);
+		for (int i = 0; i < 3; i++)
+			scheduler.onPollCompleted(0, 0, 10);
+
+		// richieste accodate senza riempire la coda
+		scheduler.onPollCompleted(5, 5, 10);
+		assertWait(scheduler, MIN_DELAY);
+		scheduler.onPollCompleted(0, 0, 10);
+		assertWait(scheduler, MIN_DELAY);
+	}
+
+	public void testWakeUpResetsBackoff() throws Exception {
+		BackoffPollScheduler scheduler = new BackoffPollScheduler(MIN_DELAY, LONG_MAX_DELAY);
+		for (int i = 0; i < 10; i++)
+			scheduler.onPollCompleted(0, 0, 10);
+		scheduler.onPollCompleted(0, 0, 10);
+
+		wakeUpAfter(scheduler, 50);
+		long elapsed = await(scheduler);
+		assertTrue("wakeUp ignored (" + elapsed + " ms)", elapsed < 50 + TOLERANCE * 2);
+
+		// backoff ripartito dall'attesa minima
+		scheduler.onPollCompleted(0, 0, 10);
+		assertWait(scheduler, MIN_DELAY);
+	}
+
+	public void testWakeUpBeforeAwait() throws Exception {
+		BackoffPollScheduler scheduler = new BackoffPollScheduler(MIN_DELAY, LONG_MAX_DELAY);
+		scheduler.onPollCompleted(10, 10, 10);
+		scheduler.wakeUp();
+
+		assertTrue(await(scheduler) < TOLERANCE);
+	}
+
+	public void testCapacityAvailableDuringWait() throws Exception {
+		BackoffPollScheduler scheduler = new BackoffPollScheduler(MIN_DELAY, LONG_MAX_DELAY);
+		scheduler.onPollCompleted(10, 10, 10);
+
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				sleep(50);
+				scheduler.onCapacityAvailable();
+			}
+		}).start();
+		long elapsed = await(scheduler);
+		assertTrue("capacity notification ignored (" + elapsed + " ms)", elapsed >= 40 && elapsed < 50 + TOLERANCE * 2);
+	}
+
+	public void testCapacityAvailableDuringPoll() throws Exception {
+		BackoffPollScheduler scheduler = new BackoffPollScheduler(MIN_DELAY, LONG_MAX_DELAY);
+
+		// spazio liberato prima della notifica di completamento del caricamento (coda riempita)
+		scheduler.onCapacityAvailable();
+		scheduler.onPollCompleted(10, 10, 10);
+		assertTrue(await(scheduler) < TOLERANCE);
+
+		// notifica consumata dal caricamento precedente
+		scheduler.onPollCompleted(10, 10, 10);
+		wakeUpAfter(scheduler, 200);
+		assertTrue(await(scheduler) >= 150);
+	}
+
+	public void testFullLaneWaitsForCapacity() throws Exception {
+		BackoffPollScheduler scheduler = new BackoffPollScheduler(MIN_DELAY, LONG_MAX_DELAY);
+
+		// nessuna richiesta accodata per corsia piena (richieste rinviate): nessun backoff, attesa di spazio libero
+		scheduler.onPollCompleted(5, 0, 0);
+		scheduler.onCapacityAvailable();
+		assertTrue(await(scheduler) < TOLERANCE);
+	}
+
+	public void testCapacityAvailableIgnoredWhenQueueNotFull() throws Exception {
+		BackoffPollScheduler scheduler = new BackoffPollScheduler(MAX_DELAY, MAX_DELAY);
+		scheduler.onPollCompleted(5, 5, 10);
+		scheduler.onCapacityAvailable();
+
+		assertWait(scheduler, MAX_DELAY);
+	}
+
+	public void testPollFailedWaitsMaxDelay() throws Exception {
+		BackoffPollScheduler scheduler = new BackoffPollScheduler(MIN_DELAY, MAX_DELAY);
+		scheduler.onPollFailed();
+		scheduler.onCapacityAvailable();
+
+		assertWait(scheduler, MAX_DELAY);
+	}
+
+	private static void assertWait(BackoffPollScheduler scheduler, long delay) throws InterruptedException {
+		long elapsed = await(scheduler);
+		assertTrue("expected wait of " + delay + " ms, waited " + elapsed + " ms", elapsed >= delay - 5 && elapsed < delay + TOLERANCE);
+	}
+
+	private static long await(BackoffPollScheduler scheduler) throws InterruptedException {
+		long start = System.nanoTime();
+		scheduler.awaitNextPoll();
+		return (System.nanoTime() - start) / 1000000;
+	}
+
+	private static void wakeUpAfter(final BackoffPollScheduler scheduler, final long millis) {
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				sleep(millis);
+				scheduler.wakeUp();
+			}
+		}).start();
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,263 @@
+package it.tredi.fca;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+
+import it.tredi.fca.entity.FcsRequest;
+import it.tredi.fca.entity.FcsRequestLane;
+import it.tredi.fca.entity.FcsRequestResult;
+import junit.framework.TestCase;
+
+/**
+ * Test del journal delle richieste: ripristino al riavvio (richieste attive e scartate), lettura di record incompleti o non integri, compattazione
+ * e crescita del file
+ */
+public class FcaJournalTest extends TestCase {
+
+	private static final int SIZE = 4096;
+
+	private File directory;
+	private File file;
+	private FcaJournal journal;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = Files.createTempDirectory("fca-journal").toFile();
+		file = new File(directory, "fca.journal");
+		journal = open(SIZE);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		journal.close();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File child : files)
+				child.delete();
+		}
+		directory.delete();
+	}
+
+	public void testPendingRequestsRecovered() throws Exception {
+		FcsRequest fcsRequest = new FcsRequest("DOC1", "pdf");
+		fcsRequest.setAdditionalParameters("-param");
+		fcsRequest.setLane(FcsRequestLane.INTERACTIVE);
+		fcsRequest.setWorkTimeout(5000);
+		journal.enqueued(fcsRequest);
+		journal.dispatched("DOC1", "127.0.0.1:48701");
+		journal.enqueued(new FcsRequest("DOC2"));
+
+		List<FcsRequest> pending = reopen().getPendingRequests();
+		assertEquals(2, pending.size());
+		FcsRequest recovered = pending.get(0);
+		assertEquals("DOC1", recovered.getDocId());
+		assertEquals("pdf", recovered.getConversionTo());
+		assertEquals("-param", recovered.getAdditionalParameters());
+		assertEquals(FcsRequestLane.INTERACTIVE, recovered.getLane());
+		assertEquals(5000, recovered.getWorkTimeout());
+		assertEquals("DOC2", pending.get(1).getDocId());
+	}
+
+	public void testCompletedRequestNotifiedUntilAcknowledged() throws Exception {
+		FcsRequest fcsRequest = new FcsRequest("DOC1");
+		journal.enqueued(fcsRequest);
+		journal.completed(result(fcsRequest));
+
+		journal = reopen();
+		assertTrue(journal.getPendingRequests().isEmpty());
+		List<FcsRequestResult> results = journal.getUnacknowledgedResults();
+		assertEquals(1, results.size());
+		assertEquals("DOC1", results.get(0).getDocId());
+		assertEquals("127.0.0.1:48701", results.get(0).getFcsHost());
+		assertEquals(2, results.get(0).getAttempt());
+
+		journal.acknowledged(results.get(0));
+		journal = reopen();
+		assertEquals(0, journal.countRequests());
+	}
+
+	public void testAcknowledgeKeepsRequestEnqueuedAgain() throws Exception {
+		FcsRequest first = new FcsRequest("DOC1");
+		journal.enqueued(first);
+		journal.completed(result(first));
+
+		// stesso documento nuovamente accodato prima della notifica dell'esito precedente
+		FcsRequest second = new FcsRequest("DOC1");
+		journal.enqueued(second);
+		journal.acknowledged(result(first));
+
+		assertEquals(1, journal.getPendingRequests().size());
+		assertTrue(journal.getUnacknowledgedResults().isEmpty());
+
+		journal = reopen();
+		assertEquals(1, journal.getPendingRequests().size());
+		assertTrue(journal.getUnacknowledgedResults().isEmpty());
+	}
+
+	public void testRemovedRequestNotRecovered() throws Exception {
+		journal.enqueued(new FcsRequest("DOC1"));
+		journal.enqueued(new FcsRequest("DOC2"));
+		journal.removed("DOC1");
+
+		List<FcsRequest> pending = reopen().getPendingRequests();
+		assertEquals(1, pending.size());
+		assertEquals("DOC2", pending.get(0).getDocId());
+	}
+
+	public void testDeadLettersRecovered() throws Exception {
+		FcsRequest fcsRequest = new FcsRequest("DOC1", "pdf");
+		journal.enqueued(fcsRequest);
+		journal.deadLettered(new FcsRequestResult(fcsRequest, "127.0.0.1:48701", 1000, 100, 3, false, new Exception("conversion failed")));
+		journal.removed("DOC1");
+		journal.deadLettered(new FcsRequestResult(new FcsRequest("DOC2"), null, 1000, 0, 3, false, null));
+		journal.deadLettered(new FcsRequestResult(new FcsRequest("DOC3"), null, 1000, 0, 3, false, null));
+		journal.deadLetterCleared("DOC2");
+
+		FcaJournal recovered = reopen();
+		assertTrue(recovered.getPendingRequests().isEmpty());
+		List<FcsRequestResult> deadLetters = recovered.getDeadLetters();
+		assertEquals(2, deadLetters.size());
+		FcsRequestResult deadLetter = deadLetters.get(0);
+		assertEquals("DOC1", deadLetter.getDocId());
+		assertEquals("pdf", deadLetter.getRequest().getConversionTo());
+		assertEquals("127.0.0.1:48701", deadLetter.getFcsHost());
+		assertEquals(3, deadLetter.getAttempt());
+		assertFalse(deadLetter.isSuccess());
+		assertTrue(deadLetter.getCause().getMessage().contains("conversion failed"));
+		assertEquals("DOC3", deadLetters.get(1).getDocId());
+		assertNull(deadLetters.get(1).getCause());
+
+		// rimozione di tutte le richieste scartate
+		recovered.deadLetterCleared(null);
+		assertTrue(reopen().getDeadLetters().isEmpty());
+	}
+
+	public void testCompactionKeepsDeadLetters() throws Exception {
+		journal.close();
+		journal = open(512);
+		journal.deadLettered(new FcsRequestResult(new FcsRequest("DEAD"), null, 1000, 0, 3, false, null));
+		for (int i = 0; i < 200; i++) {
+			journal.enqueued(new FcsRequest("DOC" + i));
+			journal.removed("DOC" + i);
+		}
+
+		assertTrue("journal compacted instead of growing", file.length() <= 1024);
+		List<FcsRequestResult> deadLetters = reopen().getDeadLetters();
+		assertEquals(1, deadLetters.size());
+		assertEquals("DEAD", deadLetters.get(0).getDocId());
+	}
+
+	public void testTruncatedTailIgnored() throws Exception {
+		journal.enqueued(new FcsRequest("DOC1"));
+		journal.enqueued(new FcsRequest("DOC2"));
+		journal.close();
+
+		// scrittura interrotta dell'ultimo record (file troncato a meta' record)
+		int[] records = recordOffsets();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(records[1] + (records[2] - records[1]) / 2);
+		}
+
+		journal = open(SIZE);
+		List<FcsRequest> pending = journal.getPendingRequests();
+		assertEquals(1, pending.size());
+		assertEquals("DOC1", pending.get(0).getDocId());
+	}
+
+	public void testCorruptedTailIgnored() throws Exception {
+		journal.enqueued(new FcsRequest("DOC1"));
+		journal.enqueued(new FcsRequest("DOC2"));
+		journal.enqueued(new FcsRequest("DOC3"));
+		journal.close();
+
+		// CRC non valido sul secondo record: la lettura si interrompe (anche i record successivi vengono ignorati)
+		int[] records = recordOffsets();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			int position = records[1] + 4 + 1 + 8;
+			raf.seek(position);
+			int value = raf.read();
+			raf.seek(position);
+			raf.write(value ^ 0xFF);
+		}
+
+		journal = open(SIZE);
+		List<FcsRequest> pending = journal.getPendingRequests();
+		assertEquals(1, pending.size());
+		assertEquals("DOC1", pending.get(0).getDocId());
+
+		// il journal resta utilizzabile dopo il ripristino (i record non integri vengono eliminati dalla compattazione)
+		journal.enqueued(new FcsRequest("DOC4"));
+		assertEquals(2, reopen().getPendingRequests().size());
+	}
+
+	public void testCompactionKeepsOnlyActiveRequests() throws Exception {
+		journal.close();
+		journal = open(512);
+		for (int i = 0; i < 200; i++) {
+			FcsRequest fcsRequest = new FcsRequest("DOC" + i);
+			journal.enqueued(fcsRequest);
+			journal.completed(result(fcsRequest));
+			journal.acknowledged(result(fcsRequest));
+		}
+		journal.enqueued(new FcsRequest("LAST"));
+
+		assertTrue("journal compacted instead of growing", file.length() <= 1024);
+		List<FcsRequest> pending = reopen().getPendingRequests();
+		assertEquals(1, pending.size());
+		assertEquals("LAST", pending.get(0).getDocId());
+	}
+
+	public void testGrowthWithActiveRequests() throws Exception {
+		journal.close();
+		journal = open(512);
+		for (int i = 0; i < 100; i++)
+			journal.enqueued(new FcsRequest("DOC" + i));
+
+		assertTrue("journal grown", file.length() > 512);
+		List<FcsRequest> pending = reopen().getPendingRequests();
+		assertEquals(100, pending.size());
+		assertEquals("DOC0", pending.get(0).getDocId());
+		assertEquals("DOC99", pending.get(99).getDocId());
+	}
+
+	private FcaJournal open(int size) throws Exception {
+		FcaJournal fcaJournal = new FcaJournal(file, size, FcaJournalSyncMode.NONE, 0);
+		fcaJournal.open();
+		return fcaJournal;
+	}
+
+	private FcaJournal reopen() throws Exception {
+		journal.close();
+		journal = open(SIZE);
+		return journal;
+	}
+
+	private static FcsRequestResult result(FcsRequest fcsRequest) {
+		return new FcsRequestResult(fcsRequest, "127.0.0.1:48701", System.currentTimeMillis(), 100, 2, true, null);
+	}
+
+	/**
+	 * Posizione di inizio dei record registrati sul file (l'ultimo elemento corrisponde alla fine dei record): ogni record e' preceduto dalla
+	 * lunghezza di tipo, timestamp e dati ed e' seguito dal CRC32
+	 */
+	private int[] recordOffsets() throws Exception {
+		byte[] content = Files.readAllBytes(file.toPath());
+		int[] offsets = new int[content.length];
+		int count = 0;
+		int position = 0;
+		while (position + 4 <= content.length) {
+			int length = ((content[position] & 0xFF) << 24) | ((content[position + 1] & 0xFF) << 16) | ((content[position + 2] & 0xFF) << 8) | (content[position + 3] & 0xFF);
+			if (length <= 0)
+				break;
+			offsets[count++] = position;
+			position += 4 + length + 4;
+		}
+		offsets[count++] = position;
+		int[] result = new int[count];
+		System.arraycopy(offsets, 0, result, 0, count);
+		return result;
+	}
+
+}
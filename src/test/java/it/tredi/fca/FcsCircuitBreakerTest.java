@@ -0,0 +1,121 @@
+package it.tredi.fca;
+
+import junit.framework.TestCase;
+
+/**
+ * Test del circuit breaker degli host FCS (soglie definite sul file di properties dei test: finestra di 4 esiti, apertura al 50% di richieste
+ * fallite o lente, esclusione per 200 ms e 2 richieste di prova)
+ */
+public class FcsCircuitBreakerTest extends TestCase {
+
+	private static final long OPEN_DURATION = 200;
+
+	private FcsCircuitBreaker circuitBreaker;
+
+	@Override
+	protected void setUp() throws Exception {
+		circuitBreaker = new FcsCircuitBreaker(new FcsHost("127.0.0.1", 48701, 4));
+	}
+
+	public void testClosedBelowMinCalls() {
+		circuitBreaker.onResult(false, 10);
+		circuitBreaker.onResult(false, 10);
+		circuitBreaker.onResult(false, 10);
+
+		assertEquals(FcsCircuitState.CLOSED, circuitBreaker.getState());
+		assertTrue(circuitBreaker.tryAcquirePermission());
+	}
+
+	public void testOpensOnFailureRate() {
+		circuitBreaker.onResult(true, 10);
+		circuitBreaker.onResult(false, 10);
+		circuitBreaker.onResult(true, 10);
+		circuitBreaker.onResult(false, 10);
+
+		assertEquals(FcsCircuitState.OPEN, circuitBreaker.getState());
+		assertFalse(circuitBreaker.isCallPermitted());
+		assertFalse(circuitBreaker.tryAcquirePermission());
+	}
+
+	public void testOpensOnSlowCallRate() {
+		circuitBreaker.onResult(true, 10);
+		circuitBreaker.onResult(true, 1500);
+		circuitBreaker.onResult(true, 10);
+		circuitBreaker.onResult(true, 2000);
+
+		assertEquals(FcsCircuitState.OPEN, circuitBreaker.getState());
+	}
+
+	public void testWindowDropsOldestResult() {
+		circuitBreaker.onResult(false, 10);
+		for (int i = 0; i < 4; i++)
+			circuitBreaker.onResult(true, 10);
+		// finestra: 3 successi e 1 errore (25%)
+		circuitBreaker.onResult(false, 10);
+
+		assertEquals(FcsCircuitState.CLOSED, circuitBreaker.getState());
+	}
+
+	public void testHalfOpenTrialsCloseCircuit() throws Exception {
+		open();
+		Thread.sleep(OPEN_DURATION + 50);
+
+		assertTrue(circuitBreaker.isCallPermitted());
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		assertEquals(FcsCircuitState.HALF_OPEN, circuitBreaker.getState());
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		assertFalse("only 2 trial requests", circuitBreaker.tryAcquirePermission());
+
+		circuitBreaker.onResult(true, 10);
+		assertEquals(FcsCircuitState.HALF_OPEN, circuitBreaker.getState());
+		circuitBreaker.onResult(true, 10);
+		assertEquals(FcsCircuitState.CLOSED, circuitBreaker.getState());
+	}
+
+	public void testHalfOpenFailureReopensCircuit() throws Exception {
+		open();
+		Thread.sleep(OPEN_DURATION + 50);
+
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		circuitBreaker.onResult(false, 10);
+
+		assertEquals(FcsCircuitState.OPEN, circuitBreaker.getState());
+		assertFalse(circuitBreaker.tryAcquirePermission());
+	}
+
+	public void testReleasedTrialPermitAvailableAgain() throws Exception {
+		open();
+		Thread.sleep(OPEN_DURATION + 50);
+
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		assertFalse(circuitBreaker.tryAcquirePermission());
+
+		// richiesta di prova annullata (nessun esito registrato)
+		circuitBreaker.releasePermission();
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		circuitBreaker.onResult(true, 10);
+		circuitBreaker.onResult(true, 10);
+		assertEquals(FcsCircuitState.CLOSED, circuitBreaker.getState());
+	}
+
+	public void testReleaseWithoutTrialInProgressIgnored() throws Exception {
+		open();
+		Thread.sleep(OPEN_DURATION + 50);
+
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		circuitBreaker.onResult(true, 10);
+		circuitBreaker.releasePermission();
+
+		// una sola richiesta di prova ancora disponibile
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		assertFalse(circuitBreaker.tryAcquirePermission());
+	}
+
+	private void open() {
+		for (int i = 0; i < 4; i++)
+			circuitBreaker.onResult(false, 10);
+		assertEquals(FcsCircuitState.OPEN, circuitBreaker.getState());
+	}
+
+}
@@ -0,0 +1,104 @@
+package it.tredi.fca;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import it.tredi.fca.entity.FcsFileInfo;
+import it.tredi.fca.entity.FcsRequest;
+import it.tredi.fcs.socket.commands.entity.FcsActivationParams;
+import junit.framework.TestCase;
+
+/**
+ * Test della verifica preventiva delle richieste: tipi di file inclusi ed esclusi, dimensione massima, dimensione non nota e metadati dei file
+ * non disponibili
+ */
+public class FcsRequestPrefilterTest extends TestCase {
+
+	private FcsActivationParams params;
+	private FcsRequestPrefilter prefilter;
+
+	@Override
+	protected void setUp() throws Exception {
+		params = new FcsActivationParams();
+		params.setIndexEnabled(true);
+		params.setIndexFileTypesInclude(Arrays.asList("pdf", "doc", "tar.gz"));
+		params.setIndexFileTypesExclude(Arrays.asList("doc"));
+		params.setIndexMaxFileSize(1000);
+		params.setConvertEnabled(false);
+		prefilter = new FcsRequestPrefilter(params);
+	}
+
+	public void testIncludedFileTypes() {
+		assertTrue(prefilter.isIndexable(new FcsFileInfo("document.pdf", 100)));
+		assertTrue(prefilter.isIndexable(new FcsFileInfo("DOCUMENT.PDF", 100)));
+		assertTrue(prefilter.isIndexable(new FcsFileInfo("archive.tar.gz", 100)));
+		assertFalse(prefilter.isIndexable(new FcsFileInfo("image.png", 100)));
+		assertFalse(prefilter.isIndexable(new FcsFileInfo("pdf", 100)));
+	}
+
+	public void testExcludedFileTypes() {
+		// esclusione prevalente sull'inclusione
+		assertFalse(prefilter.isIndexable(new FcsFileInfo("document.doc", 100)));
+
+		// nessun tipo incluso: tutti i file non esclusi vengono indicizzati
+		params.setIndexFileTypesInclude(new ArrayList<String>());
+		assertTrue(prefilter.isIndexable(new FcsFileInfo("image.png", 100)));
+		assertFalse(prefilter.isIndexable(new FcsFileInfo("document.doc", 100)));
+	}
+
+	public void testMaxFileSize() {
+		assertTrue(prefilter.isIndexable(new FcsFileInfo("document.pdf", 1000)));
+		assertFalse(prefilter.isIndexable(new FcsFileInfo("document.pdf", 1001)));
+
+		// limite non impostato
+		params.setIndexMaxFileSize(0);
+		assertTrue(prefilter.isIndexable(new FcsFileInfo("document.pdf", Long.MAX_VALUE)));
+	}
+
+	public void testUnknownFileSize() {
+		assertTrue(prefilter.isIndexable(new FcsFileInfo("document.pdf", -1)));
+	}
+
+	public void testConvertRules() {
+		params.setConvertEnabled(true);
+		params.setConvertFileTypes(Arrays.asList("tif"));
+		params.setConvertMaxFileSize(500);
+
+		assertTrue(prefilter.isConvertible(new FcsFileInfo("scan.tif", 500)));
+		assertFalse(prefilter.isConvertible(new FcsFileInfo("scan.tif", 501)));
+		assertTrue(prefilter.isConvertible(new FcsFileInfo("scan.tif", -1)));
+		assertFalse(prefilter.isConvertible(new FcsFileInfo("document.pdf", 100)));
+
+		params.setConvertEnabled(false);
+		assertFalse(prefilter.isConvertible(new FcsFileInfo("scan.tif", 100)));
+	}
+
+	public void testRequiresFcs() {
+		FcsRequest fcsRequest = new FcsRequest("DOC1");
+		fcsRequest.addFile("image.png", 100);
+		fcsRequest.addFile("document.doc", 100);
+		fcsRequest.addFile("large.pdf", 5000);
+		assertFalse(prefilter.requiresFcs(fcsRequest));
+
+		// almeno un file da elaborare
+		fcsRequest.addFile("document.pdf", 100);
+		assertTrue(prefilter.requiresFcs(fcsRequest));
+	}
+
+	public void testRequiresFcsWithoutMetadata() {
+		// metadati dei file non disponibili: la richiesta viene sempre inviata agli host FCS
+		assertTrue(prefilter.requiresFcs(new FcsRequest("DOC1")));
+		assertTrue(new FcsRequestPrefilter(null).requiresFcs(new FcsRequest("DOC1")));
+
+		// documento privo di file
+		FcsRequest fcsRequest = new FcsRequest("DOC2");
+		fcsRequest.setFiles(new ArrayList<FcsFileInfo>());
+		assertFalse(prefilter.requiresFcs(fcsRequest));
+
+		params.setIndexEnabled(false);
+		FcsRequest indexDisabled = new FcsRequest("DOC3");
+		indexDisabled.addFile("document.pdf", 100);
+		assertFalse(prefilter.requiresFcs(indexDisabled));
+	}
+
+}
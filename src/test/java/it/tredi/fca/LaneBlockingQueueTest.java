@@ -0,0 +1,155 @@
+package it.tredi.fca;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import it.tredi.fca.entity.FcsRequest;
+import it.tredi.fca.entity.FcsRequestLane;
+import junit.framework.TestCase;
+
+/**
+ * Test della coda condivisa suddivisa in corsie: prelievo in base ai pesi delle corsie, capacita' per corsia e rimozione di richieste accodate
+ */
+public class LaneBlockingQueueTest extends TestCase {
+
+	private static final int CAPACITY = 8;
+
+	private LaneBlockingQueue queue;
+
+	@Override
+	protected void setUp() throws Exception {
+		Map<FcsRequestLane, Integer> weights = new EnumMap<FcsRequestLane, Integer>(FcsRequestLane.class);
+		weights.put(FcsRequestLane.INTERACTIVE, 4);
+		weights.put(FcsRequestLane.NORMAL, 2);
+		weights.put(FcsRequestLane.BULK, 1);
+		queue = new LaneBlockingQueue(CAPACITY, weights);
+	}
+
+	public void testWeightedDequeueRatio() throws Exception {
+		for (int i = 0; i < CAPACITY; i++) {
+			assertTrue(queue.offer(request("I" + i, FcsRequestLane.INTERACTIVE)));
+			assertTrue(queue.offer(request("N" + i, FcsRequestLane.NORMAL)));
+			assertTrue(queue.offer(request("B" + i, FcsRequestLane.BULK)));
+		}
+
+		// su 7 prelievi (somma dei pesi) con tutte le corsie non vuote: 4 interattive, 2 normali, 1 massiva
+		int[] taken = new int[FcsRequestLane.values().length];
+		for (int i = 0; i < 7; i++)
+			taken[queue.take().getLane().ordinal()]++;
+		assertEquals(4, taken[FcsRequestLane.INTERACTIVE.ordinal()]);
+		assertEquals(2, taken[FcsRequestLane.NORMAL.ordinal()]);
+		assertEquals(1, taken[FcsRequestLane.BULK.ordinal()]);
+	}
+
+	public void testLaneNotStarvedByHigherWeights() throws Exception {
+		for (int i = 0; i < CAPACITY; i++) {
+			queue.offer(request("I" + i, FcsRequestLane.INTERACTIVE));
+			queue.offer(request("B" + i, FcsRequestLane.BULK));
+		}
+
+		// la corsia massiva ottiene un prelievo ogni 5 (pesi 4 e 1)
+		boolean bulkTaken = false;
+		for (int i = 0; i < 5; i++)
+			bulkTaken |= queue.take().getLane() == FcsRequestLane.BULK;
+		assertTrue(bulkTaken);
+	}
+
+	public void testFifoWithinLane() throws Exception {
+		for (int i = 0; i < 3; i++)
+			queue.offer(request("N" + i, FcsRequestLane.NORMAL));
+
+		assertEquals("N0", queue.take().getDocId());
+		assertEquals("N1", queue.take().getDocId());
+		assertEquals("N2", queue.take().getDocId());
+		assertNull(queue.poll());
+	}
+
+	public void testPerLaneCapacity() throws Exception {
+		assertEquals(CAPACITY * 3, queue.remainingCapacity());
+		for (int i = 0; i < CAPACITY; i++)
+			assertTrue(queue.offer(request("B" + i, FcsRequestLane.BULK)));
+
+		// corsia massiva piena: le altre corsie accettano ancora richieste
+		assertFalse(queue.offer(request("B" + CAPACITY, FcsRequestLane.BULK)));
+		assertFalse(queue.offer(request("B" + CAPACITY, FcsRequestLane.BULK), 10, TimeUnit.MILLISECONDS));
+		assertEquals(0, queue.remainingCapacity(FcsRequestLane.BULK));
+		assertEquals(CAPACITY, queue.remainingCapacity(FcsRequestLane.INTERACTIVE));
+		assertEquals(CAPACITY * 2, queue.remainingCapacity());
+		assertTrue(queue.offer(request("I0", FcsRequestLane.INTERACTIVE)));
+		assertEquals(CAPACITY * 2 - 1, queue.remainingCapacity());
+		assertEquals(CAPACITY + 1, queue.size());
+	}
+
+	public void testCapacityReduced() throws Exception {
+		for (int i = 0; i < 4; i++)
+			queue.offer(request("N" + i, FcsRequestLane.NORMAL));
+		queue.setCapacity(2);
+
+		// richieste gia' accodate mantenute, nessuno spazio libero sulla corsia
+		assertEquals(4, queue.size(FcsRequestLane.NORMAL));
+		assertEquals(0, queue.remainingCapacity(FcsRequestLane.NORMAL));
+		assertEquals(4, queue.remainingCapacity());
+		assertFalse(queue.offer(request("N4", FcsRequestLane.NORMAL)));
+	}
+
+	public void testPutWaitsForLaneCapacity() throws Exception {
+		for (int i = 0; i < CAPACITY; i++)
+			queue.offer(request("N" + i, FcsRequestLane.NORMAL));
+
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					queue.put(request("N" + CAPACITY, FcsRequestLane.NORMAL));
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		producer.start();
+		producer.join(100);
+		assertTrue("put on full lane", producer.isAlive());
+
+		queue.take();
+		producer.join(1000);
+		assertFalse(producer.isAlive());
+		assertEquals(CAPACITY, queue.size(FcsRequestLane.NORMAL));
+	}
+
+	public void testRemove() throws Exception {
+		FcsRequest first = request("DOC1", FcsRequestLane.BULK);
+		FcsRequest second = request("DOC2", FcsRequestLane.INTERACTIVE);
+		queue.offer(first);
+		queue.offer(second);
+
+		assertTrue(queue.remove(first));
+		assertFalse(queue.remove(first));
+		assertFalse(queue.remove(null));
+		assertEquals(1, queue.size());
+		assertEquals(0, queue.size(FcsRequestLane.BULK));
+		assertEquals(CAPACITY, queue.remainingCapacity(FcsRequestLane.BULK));
+		assertSame(second, queue.poll());
+		assertNull(queue.poll());
+	}
+
+	public void testRemoveFreesFullLane() throws Exception {
+		FcsRequest[] requests = new FcsRequest[CAPACITY];
+		for (int i = 0; i < CAPACITY; i++) {
+			requests[i] = request("B" + i, FcsRequestLane.BULK);
+			queue.offer(requests[i]);
+		}
+
+		assertTrue(queue.remove(requests[3]));
+		assertTrue(queue.offer(request("B" + CAPACITY, FcsRequestLane.BULK)));
+		assertEquals(CAPACITY, queue.size());
+	}
+
+	private static FcsRequest request(String docId, FcsRequestLane lane) {
+		FcsRequest fcsRequest = new FcsRequest(docId);
+		fcsRequest.setLane(lane);
+		return fcsRequest;
+	}
+
+}
@@ -0,0 +1,95 @@
+package it.tredi.fca.metrics;
+
+import junit.framework.TestCase;
+
+/**
+ * Test dell'istogramma delle latenze: valori esatti sotto i 32 microsecondi, limiti dei bucket log-lineari (errore relativo massimo di 1/32) e
+ * valori fuori intervallo
+ */
+public class LatencyHistogramTest extends TestCase {
+
+	private static final long MAX_VALUE = (1L << 43) - 1;
+
+	public void testExactValuesBelowSubBuckets() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 32; i++)
+			histogram.record(i);
+
+		assertEquals(15, histogram.getPercentile(50));
+		assertEquals(31, histogram.getPercentile(100));
+		assertEquals(0, histogram.getPercentile(0));
+		for (int i = 0; i < 32; i++)
+			assertEquals(i, upperBound(i));
+	}
+
+	public void testBucketBounds() {
+		for (long value = 32; value < MAX_VALUE / 2; value = value * 3 / 2 + 1) {
+			long upperBound = upperBound(value);
+			assertTrue("upper bound " + upperBound + " below value " + value, upperBound >= value);
+			assertTrue("relative error above 1/32 for value " + value + " (upper bound " + upperBound + ")", upperBound - value <= value / 32);
+
+			// il limite superiore appartiene al bucket, il valore successivo al bucket seguente
+			assertEquals(upperBound, upperBound(upperBound));
+			assertTrue(upperBound(upperBound + 1) > upperBound);
+		}
+	}
+
+	public void testPowerOfTwoBoundaries() {
+		assertEquals(32, upperBound(32));
+		assertEquals(63, upperBound(63));
+		assertEquals(65, upperBound(64));
+		assertEquals(65, upperBound(65));
+		assertEquals(1023, upperBound(1008));
+		assertEquals(1055, upperBound(1024));
+	}
+
+	public void testPercentileLimitedByMax() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(1000);
+
+		assertEquals(1000, histogram.getPercentile(99));
+		assertEquals(1000, histogram.snapshot().getMax());
+	}
+
+	public void testOutOfRangeValues() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-10);
+		histogram.record(Long.MAX_VALUE);
+
+		assertEquals(2, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(50));
+		assertEquals(MAX_VALUE, histogram.getPercentile(100));
+		assertEquals(MAX_VALUE, histogram.snapshot().getMax());
+	}
+
+	public void testSnapshot() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++)
+			histogram.record(i * 10);
+
+		LatencySnapshot snapshot = histogram.snapshot();
+		assertEquals(100, snapshot.getCount());
+		assertEquals(505, snapshot.getMean());
+		assertTrue(snapshot.getP50() >= 500 && snapshot.getP50() <= 500 + 500 / 32);
+		assertTrue(snapshot.getP90() >= 900 && snapshot.getP90() <= 900 + 900 / 32);
+		assertEquals(1000, snapshot.getMax());
+	}
+
+	public void testEmpty() {
+		LatencySnapshot snapshot = new LatencyHistogram().snapshot();
+		assertEquals(0, snapshot.getCount());
+		assertEquals(0, snapshot.getMean());
+		assertEquals(0, snapshot.getP99());
+	}
+
+	/**
+	 * Limite superiore del bucket del valore indicato (percentile calcolato in presenza di un valore massimo maggiore)
+	 */
+	private static long upperBound(long value) {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(value);
+		histogram.record(MAX_VALUE);
+		return histogram.getPercentile(50);
+	}
+
+}
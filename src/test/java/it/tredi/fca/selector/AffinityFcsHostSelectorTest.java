@@ -0,0 +1,169 @@
+package it.tredi.fca.selector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.tredi.fca.FcsHost;
+import it.tredi.fca.FcsHostStatus;
+import it.tredi.fca.entity.FcsRequest;
+import junit.framework.TestCase;
+
+/**
+ * Test della selezione affinity: stabilita' dell'instradamento, chiavi spostate solo dall'host aggiunto o rimosso dal pool, assegnazione al
+ * successivo host dell'anello in caso di host saturo o escluso
+ */
+public class AffinityFcsHostSelectorTest extends TestCase {
+
+	private static final int KEYS = 2000;
+
+	private AffinityFcsHostSelector selector;
+	private List<FcsHost> pool;
+
+	@Override
+	protected void setUp() throws Exception {
+		selector = new AffinityFcsHostSelector();
+		pool = new ArrayList<FcsHost>();
+		for (int i = 0; i < 4; i++)
+			pool.add(host(48701 + i, KEYS));
+	}
+
+	public void testSameKeySameHost() {
+		FcsHost first = select(pool, request("DOC1"));
+		for (int i = 0; i < 10; i++)
+			assertSame(first, select(pool, request("DOC1")));
+
+		// chiave di instradamento indicata sulla richiesta prevalente sull'identificativo del documento
+		FcsRequest routed = request("DOC2");
+		routed.setRoutingKey("DOC1");
+		assertSame(first, select(pool, routed));
+	}
+
+	public void testKeysDistributedOnAllHosts() {
+		Map<FcsHost, Integer> counts = new HashMap<FcsHost, Integer>();
+		for (FcsHost fcsHost : assign(pool).values())
+			counts.merge(fcsHost, 1, Integer::sum);
+
+		assertEquals(pool.size(), counts.size());
+		for (int count : counts.values())
+			assertTrue("unbalanced distribution " + counts.values(), count > KEYS / pool.size() / 2);
+	}
+
+	public void testHostRemovedRemapsOnlyItsKeys() {
+		Map<String, FcsHost> before = assign(pool);
+		FcsHost removed = pool.get(1);
+		List<FcsHost> reduced = new ArrayList<FcsHost>(pool);
+		reduced.remove(removed);
+		Map<String, FcsHost> after = assign(reduced);
+
+		for (Map.Entry<String, FcsHost> entry : before.entrySet()) {
+			if (entry.getValue() != removed)
+				assertSame("key " + entry.getKey() + " moved", entry.getValue(), after.get(entry.getKey()));
+		}
+	}
+
+	public void testHostAddedTakesOnlyItsShare() {
+		Map<String, FcsHost> before = assign(pool);
+		FcsHost added = host(48705, KEYS);
+		List<FcsHost> extended = new ArrayList<FcsHost>(pool);
+		extended.add(added);
+		Map<String, FcsHost> after = assign(extended);
+
+		int moved = 0;
+		for (Map.Entry<String, FcsHost> entry : before.entrySet()) {
+			FcsHost current = after.get(entry.getKey());
+			if (current != entry.getValue()) {
+				assertSame("key " + entry.getKey() + " moved between existing hosts", added, current);
+				moved++;
+			}
+		}
+		assertTrue("no keys assigned to the new host", moved > 0);
+		assertTrue("too many keys moved (" + moved + ")", moved < KEYS / 2);
+	}
+
+	public void testSpilloverWhenPreferredHostFull() {
+		FcsRequest fcsRequest = request("DOC1");
+		FcsHost preferred = select(pool, fcsRequest);
+
+		// host preferito saturo: assegnazione al successivo host dell'anello (sempre lo stesso)
+		pool = new ArrayList<FcsHost>(pool);
+		FcsHost full = host(preferred.getPort(), 1);
+		pool.set(pool.indexOf(preferred), full);
+		assertTrue(full.tryIncrementQueueInProgressSize());
+		FcsHost spillover = select(pool, fcsRequest);
+		assertNotNull(spillover);
+		assertNotSame(full, spillover);
+		assertSame(spillover, select(pool, fcsRequest));
+		assertTrue(selector.accepts(pool, spillover, fcsRequest, null));
+
+		// slot liberato: la richiesta torna sull'host preferito
+		full.decrementQueueInProgressSize();
+		assertFalse(selector.accepts(pool, spillover, fcsRequest, null));
+		assertSame(full, select(pool, fcsRequest));
+	}
+
+	public void testExcludedHostSkipped() {
+		FcsRequest fcsRequest = request("DOC1");
+		FcsHost preferred = select(pool, fcsRequest);
+
+		FcsHost selected = select(pool, fcsRequest, preferred);
+		assertNotNull(selected);
+		assertNotSame(preferred, selected);
+		assertFalse(selector.accepts(pool, preferred, fcsRequest, preferred));
+		assertTrue(selector.accepts(pool, selected, fcsRequest, preferred));
+
+		// l'esclusione non modifica l'instradamento delle altre richieste
+		assertSame(preferred, select(pool, fcsRequest));
+	}
+
+	public void testUnavailableHostSkipped() {
+		FcsRequest fcsRequest = request("DOC1");
+		FcsHost preferred = select(pool, fcsRequest);
+		preferred.setStatus(FcsHostStatus.DOWN);
+
+		FcsHost selected = select(pool, fcsRequest);
+		assertNotSame(preferred, selected);
+		assertSame(selected, select(pool, fcsRequest, null));
+		for (FcsHost fcsHost : pool)
+			fcsHost.setStatus(FcsHostStatus.DOWN);
+		assertNull(selector.select(pool, fcsRequest));
+	}
+
+	/**
+	 * Assegnazione delle chiavi di test agli host del pool
+	 */
+	private Map<String, FcsHost> assign(List<FcsHost> hosts) {
+		Map<String, FcsHost> assignment = new HashMap<String, FcsHost>();
+		for (int i = 0; i < KEYS; i++) {
+			String docId = "DOC" + i;
+			assignment.put(docId, select(hosts, request(docId)));
+		}
+		return assignment;
+	}
+
+	private FcsHost select(List<FcsHost> hosts, FcsRequest fcsRequest) {
+		return select(hosts, fcsRequest, null);
+	}
+
+	/**
+	 * Selezione con rilascio immediato dello slot riservato (nessuna saturazione degli host)
+	 */
+	private FcsHost select(List<FcsHost> hosts, FcsRequest fcsRequest, FcsHost excluded) {
+		FcsHost fcsHost = selector.select(hosts, fcsRequest, excluded);
+		if (fcsHost != null)
+			fcsHost.decrementQueueInProgressSize();
+		return fcsHost;
+	}
+
+	private static FcsHost host(int port, int queueMaxSize) {
+		FcsHost fcsHost = new FcsHost("127.0.0.1", port, queueMaxSize);
+		fcsHost.setStatus(FcsHostStatus.UP);
+		return fcsHost;
+	}
+
+	private static FcsRequest request(String docId) {
+		return new FcsRequest(docId);
+	}
+
+}
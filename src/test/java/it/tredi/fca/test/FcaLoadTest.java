@@ -0,0 +1,274 @@
+package it.tredi.fca.test;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.tredi.fca.Fca;
+import it.tredi.fca.FcaConfig;
+import it.tredi.fca.FcsHost;
+import it.tredi.fca.FcsRequestCursor;
+import it.tredi.fca.InProgressRequests;
+import it.tredi.fca.ListFcsRequestCursor;
+import it.tredi.fca.entity.FcsRequest;
+import it.tredi.fca.entity.FcsRequestResult;
+import it.tredi.fca.metrics.FcaMetrics;
+import it.tredi.fca.metrics.LatencyHistogram;
+import it.tredi.fca.metrics.LatencySnapshot;
+
+/**
+ * Test di carico di FCA su host FCS simulati (vedi {@link FcsSimulator}): per ogni host di fcs.pool (su loopback) viene avviato un simulatore, quindi
+ * vengono elaborate loadtest.requests richieste e riportati throughput, percentili di latenza (dal caricamento della richiesta alla notifica
+ * dell'esito) e utilizzo degli slot degli host FCS.
+ * <p>
+ * Parametri (system properties):
+ * <ul>
+ * <li>loadtest.requests: numero di richieste da elaborare (default 10000);</li>
+ * <li>loadtest.serviceTime, loadtest.distribution: tempo medio di elaborazione (ms, default 50) e distribuzione (fixed, uniform, exponential,
+ * lognormal, default exponential);</li>
+ * <li>loadtest.failureRate, loadtest.dropRate, loadtest.timeoutRate: percentuali (0-1) di elaborazioni fallite, connessioni interrotte ed
+ * elaborazioni senza risposta (default 0);</li>
+ * <li>loadtest.maxConnections: numero massimo di connessioni per host simulato (default 0 = illimitato);</li>
+ * <li>loadtest.timeout: durata massima del test in ms (default 600000).</li>
+ * </ul>
+ */
+public class FcaLoadTest extends Fca {
+
+	private static final Logger logger = LogManager.getLogger(FcaLoadTest.class.getName());
+
+	private static final long SAMPLE_INTERVAL = 100;
+
+	private final int totalRequests;
+
+	private final AtomicInteger loaded = new AtomicInteger(0);
+	private final Map<String, Long> loadTimes = new ConcurrentHashMap<String, Long>();
+	private final Set<String> completed = ConcurrentHashMap.newKeySet();
+	private final Set<String> processed = ConcurrentHashMap.newKeySet(); // documenti elaborati dagli host FCS (esito non ancora notificato)
+	private final Set<String> failed = ConcurrentHashMap.newKeySet();
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	private final AtomicLong startTime = new AtomicLong(0);
+	private volatile long endTime = 0;
+
+	// campionamento dell'utilizzo degli slot degli host FCS
+	private final DoubleAdder utilization = new DoubleAdder();
+	private final LongAdder samples = new LongAdder();
+
+	public static void main(String[] args) {
+		List<FcsSimulator> simulators = new ArrayList<FcsSimulator>();
+		ScheduledExecutorService sampler = null;
+		try {
+			FcaLoadTest loadTest = new FcaLoadTest(Integer.getInteger("loadtest.requests", 10000));
+			for (FcsHost fcsHost : FcaConfig.getInstance().getFcsPool())
+				simulators.add(loadTest.startSimulator(fcsHost));
+
+			sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "FcaLoadTestSampler");
+				thread.setDaemon(true);
+				return thread;
+			});
+			sampler.scheduleAtFixedRate(loadTest::sample, SAMPLE_INTERVAL, SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+			sampler.schedule(() -> {
+				logger.error("FcaLoadTest: timeout expired... stop load test");
+				loadTest.requestShutdown(false);
+			}, Long.getLong("loadtest.timeout", 600000), TimeUnit.MILLISECONDS);
+
+			loadTest.run();
+			loadTest.report(simulators);
+			stop(sampler, simulators);
+			System.exit(0);
+		}
+		catch (Exception e) {
+			logger.error("FcaLoadTest.main(): got exception... " + e.getMessage(), e);
+			stop(sampler, simulators);
+			System.exit(1);
+		}
+	}
+
+	private static void stop(ScheduledExecutorService sampler, List<FcsSimulator> simulators) {
+		if (sampler != null)
+			sampler.shutdownNow();
+		for (FcsSimulator simulator : simulators)
+			simulator.stop();
+	}
+
+	public FcaLoadTest(int totalRequests) throws Exception {
+		super();
+		this.totalRequests = totalRequests;
+	}
+
+	/**
+	 * Avvio del simulatore corrispondente ad un host FCS del pool (l'host deve essere locale)
+	 * @param fcsHost
+	 * @return
+	 * @throws Exception
+	 */
+	private FcsSimulator startSimulator(FcsHost fcsHost) throws Exception {
+		if (!InetAddress.getByName(fcsHost.getHost()).isLoopbackAddress())
+			throw new Exception("FCS host " + fcsHost.getHost() + ":" + fcsHost.getPort() + " is not a loopback address... unable to simulate it");
+
+		FcsSimulator simulator = new FcsSimulator(fcsHost.getPort());
+		simulator.setServiceTime(FcsSimulator.ServiceTime.valueOf(System.getProperty("loadtest.distribution", "exponential"), Long.getLong("loadtest.serviceTime", 50)));
+		simulator.setFailureRate(getRate("loadtest.failureRate"));
+		simulator.setDropRate(getRate("loadtest.dropRate"));
+		simulator.setTimeoutRate(getRate("loadtest.timeoutRate"));
+		simulator.setMaxConnections(Integer.getInteger("loadtest.maxConnections", 0));
+		simulator.setCompletionListener(processed::add);
+		simulator.start();
+		return simulator;
+	}
+
+	private static double getRate(String property) {
+		return Double.parseDouble(System.getProperty(property, "0"));
+	}
+
+	/**
+	 * Non utilizzato: le richieste vengono generate da {@link #openFcsPendingRequests(int)}
+	 */
+	@Override
+	public List<FcsRequest> loadFcsPendingRequests() throws Exception {
+		return new ArrayList<FcsRequest>();
+	}
+
+	/**
+	 * Caricamento di al massimo maxItems richieste: richieste gia' generate ancora da elaborare e non in elaborazione (es. rinviate per corsia
+	 * piena o fallite), quindi nuove richieste (fino a loadtest.requests richieste complessive)
+	 */
+	@Override
+	public FcsRequestCursor openFcsPendingRequests(int maxItems) throws Exception {
+		startTime.compareAndSet(0, System.nanoTime());
+
+		List<FcsRequest> fcsRequests = new ArrayList<FcsRequest>(maxItems);
+		for (String docId : loadTimes.keySet()) {
+			if (fcsRequests.size() >= maxItems)
+				break;
+			if (!processed.contains(docId) && !failed.contains(docId) && !InProgressRequests.getInstance().containsRequest(docId))
+				fcsRequests.add(new FcsRequest(docId));
+		}
+		while (fcsRequests.size() < maxItems) {
+			int index = loaded.get();
+			if (index >= totalRequests || !loaded.compareAndSet(index, index + 1))
+				break;
+			String docId = "LT" + index;
+			loadTimes.put(docId, System.nanoTime());
+			fcsRequests.add(new FcsRequest(docId));
+		}
+		return new ListFcsRequestCursor(fcsRequests);
+	}
+
+	@Override
+	public void onRequestsCompleted(List<FcsRequestResult> results) {
+		long now = System.nanoTime();
+		for (FcsRequestResult result : results) {
+			Long loadTime = loadTimes.remove(result.getDocId());
+			if (loadTime != null)
+				latency.record((now - loadTime) / 1000);
+			completed.add(result.getDocId());
+		}
+		checkCompleted();
+	}
+
+	@Override
+	public void onRequestsFailed(List<FcsRequestResult> results) {
+		for (FcsRequestResult result : results) {
+			// esito definitivo solo se non e' stato pianificato un nuovo tentativo
+			if (!result.isRetryScheduled()) {
+				loadTimes.remove(result.getDocId());
+				failed.add(result.getDocId());
+			}
+		}
+		checkCompleted();
+	}
+
+	/**
+	 * Arresto di FCA al termine dell'elaborazione di tutte le richieste, altrimenti caricamento immediato di nuove richieste
+	 */
+	private void checkCompleted() {
+		if (completed.size() + failed.size() >= totalRequests) {
+			if (endTime == 0) {
+				endTime = System.nanoTime();
+				requestShutdown(false);
+			}
+		}
+		else
+			wakeUp();
+	}
+
+	/**
+	 * Campionamento dell'utilizzo degli slot degli host FCS
+	 */
+	private void sample() {
+		if (startTime.get() == 0 || endTime != 0)
+			return;
+		FcaMetrics metrics = FcaMetrics.getInstance();
+		int slots = metrics.getTotalSlots();
+		if (slots > 0) {
+			utilization.add((double) metrics.getInFlightRequests() / slots);
+			samples.increment();
+		}
+	}
+
+	/**
+	 * Riepilogo del test di carico
+	 * @param simulators
+	 */
+	private void report(List<FcsSimulator> simulators) {
+		long elapsed = ((endTime != 0) ? endTime : System.nanoTime()) - startTime.get();
+		double seconds = elapsed / 1e9;
+		LatencySnapshot snapshot = latency.snapshot();
+		FcaMetrics metrics = FcaMetrics.getInstance();
+
+		StringBuilder report = new StringBuilder();
+		report.append("FcaLoadTest: ").append(completed.size()).append(" completed, ").append(failed.size()).append(" failed of ").append(totalRequests)
+				.append(" requests in ").append(String.format("%.3f", seconds)).append(" s\n");
+		report.append("  throughput:        ").append(String.format("%.1f", completed.size() / seconds)).append(" req/s\n");
+		report.append("  latency (ms):      p50 = ").append(snapshot.getP50() / 1000.0).append(", p90 = ").append(snapshot.getP90() / 1000.0)
+				.append(", p99 = ").append(snapshot.getP99() / 1000.0).append(", max = ").append(snapshot.getMax() / 1000.0).append('\n');
+		report.append("  slot utilization:  ").append(String.format("%.1f", (samples.sum() > 0) ? 100 * utilization.sum() / samples.sum() : 0)).append("% of ")
+				.append(metrics.getTotalSlots()).append(" slots\n");
+		report.append("  dispatch wait:     ").append(metrics.getDispatchWait()).append('\n');
+		report.append("  conversion:        ").append(metrics.getConversionLatency()).append('\n');
+		report.append("  retried:           ").append(metrics.getRetriedRequests()).append('\n');
+		for (FcsSimulator simulator : simulators)
+			report.append("  host ").append(simulator).append('\n');
+
+		System.out.println(report);
+		if (logger.isInfoEnabled())
+			logger.info(report.toString());
+	}
+
+	@Override
+	public void onRunException(Exception e) {
+		logger.error("FcaLoadTest... run exception... " + e.getMessage(), e);
+	}
+
+	@Override
+	public void onRunFinally() {
+		if (logger.isInfoEnabled())
+			logger.info("FcaLoadTest... run finally...");
+	}
+
+	@Override
+	public String getAppVersion() {
+		return "1.0.0-LOADTEST";
+	}
+
+	@Override
+	public String getAppBuildDate() {
+		return "NOW";
+	}
+
+}
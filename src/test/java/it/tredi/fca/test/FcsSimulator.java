@@ -0,0 +1,440 @@
+package it.tredi.fca.test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.tredi.fcs.socket.commands.HeaderRequest;
+import it.tredi.fcs.socket.commands.HeaderResponse;
+import it.tredi.fcs.socket.commands.Protocol;
+
+/**
+ * Simulatore (in-process, su loopback) di un host FCS. Il dialogo segue il protocollo di FCS (vedi {@link Protocol}):
+ * <ul>
+ * <li><code>ALIVE</code>: risposta <code>ACK</code> se l'host e' configurato, altrimenti <code>TO_CONFIG</code> seguito dalla ricezione dei
+ * parametri di attivazione (JSON) e di <code>FCS_CONF</code>;</li>
+ * <li><code>INIT</code>: risposta <code>ACK</code> (<code>TO_CONFIG</code> se l'host non e' configurato);</li>
+ * <li><code>FCA</code>: risposta <code>ACK</code>, ricezione di identificativo del documento, conversione e parametri aggiuntivi, attesa del tempo di
+ * elaborazione simulato e risposta <code>DONE</code>.</li>
+ * </ul>
+ * Le connessioni restano aperte al termine della richiesta (keep-alive). E' possibile simulare elaborazioni fallite (risposta diversa da
+ * <code>DONE</code>), connessioni interrotte, elaborazioni bloccate (nessuna risposta) e un numero massimo di connessioni contemporanee.
+ */
+public class FcsSimulator implements Runnable {
+
+	private static final Logger logger = LogManager.getLogger(FcsSimulator.class.getName());
+
+	/**
+	 * Distribuzione dei tempi di elaborazione (in ms) simulati
+	 */
+	public interface ServiceTime {
+
+		public long next(Random random);
+
+		/**
+		 * Tempo di elaborazione costante
+		 * @param millis
+		 * @return
+		 */
+		public static ServiceTime fixed(long millis) {
+			return random -> millis;
+		}
+
+		/**
+		 * Tempo di elaborazione uniforme fra min e max ms
+		 * @param min
+		 * @param max
+		 * @return
+		 */
+		public static ServiceTime uniform(long min, long max) {
+			return random -> min + (long) (random.nextDouble() * (max - min));
+		}
+
+		/**
+		 * Tempo di elaborazione esponenziale (arrivi poissoniani) con la media indicata
+		 * @param mean
+		 * @return
+		 */
+		public static ServiceTime exponential(long mean) {
+			return random -> Math.round(-mean * Math.log(1 - random.nextDouble()));
+		}
+
+		/**
+		 * Tempo di elaborazione log-normale (coda lunga, es. documenti di grandi dimensioni o OCR)
+		 * @param median Mediana (in ms)
+		 * @param sigma Deviazione standard del logaritmo (es. 1 = 1% delle elaborazioni oltre 10 volte la mediana)
+		 * @return
+		 */
+		public static ServiceTime logNormal(long median, double sigma) {
+			return random -> Math.round(median * Math.exp(sigma * random.nextGaussian()));
+		}
+
+		/**
+		 * Distribuzione corrispondente al nome indicato (fixed, uniform, exponential, lognormal) con la media (o mediana) indicata
+		 * @param name
+		 * @param mean
+		 * @return
+		 */
+		public static ServiceTime valueOf(String name, long mean) {
+			if (name.equalsIgnoreCase("fixed"))
+				return fixed(mean);
+			else if (name.equalsIgnoreCase("uniform"))
+				return uniform(0, 2 * mean);
+			else if (name.equalsIgnoreCase("lognormal"))
+				return logNormal(mean, 1);
+			else if (name.equalsIgnoreCase("exponential"))
+				return exponential(mean);
+			else
+				throw new IllegalArgumentException("Unknown service time distribution: " + name);
+		}
+	}
+
+	private final int port;
+
+	private volatile ServiceTime serviceTime = ServiceTime.fixed(100);
+	private volatile double failureRate = 0; // percentuale (0-1) di elaborazioni fallite
+	private volatile double dropRate = 0; // percentuale (0-1) di connessioni interrotte durante l'elaborazione
+	private volatile double timeoutRate = 0; // percentuale (0-1) di elaborazioni senza risposta
+	private volatile long timeoutDuration = 0; // durata (ms) delle elaborazioni senza risposta (0 = fino alla chiusura lato client)
+	private volatile int maxConnections = 0; // numero massimo di connessioni contemporanee (0 = illimitato)
+	private volatile boolean configured = false; // parametri di attivazione ricevuti
+	private volatile String fcsConfig = null; // ultimi parametri di attivazione ricevuti (JSON)
+	private volatile Consumer<String> completionListener = null; // notifica dei documenti elaborati (prima della risposta DONE)
+
+	private final AtomicInteger connections = new AtomicInteger(0);
+	private final AtomicInteger conversions = new AtomicInteger(0);
+	private final AtomicInteger peakConversions = new AtomicInteger(0);
+	private final LongAdder received = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder timedOut = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	private ServerSocket serverSocket = null;
+	private ExecutorService handlers = null;
+	private volatile boolean running = false;
+
+	/**
+	 * Costruttore
+	 * @param port Porta TCP (su loopback) del simulatore
+	 */
+	public FcsSimulator(int port) {
+		this.port = port;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public void setServiceTime(ServiceTime serviceTime) {
+		this.serviceTime = serviceTime;
+	}
+
+	public void setFailureRate(double failureRate) {
+		this.failureRate = failureRate;
+	}
+
+	public void setDropRate(double dropRate) {
+		this.dropRate = dropRate;
+	}
+
+	public void setTimeoutRate(double timeoutRate) {
+		this.timeoutRate = timeoutRate;
+	}
+
+	public void setTimeoutDuration(long timeoutDuration) {
+		this.timeoutDuration = timeoutDuration;
+	}
+
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	/**
+	 * Notifica dei documenti elaborati con successo, prima dell'invio della risposta <code>DONE</code> (aggiornamento della sorgente dati da parte
+	 * dell'host FCS)
+	 * @param completionListener Listener invocato con l'identificativo del documento
+	 */
+	public void setCompletionListener(Consumer<String> completionListener) {
+		this.completionListener = completionListener;
+	}
+
+	/**
+	 * Stato di configurazione dell'host: un host non configurato risponde <code>TO_CONFIG</code> fino alla ricezione dei parametri di attivazione
+	 * (es. riavvio dell'host FCS)
+	 * @param configured
+	 */
+	public void setConfigured(boolean configured) {
+		this.configured = configured;
+	}
+
+	public boolean isConfigured() {
+		return configured;
+	}
+
+	/**
+	 * Ritorna gli ultimi parametri di attivazione (JSON) ricevuti da FCA
+	 * @return
+	 */
+	public String getFcsConfig() {
+		return fcsConfig;
+	}
+
+	/**
+	 * Avvio del simulatore
+	 * @throws IOException
+	 */
+	public synchronized void start() throws IOException {
+		if (running)
+			return;
+
+		serverSocket = new ServerSocket();
+		serverSocket.setReuseAddress(true);
+		serverSocket.bind(new InetSocketAddress("127.0.0.1", port));
+
+		final AtomicInteger counter = new AtomicInteger(0);
+		handlers = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "FcsSimulator" + port + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		running = true;
+		Thread thread = new Thread(this, "FcsSimulator" + port);
+		thread.setDaemon(true);
+		thread.start();
+
+		if (logger.isInfoEnabled())
+			logger.info("FcsSimulator: listening on 127.0.0.1:" + port);
+	}
+
+	/**
+	 * Arresto del simulatore (chiusura del server socket e delle connessioni attive)
+	 */
+	public synchronized void stop() {
+		if (!running)
+			return;
+
+		running = false;
+		try {
+			serverSocket.close();
+		}
+		catch (Exception e) {
+			logger.warn("FcsSimulator.stop(): unable to close server socket... " + e.getMessage());
+		}
+		handlers.shutdownNow();
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				final Socket client = serverSocket.accept();
+				int limit = maxConnections;
+				if (limit > 0 && connections.get() >= limit) {
+					// connessione rifiutata (limite di connessioni raggiunto)
+					rejected.increment();
+					client.close();
+					continue;
+				}
+				connections.incrementAndGet();
+				handlers.execute(() -> handle(client));
+			}
+			catch (SocketException e) {
+				if (running)
+					logger.error("FcsSimulator: got socket exception on accept... " + e.getMessage(), e);
+			}
+			catch (Exception e) {
+				logger.error("FcsSimulator: got exception on accept... " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Gestione di una connessione (una o piu' richieste consecutive)
+	 * @param client
+	 */
+	private void handle(Socket client) {
+		try (Socket socket = client) {
+			socket.setTcpNoDelay(true);
+			Protocol protocol = new Protocol(new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+					new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+			while (running) {
+				HeaderRequest request = HeaderRequest.getHeaderRequest(protocol.receiveHeader());
+				if (request == HeaderRequest.ALIVE_HEADER) {
+					alive(protocol);
+					return; // il monitor di FCA chiude la connessione dopo la verifica
+				}
+				else if (request == HeaderRequest.INIT_HEADER) {
+					protocol.sendHeader(configured ? HeaderResponse.ACK_HEADER.bytes() : HeaderResponse.TO_CONFIG_HEADER.bytes());
+				}
+				else if (request == HeaderRequest.FCA_HEADER) {
+					if (!convert(socket, protocol))
+						return;
+				}
+				else {
+					logger.warn("FcsSimulator[" + port + "]: unexpected request header... " + request);
+					return;
+				}
+			}
+		}
+		catch (Exception e) {
+			// connessione chiusa lato client (o arresto del simulatore)
+		}
+		finally {
+			connections.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Verifica dello stato dell'host ed eventuale ricezione dei parametri di attivazione
+	 * @param protocol
+	 * @throws IOException
+	 */
+	private void alive(Protocol protocol) throws IOException {
+		if (configured) {
+			protocol.sendHeader(HeaderResponse.ACK_HEADER.bytes());
+			return;
+		}
+
+		protocol.sendHeader(HeaderResponse.TO_CONFIG_HEADER.bytes());
+		String json = protocol.receiveString();
+		if (HeaderRequest.getHeaderRequest(protocol.receiveHeader()) == HeaderRequest.FCS_CONF_HEADER) {
+			fcsConfig = json;
+			configured = true;
+			if (logger.isInfoEnabled())
+				logger.info("FcsSimulator[" + port + "]: configured!");
+		}
+		protocol.sendHeader(configured ? HeaderResponse.ACK_HEADER.bytes() : HeaderResponse.TO_CONFIG_HEADER.bytes());
+	}
+
+	/**
+	 * Elaborazione simulata di un documento
+	 * @param socket
+	 * @param protocol
+	 * @return true se la connessione puo' essere riutilizzata, false se deve essere chiusa
+	 * @throws Exception
+	 */
+	private boolean convert(Socket socket, Protocol protocol) throws Exception {
+		protocol.sendHeader(HeaderResponse.ACK_HEADER.bytes());
+		String docId = protocol.receiveString(); // identificativo del documento
+		protocol.receiveString(); // conversione
+		protocol.receiveString(); // parametri aggiuntivi
+		received.increment();
+
+		int current = conversions.incrementAndGet();
+		peakConversions.accumulateAndGet(current, Math::max);
+		try {
+			Random random = ThreadLocalRandom.current();
+			double outcome = random.nextDouble();
+			if (outcome < dropRate) {
+				dropped.increment();
+				return false;
+			}
+			outcome -= dropRate;
+			if (outcome < timeoutRate) {
+				timedOut.increment();
+				hang(socket);
+				return false;
+			}
+			outcome -= timeoutRate;
+
+			long millis = serviceTime.next(random);
+			if (millis > 0)
+				Thread.sleep(millis);
+
+			if (outcome < failureRate) {
+				failed.increment();
+				protocol.sendHeader(HeaderResponse.ACK_HEADER.bytes()); // risposta diversa da DONE (elaborazione non completata)
+			}
+			else {
+				completed.increment();
+				Consumer<String> listener = completionListener;
+				if (listener != null)
+					listener.accept(docId);
+				protocol.sendHeader(HeaderResponse.DONE_HEADER.bytes());
+			}
+			return true;
+		}
+		finally {
+			conversions.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Elaborazione bloccata: nessuna risposta fino alla chiusura della connessione lato client (o per timeoutDuration ms)
+	 * @param socket
+	 * @throws IOException
+	 */
+	private void hang(Socket socket) throws IOException {
+		socket.setSoTimeout((int) Math.min(timeoutDuration, Integer.MAX_VALUE));
+		try {
+			while (socket.getInputStream().read() >= 0)
+				;
+		}
+		catch (SocketTimeoutException e) {
+			// chiusura della connessione senza risposta
+		}
+	}
+
+	public int getConnections() {
+		return connections.get();
+	}
+
+	public int getConversions() {
+		return conversions.get();
+	}
+
+	public int getPeakConversions() {
+		return peakConversions.get();
+	}
+
+	public long getReceived() {
+		return received.sum();
+	}
+
+	public long getCompleted() {
+		return completed.sum();
+	}
+
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	public long getTimedOut() {
+		return timedOut.sum();
+	}
+
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "127.0.0.1:" + port + " [received: " + getReceived() + ", completed: " + getCompleted() + ", failed: " + getFailed() + ", dropped: "
+				+ getDropped() + ", timedOut: " + getTimedOut() + ", rejected: " + getRejected() + ", peak conversions: " + getPeakConversions() + "]";
+	}
+
+}